@@ -139,7 +139,8 @@ class _BookAppointmentAutoScreenState extends State<BookAppointmentAutoScreen> {
         body: jsonEncode(body),
       );
 
-      if (res.statusCode == 200 || res.statusCode == 201) {
+      // 202: BE đã ghi nhận yêu cầu, việc xếp bác sĩ chạy nền
+      if (res.statusCode == 200 || res.statusCode == 201 || res.statusCode == 202) {
         _successData = jsonDecode(res.body);
         setState(() => _step = 3);
       } else {
@@ -1,18 +0,0 @@
-package com.nckh.yte;
-
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
-import org.springframework.web.client.RestTemplate;
-
-@Configuration
-public class HttpClientConfig {
-
-    @Bean(name = "timeoutRestTemplate")
-    public RestTemplate timeoutRestTemplate() {
-        var factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(10_000);
-        factory.setReadTimeout(20_000);
-        return new RestTemplate(factory);
-    }
-}
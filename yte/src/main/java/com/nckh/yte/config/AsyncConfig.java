@@ -0,0 +1,35 @@
+package com.nckh.yte.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Thread pool riêng cho các tác vụ nền (đặt lịch tự động).
+ * Pool và hàng đợi đều có giới hạn: khi đầy, submit sẽ bị từ chối
+ * thay vì dồn vô hạn vào bộ nhớ.
+ * Khi bật {@code app.threads.virtual}, worker là virtual thread (giới hạn vẫn giữ nguyên).
+ */
+@Configuration
+public class AsyncConfig {
+
+    @Bean(name = "bookingExecutor")
+    public ThreadPoolTaskExecutor bookingExecutor(
+            @Value("${app.booking.workers:4}") int workers,
+            @Value("${app.booking.queue-capacity:100}") int queueCapacity,
+            @Value("${app.threads.virtual:false}") boolean virtualThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("booking-");
+        if (virtualThreads) {
+            executor.setThreadFactory(Thread.ofVirtual().name("booking-", 0).factory());
+        }
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
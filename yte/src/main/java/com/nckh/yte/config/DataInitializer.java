@@ -4,12 +4,15 @@ import com.nckh.yte.entity.Role;
 import com.nckh.yte.entity.User;
 import com.nckh.yte.repository.RoleRepository;
 import com.nckh.yte.repository.UserRepository;
+import com.nckh.yte.service.RoleRegistry;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+@Slf4j
 @Configuration
 @RequiredArgsConstructor
 public class DataInitializer {
@@ -17,6 +20,7 @@ public class DataInitializer {
     @Bean
     CommandLineRunner initDatabase(
             RoleRepository roleRepo,
+            RoleRegistry roleRegistry,
             UserRepository userRepo,
             PasswordEncoder encoder) {
         
@@ -47,6 +51,8 @@ public class DataInitializer {
                 return roleRepo.save(r);
             });
 
+            roleRegistry.refresh();
+
             // 2) Tạo User Admin mặc định nếu nó chưa tồn tại
             if (!userRepo.existsByUsername("admin")) {
                 User u = new User();
@@ -57,7 +63,7 @@ public class DataInitializer {
                 u.setRole(adminRole); // Gán role ADMIN đã tạo ở trên
                 
                 userRepo.save(u);
-                System.out.println(">>>>>>>>>> ĐÃ TẠO USER ADMIN MẶC ĐỊNH <<<<<<<<<<");
+                log.info("Đã tạo user admin mặc định");
             }
         };
     }
@@ -0,0 +1,25 @@
+package com.nckh.yte.config;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+/**
+ * ETag / If-None-Match cho các GET đọc nhiều: client gửi lại ETag cũ,
+ * nội dung không đổi thì nhận 304 không có body.
+ * Chỉ áp dụng cho các URL liệt kê ở đây – filter buffer toàn bộ response
+ * nên không được đặt trước SSE hay export CSV dạng stream.
+ */
+@Configuration
+public class HttpCachingConfig {
+
+    @Bean
+    public FilterRegistrationBean<ShallowEtagHeaderFilter> etagFilter() {
+        FilterRegistrationBean<ShallowEtagHeaderFilter> reg = new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+        // drug-info-full tự đặt ETag từ cache (DrugInfoCache.Entry), không cần băm lại body
+        reg.addUrlPatterns("/api/appointments/me", "/appointments/me");
+        reg.setName("etagFilter");
+        return reg;
+    }
+}
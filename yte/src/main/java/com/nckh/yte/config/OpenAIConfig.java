@@ -1,10 +0,0 @@
-@Getter
-@Setter
-@Configuration
-@ConfigurationProperties(prefix = "ai.openai")
-public class OpenAIConfig {
-
-    private String model;
-    private String apikey;
-    private String baseurl;
-}
@@ -0,0 +1,48 @@
+package com.nckh.yte.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Giới hạn tần suất theo route (app.rate-limit.*).
+ * Route khai báo trước được khớp trước; request không khớp route nào thì không bị giới hạn.
+ * Mỗi route có bucket riêng, nên một client spam chat không ăn vào hạn mức đặt lịch.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProps {
+
+    private boolean enabled = true;
+    /** local: bucket trong bộ nhớ từng instance; jdbc: bucket dùng chung qua bảng rate_limit_bucket. */
+    private String store = "local";
+    /** Số bucket tối đa trong bộ nhớ: vượt thì dọn bucket đã đầy, vẫn vượt thì bỏ bucket có mốc sớm nhất. */
+    private int maxKeys = 100_000;
+    /** Lấy IP từ X-Forwarded-For (chỉ bật khi chạy sau reverse proxy tin cậy). */
+    private boolean trustForwardedFor = false;
+    private Map<String, Rule> routes = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Rule {
+        /** Ant pattern theo servlet path, ví dụ /api/ai/chat/**. */
+        private List<String> patterns = new ArrayList<>();
+        /** Số request tối đa dồn một lúc (dung lượng bucket). */
+        private int capacity = 10;
+        /** Tốc độ hồi token. */
+        private int refillPerMinute = 30;
+
+        /** Khoảng cách giữa hai token, tính bằng nano giây. */
+        public long intervalNanos() {
+            return 60_000_000_000L / Math.max(1, refillPerMinute);
+        }
+    }
+}
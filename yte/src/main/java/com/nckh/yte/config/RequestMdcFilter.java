@@ -0,0 +1,56 @@
+package com.nckh.yte.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Gắn ngữ cảnh log (MDC) cho mỗi request: requestId, route và – sau khi
+ * JwtAuthFilter xác thực – userId. Pattern trong logback-spring.xml in các
+ * khoá này trên mọi dòng log của request.
+ * requestId lấy từ header {@code X-Request-Id} nếu client gửi, và luôn được trả lại.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestMdcFilter extends OncePerRequestFilter {
+
+    public static final String REQUEST_ID = "requestId";
+    public static final String USER_ID = "userId";
+    public static final String ROUTE = "route";
+
+    private static final String HEADER = "X-Request-Id";
+    private static final Pattern SAFE_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req,
+                                    HttpServletResponse res,
+                                    FilterChain chain)
+            throws ServletException, IOException {
+
+        String requestId = req.getHeader(HEADER);
+        if (requestId == null || !SAFE_ID.matcher(requestId).matches()) {
+            requestId = UUID.randomUUID().toString().substring(0, 8);
+        }
+
+        MDC.put(REQUEST_ID, requestId);
+        MDC.put(ROUTE, req.getMethod() + " " + req.getRequestURI());
+        res.setHeader(HEADER, requestId);
+        try {
+            chain.doFilter(req, res);
+        } finally {
+            MDC.remove(REQUEST_ID);
+            MDC.remove(ROUTE);
+            MDC.remove(USER_ID);
+        }
+    }
+}
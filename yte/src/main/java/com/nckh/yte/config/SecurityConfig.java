@@ -1,7 +1,10 @@
 package com.nckh.yte.config;
 
 import com.nckh.yte.security.JwtAuthFilter;
+import com.nckh.yte.security.RateLimitFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -20,11 +23,13 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
  * - Phân quyền theo ROLE
  * - Cho phép alias cũ cho Flutter FE (/ai/... và /appointments/...)
  */
+@Slf4j
 @Configuration
 @RequiredArgsConstructor
 public class SecurityConfig {
 
     private final JwtAuthFilter jwtAuthFilter;
+    private final RateLimitFilter rateLimitFilter;
 
     @Bean
     public PasswordEncoder passwordEncoder() {
@@ -46,6 +51,9 @@ public class SecurityConfig {
             // ⚖️ Phân quyền truy cập
             .authorizeHttpRequests(auth -> auth
 
+                // 📡 Async dispatch (SSE, streaming) – request gốc đã được phân quyền
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                 // 🔓 Public endpoints (Cho phép truy cập tự do)
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                 .requestMatchers("/api/auth/**", "/auth/**").permitAll()
@@ -69,6 +77,8 @@ public class SecurityConfig {
                 ).hasAnyAuthority("ROLE_PATIENT", "ROLE_DOCTOR")
 
                 // 👩‍⚕️ Patient APIs
+                .requestMatchers(HttpMethod.GET, "/api/patients/export", "/patients/export")
+                    .hasAuthority("ROLE_ADMIN")
                 .requestMatchers(HttpMethod.GET, "/api/patients/**")
                     .hasAnyAuthority("ROLE_ADMIN", "ROLE_DOCTOR", "ROLE_NURSE")
                 .requestMatchers(HttpMethod.POST, "/api/patients/**")
@@ -91,9 +101,11 @@ public class SecurityConfig {
 
             // 🪙 Cấu hình session stateless & JWT Filter
             .sessionManagement(sess -> sess.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-            .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+            // 🚦 Giới hạn tần suất – sau JWT để tính theo user khi đã đăng nhập
+            .addFilterAfter(rateLimitFilter, JwtAuthFilter.class);
 
-        System.out.println("✅ SecurityConfig loaded: AI Chat is now PUBLIC.");
+        log.info("SecurityConfig loaded: AI endpoints are public");
         return http.build();
     }
 }
@@ -0,0 +1,40 @@
+package com.nckh.yte.config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hạn chót của lời gọi upstream đang chạy trên thread hiện tại (do {@code UpstreamGuard} đặt).
+ * {@link UpstreamHttpClients} đọc nó để mỗi lần thử chỉ chờ response trong phần thời gian còn lại,
+ * thay vì trọn {@code responseTimeoutMs} – hạn chót không chỉ chặn retry mà chặn cả request đang chờ.
+ */
+public final class UpstreamDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private UpstreamDeadline() {
+    }
+
+    /**
+     * Chạy {@code call} với hạn chót {@code deadlineNanos} (theo {@link System#nanoTime()}).
+     */
+    public static <T> T within(long deadlineNanos, Callable<T> call) throws Exception {
+        Long previous = DEADLINE.get();
+        DEADLINE.set(deadlineNanos);
+        try {
+            return call.call();
+        } finally {
+            if (previous != null) DEADLINE.set(previous);
+            else DEADLINE.remove();
+        }
+    }
+
+    /**
+     * Số ms còn lại tới hạn chót (tối thiểu 1); {@code -1} nếu thread không chạy trong {@link #within}.
+     */
+    public static long remainingMillis() {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) return -1;
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+}
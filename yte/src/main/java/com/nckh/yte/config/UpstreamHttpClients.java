@@ -0,0 +1,161 @@
+package com.nckh.yte.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP client dùng chung cho các lời gọi ra ngoài (Gemini, OpenAI).
+ * <p>
+ * Mỗi upstream có một pool kết nối keep-alive riêng (Apache HttpClient 5), nên bắt tay
+ * TLS chỉ xảy ra khi mở kết nối mới, và một upstream chậm không chiếm hết kết nối
+ * của upstream kia. Response gzip/deflate được giải nén tự động.
+ * Trong {@link UpstreamDeadline#within}, thời gian chờ response của mỗi request
+ * bị rút xuống phần còn lại của hạn chót.
+ */
+@Slf4j
+@Component
+public class UpstreamHttpClients implements DisposableBean {
+
+    public static final String GEMINI = "gemini";
+    public static final String OPENAI = "openai";
+
+    private record Client(PoolingHttpClientConnectionManager pool,
+                          CloseableHttpClient httpClient,
+                          RestTemplate restTemplate) {
+    }
+
+    private final UpstreamHttpProps props;
+    private final boolean virtualThreads;
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private volatile HttpClient streamingClient;
+
+    public UpstreamHttpClients(UpstreamHttpProps props,
+                               @Value("${app.threads.virtual:false}") boolean virtualThreads) {
+        this.props = props;
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * RestTemplate có pool riêng cho upstream (tạo ở lần gọi đầu tiên).
+     */
+    public RestTemplate restTemplate(String upstream) {
+        return clients.computeIfAbsent(upstream, this::create).restTemplate();
+    }
+
+    /**
+     * Client bất đồng bộ (JDK HttpClient, ưu tiên HTTP/2) cho các response dạng stream:
+     * không giữ thread nào trong lúc chờ dữ liệu.
+     */
+    public HttpClient streamingClient() {
+        HttpClient c = streamingClient;
+        if (c == null) {
+            synchronized (this) {
+                if (streamingClient == null) {
+                    HttpClient.Builder builder = HttpClient.newBuilder()
+                            .version(HttpClient.Version.HTTP_2)
+                            .connectTimeout(Duration.ofMillis(props.pool(OPENAI).getConnectTimeoutMs()));
+                    if (virtualThreads) {
+                        builder.executor(Executors.newThreadPerTaskExecutor(
+                                Thread.ofVirtual().name("ai-stream-", 0).factory()));
+                    }
+                    streamingClient = builder.build();
+                }
+                c = streamingClient;
+            }
+        }
+        return c;
+    }
+
+    private Client create(String upstream) {
+        UpstreamHttpProps.Pool p = props.pool(upstream);
+
+        PoolingHttpClientConnectionManager pool = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(p.getMaxConnections())
+                .setMaxConnPerRoute(p.getMaxConnections())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(p.getConnectTimeoutMs()))
+                        .setSocketTimeout(Timeout.ofMilliseconds(p.getResponseTimeoutMs()))
+                        .setTimeToLive(TimeValue.ofSeconds(p.getTimeToLiveSeconds()))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(pool)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(p.getAcquireTimeoutMs()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(p.getResponseTimeoutMs()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(p.getIdleEvictSeconds()))
+                .build();
+
+        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        factory.setHttpContextFactory((method, uri) -> deadlineContext(p));
+
+        log.info("Khởi tạo HTTP pool '{}' (tối đa {} kết nối)", upstream, p.getMaxConnections());
+        return new Client(pool, httpClient, new RestTemplate(factory));
+    }
+
+    /** null (dùng cấu hình mặc định của client) nếu không có hạn chót. */
+    private static HttpClientContext deadlineContext(UpstreamHttpProps.Pool p) {
+        long remaining = UpstreamDeadline.remainingMillis();
+        if (remaining < 0) return null;
+        HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(Math.min(p.getAcquireTimeoutMs(), remaining)))
+                .setResponseTimeout(Timeout.ofMilliseconds(Math.min(p.getResponseTimeoutMs(), remaining)))
+                .build());
+        return context;
+    }
+
+    /**
+     * Trạng thái pool của từng upstream.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        clients.forEach((name, c) -> {
+            PoolStats total = c.pool().getTotalStats();
+            s.put(name, Map.of(
+                    "leased", total.getLeased(),
+                    "available", total.getAvailable(),
+                    "pending", total.getPending(),
+                    "max", total.getMax()
+            ));
+        });
+        return s;
+    }
+
+    @Override
+    public void destroy() {
+        clients.values().forEach(c -> {
+            try {
+                c.httpClient().close();
+            } catch (IOException e) {
+                log.warn("Lỗi khi đóng HTTP client: {}", e.getMessage());
+            }
+        });
+    }
+}
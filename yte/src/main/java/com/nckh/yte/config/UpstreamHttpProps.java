@@ -0,0 +1,58 @@
+package com.nckh.yte.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cấu hình pool kết nối cho từng upstream (app.http.upstreams.&lt;tên&gt;.*).
+ * Upstream không khai báo dùng giá trị mặc định của {@link Pool}.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.http")
+public class UpstreamHttpProps {
+
+    private Map<String, Pool> upstreams = new LinkedHashMap<>();
+
+    public Pool pool(String upstream) {
+        return upstreams.getOrDefault(upstream, new Pool());
+    }
+
+    @Getter
+    @Setter
+    public static class Pool {
+        /** Số kết nối tối đa tới upstream (cũng là giới hạn theo route). */
+        private int maxConnections = 20;
+        private long connectTimeoutMs = 3_000;
+        /** Chờ lấy kết nối từ pool; hết thời gian thì lỗi ngay thay vì treo thread. */
+        private long acquireTimeoutMs = 2_000;
+        private long responseTimeoutMs = 30_000;
+        /** Đóng kết nối rảnh quá lâu (server thường tự cắt sau ~60s). */
+        private long idleEvictSeconds = 30;
+        /** Tuổi tối đa của một kết nối, để DNS/TLS được làm mới định kỳ. */
+        private long timeToLiveSeconds = 300;
+
+        // ===== Bảo vệ upstream (UpstreamGuard) =====
+        /** Số lời gọi đồng thời tối đa (bulkhead); vượt quá thì từ chối ngay. */
+        private int maxConcurrent = 16;
+        /** Số lỗi liên tiếp để mở circuit breaker. */
+        private int failureThreshold = 5;
+        /** Thời gian circuit mở trước khi cho một request thử lại. */
+        private long openMs = 30_000;
+        /** Tổng số lần thử (gồm lần đầu) cho lỗi mạng/5xx/429. */
+        private int maxAttempts = 2;
+        private long backoffMs = 200;
+        /** Hạn chót cho cả lời gọi, tính cả retry và backoff. */
+        private long deadlineMs = 20_000;
+        /** Gửi thêm một request song song nếu request đầu chậm hơn p95 gần đây. */
+        private boolean hedge = false;
+        /** Ngưỡng hedge tối thiểu (khi chưa đủ số liệu p95). */
+        private long hedgeMinMs = 2_000;
+    }
+}
@@ -0,0 +1,31 @@
+package com.nckh.yte.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Chế độ virtual thread (bật bằng {@code app.threads.virtual: true}, cần JDK 21).
+ * <p>
+ * Mỗi request HTTP chạy trên một virtual thread riêng thay vì pool 200 thread của Tomcat,
+ * nên các request đang chờ JDBC hoặc AI không còn giữ thread hệ điều hành.
+ * Giới hạn thật sự lúc này là pool kết nối DB (Hikari) và bulkhead của {@code UpstreamGuard}.
+ * Worker đặt lịch, hedge request và client stream cũng chuyển sang virtual thread
+ * (xem AsyncConfig, UpstreamGuard, UpstreamHttpClients).
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "app.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandler() {
+        log.info("Tomcat xử lý request trên virtual thread");
+        return protocolHandler -> protocolHandler.setExecutor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-vt-", 0).factory()));
+    }
+}
@@ -1,20 +1,37 @@
 package com.nckh.yte.controller;
 
+import com.nckh.yte.config.UpstreamHttpClients;
+import com.nckh.yte.dto.UserSummary;
 import com.nckh.yte.entity.User;
 import com.nckh.yte.repository.UserRepository;
-import com.nckh.yte.repository.DoctorRepository;
-import com.nckh.yte.repository.NurseRepository;
+import com.nckh.yte.security.RateLimitFilter;
+import com.nckh.yte.security.TokenRevocationRegistry;
+import com.nckh.yte.security.VerifiedTokenCache;
+import com.nckh.yte.service.AccountService;
+import com.nckh.yte.service.DrugInfoCache;
+import com.nckh.yte.service.DrugNameIndex;
+import com.nckh.yte.service.SymptomClassifier;
+import com.nckh.yte.service.SymptomSpecialtyCache;
+import com.nckh.yte.service.UpstreamGuard;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.JpaSort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 
+@Slf4j
 @RestController
 @RequestMapping({"/api/admin", "/admin"}) 
 @RequiredArgsConstructor
@@ -22,8 +39,16 @@ public class AdminController {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
-    private final DoctorRepository doctorRepository;
-    private final NurseRepository nurseRepository;
+    private final AccountService accountService;
+    private final DrugInfoCache drugInfoCache;
+    private final DrugNameIndex drugNameIndex;
+    private final TokenRevocationRegistry revocationRegistry;
+    private final VerifiedTokenCache tokenCache;
+    private final SymptomClassifier symptomClassifier;
+    private final SymptomSpecialtyCache symptomCache;
+    private final UpstreamHttpClients httpClients;
+    private final UpstreamGuard upstreamGuard;
+    private final RateLimitFilter rateLimitFilter;
 
     @GetMapping("/health")
     public ResponseEntity<?> health() {
@@ -33,6 +58,26 @@ public class AdminController {
         ));
     }
 
+    @GetMapping("/cache/stats")
+    public ResponseEntity<?> cacheStats() {
+        return ResponseEntity.ok(Map.of(
+                "drugInfo", drugInfoCache.stats(),
+                "drugNames", drugNameIndex.stats(),
+                "jwt", tokenCache.stats(),
+                "symptomClassifier", symptomClassifier.stats(),
+                "symptomSpecialty", symptomCache.stats()
+        ));
+    }
+
+    @GetMapping("/upstream/stats")
+    public ResponseEntity<?> upstreamStats() {
+        return ResponseEntity.ok(Map.of(
+                "pools", httpClients.stats(),
+                "guards", upstreamGuard.stats(),
+                "rateLimit", rateLimitFilter.stats()
+        ));
+    }
+
     @GetMapping("/me")
     public ResponseEntity<?> me(Authentication auth) {
         String username = (auth != null ? auth.getName() : "anonymous");
@@ -47,39 +92,118 @@ public class AdminController {
         ));
     }
 
+    /**
+     * Danh sách tài khoản (trừ ADMIN).
+     * <ul>
+     *   <li>Không có {@code page}/{@code after}: trả về mảng như cũ (màn hình quản lý tài khoản của FE).</li>
+     *   <li>{@code page} (0-based), {@code size}, {@code sort=field,asc|desc}: phân trang offset, có tổng số dòng.</li>
+     *   <li>{@code after}: phân trang keyset theo username – dùng {@code nextCursor} của trang trước; nhanh cho trang sâu.</li>
+     * </ul>
+     * {@code q} tìm theo username/họ tên, {@code role} lọc theo role; cả hai đều chạy trong SQL.
+     */
     @GetMapping("/users")
-    public ResponseEntity<?> getAllUsers() {
-        List<User> users = userRepository.findAll();
-
-        List<Map<String, Object>> filtered = users.stream()
-                // ⚙️ loại ADMIN (SỬA: So sánh với ROLE_ADMIN nếu cần)
-                .filter(u -> {
-                    String roleName = Optional.ofNullable(u.getRole())
-                            .map(r -> r.getName())
-                            .orElse("");
-                    // Lỗi 403 ngầm: Nếu FE là Admin, BE không nên loại user Admin
-                    // Giữ nguyên so sánh với tên Role KHÔNG có prefix
-                    return !roleName.equalsIgnoreCase("ADMIN"); 
-                })
+    public ResponseEntity<?> getAllUsers(
+            @RequestParam(required = false) Integer page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String role,
+            @RequestParam(required = false) String after
+    ) {
+        String roleFilter = (role == null || role.isBlank()) ? null : role.trim().toUpperCase();
+        if (roleFilter != null && roleFilter.startsWith("ROLE_")) {
+            roleFilter = roleFilter.substring(5);
+        }
+        String pattern = (q == null || q.isBlank()) ? null : "%" + q.trim().toLowerCase() + "%";
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+        // Phân trang keyset
+        if (after != null) {
+            String afterUsername = "";
+            UUID afterId = null;
+            if (!after.isBlank()) {
+                try {
+                    String decoded = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+                    int sep = decoded.lastIndexOf('\n');
+                    afterUsername = decoded.substring(0, sep);
+                    afterId = UUID.fromString(decoded.substring(sep + 1));
+                } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+                    return ResponseEntity.badRequest().body(Map.of("error", "Cursor không hợp lệ"));
+                }
+            }
+            List<UserSummary> items = userRepository.searchSummariesAfter(
+                    roleFilter, pattern, afterUsername, afterId, PageRequest.of(0, pageSize));
+
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("items", items);
+            body.put("size", pageSize);
+            body.put("nextCursor", items.size() < pageSize ? null : cursorOf(items.get(items.size() - 1)));
+            return ResponseEntity.ok(body);
+        }
+
+        // Phân trang offset
+        if (page != null) {
+            Sort order = parseSort(sort);
+            if (order == null) {
+                return ResponseEntity.badRequest().body(Map.of(
+                        "error", "sort không hợp lệ; dùng " + SORTABLE.keySet() + " kèm ,asc hoặc ,desc"));
+            }
+            Page<UserSummary> result = userRepository.searchSummaries(
+                    roleFilter, pattern, PageRequest.of(Math.max(page, 0), pageSize, order));
+
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("items", result.getContent());
+            body.put("page", result.getNumber());
+            body.put("size", result.getSize());
+            body.put("totalElements", result.getTotalElements());
+            body.put("totalPages", result.getTotalPages());
+            return ResponseEntity.ok(body);
+        }
+
+        // Dạng cũ (không phân trang) – vẫn chỉ đọc các cột cần thiết
+        List<Map<String, Object>> legacy = userRepository
+                .searchSummaries(roleFilter, pattern, Pageable.unpaged())
                 .map(u -> {
                     Map<String, Object> map = new LinkedHashMap<>();
                     map.put("id", u.getId().toString());
                     map.put("fullName", Optional.ofNullable(u.getFullName()).orElse(""));
                     map.put("username", Optional.ofNullable(u.getUsername()).orElse(""));
                     map.put("password", "hidden");
-
-                    String role = Optional.ofNullable(u.getRole())
-                            .map(r -> r.getName())
-                            .orElse("");
-                    
-                    map.put("role", role); 
-
+                    map.put("role", Optional.ofNullable(u.getRole()).orElse(""));
                     map.put("enabled", u.isEnabled());
                     return map;
                 })
-                .collect(Collectors.toList());
+                .getContent();
 
-        return ResponseEntity.ok(filtered);
+        return ResponseEntity.ok(legacy);
+    }
+
+    /** Trường được phép sort → biểu thức trong query (r = role). */
+    private static final Map<String, String> SORTABLE = Map.of(
+            "username", "username",
+            "fullName", "fullName",
+            "enabled", "enabled",
+            "role", "r.name"
+    );
+    private static final int MAX_PAGE_SIZE = 100;
+
+    /** "field,asc|desc" → Sort (luôn kèm id để thứ tự ổn định); null nếu không hợp lệ. */
+    private static Sort parseSort(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return Sort.by("username").and(Sort.by("id"));
+        }
+        String[] parts = sort.split(",");
+        String expr = SORTABLE.get(parts[0].trim());
+        if (expr == null) return null;
+        Sort.Direction dir = parts.length > 1 && parts[1].trim().equalsIgnoreCase("desc")
+                ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort primary = expr.contains(".") ? JpaSort.unsafe(dir, expr) : Sort.by(dir, expr);
+        return primary.and(Sort.by("id"));
+    }
+
+    private static String cursorOf(UserSummary last) {
+        String raw = last.getUsername() + "\n" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
     }
 
     @PostMapping("/users/{id}/reset-password")
@@ -99,7 +223,10 @@ public class AdminController {
 
         User u = opt.get();
         u.setPassword(passwordEncoder.encode(newPass));
+        // Token cũ (mật khẩu cũ) không còn hiệu lực trên mọi instance; instance này bỏ cache ngay
+        u.setTokensValidAfter(Instant.now());
         userRepository.save(u);
+        revocationRegistry.revokeUser(u.getId());
 
         return ResponseEntity.ok(Map.of(
                 "message", "✅ Đổi mật khẩu thành công cho " + u.getUsername(),
@@ -109,45 +236,56 @@ public class AdminController {
 
     @DeleteMapping("/users/{id}")
     public ResponseEntity<?> deleteUser(@PathVariable UUID id) {
-        Optional<User> opt = userRepository.findById(id);
-        if (opt.isEmpty()) {
+        AccountService.Result result = accountService.delete(List.of(id), true);
+        if (result.affected() == 0) {
             return ResponseEntity.status(404).body(Map.of(
                     "error", "Không tìm thấy người dùng để xoá"
             ));
         }
 
-        User user = opt.get();
-        String username = Optional.ofNullable(user.getUsername()).orElse("");
-        // Xác định role (bỏ prefix ROLE_ nếu có)
-        String roleName = Optional.ofNullable(user.getRole())
-                .map(r -> r.getName())
-                .orElse("");
-        if (roleName.startsWith("ROLE_")) {
-            roleName = roleName.substring(5);
+        return ResponseEntity.ok(Map.of(
+                "message", "✅ Xoá tài khoản thành công",
+                "deletedId", id.toString(),
+                "username", Optional.ofNullable(result.usernames().get(0)).orElse(""),
+                "rescheduled", result.rescheduled()
+        ));
+    }
+
+    /**
+     * Xoá hoặc vô hiệu hoá nhiều tài khoản một lần (nghỉ việc hàng loạt).
+     * Body: {"ids": ["uuid", ...], "action": "delete" | "disable"}. Tài khoản ADMIN luôn được bỏ qua.
+     */
+    @PostMapping("/users/bulk")
+    public ResponseEntity<?> bulkUsers(@RequestBody Map<String, Object> body) {
+        String action = String.valueOf(body.getOrDefault("action", "")).trim().toLowerCase();
+        if (!action.equals("delete") && !action.equals("disable")) {
+            return ResponseEntity.badRequest().body(Map.of("error", "action phải là delete hoặc disable"));
+        }
+        if (!(body.get("ids") instanceof List<?> rawIds) || rawIds.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "ids không được để trống"));
+        }
+        if (rawIds.size() > AccountService.MAX_BATCH) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error", "Tối đa " + AccountService.MAX_BATCH + " tài khoản mỗi lần"));
         }
 
-        // Nếu là bác sĩ hoặc y tá, xoá hồ sơ tương ứng bằng cách duyệt findAll()
+        List<UUID> ids = new ArrayList<>(rawIds.size());
         try {
-            if (roleName.equalsIgnoreCase("DOCTOR")) {
-                doctorRepository.findAll().stream()
-                    .filter(d -> username.equals(d.getUsername()))
-                    .forEach(doctorRepository::delete);
-            } else if (roleName.equalsIgnoreCase("NURSE")) {
-                nurseRepository.findAll().stream()
-                    .filter(n -> username.equals(n.getUsername()))
-                    .forEach(nurseRepository::delete);
-            }
-        } catch (Exception e) {
-            System.err.println("[WARN] Lỗi khi xoá hồ sơ phụ: " + e.getMessage());
+            for (Object raw : rawIds) ids.add(UUID.fromString(String.valueOf(raw)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "id không hợp lệ: " + e.getMessage()));
         }
 
-        // Xoá user
-        userRepository.deleteById(id);
+        AccountService.Result result = action.equals("delete")
+                ? accountService.delete(ids, false)
+                : accountService.disable(ids);
 
-        return ResponseEntity.ok(Map.of(
-                "message", "✅ Xoá tài khoản thành công",
-                "deletedId", id.toString(),
-                "username", username
-        ));
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("action", action);
+        res.put("affected", result.affected());
+        res.put("usernames", result.usernames());
+        res.put("skipped", result.skipped());
+        res.put("rescheduled", result.rescheduled());
+        return ResponseEntity.ok(res);
     }
-}
\ No newline at end of file
+}
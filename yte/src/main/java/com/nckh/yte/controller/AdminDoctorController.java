@@ -1,33 +1,76 @@
 package com.nckh.yte.controller;
 
 import com.nckh.yte.entity.Doctor;
+import com.nckh.yte.entity.Specialty;
 import com.nckh.yte.service.DoctorService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 
 @RestController
 @RequestMapping({"/api/admin", "/admin"})
 @CrossOrigin(origins = "*")
 public record AdminDoctorController(DoctorService service) {
 
-    record Req(String fullName, String username, String password) {}
+    record Req(String fullName, String username, String password, String specialty) {}
+
+    record SpecialtyReq(String specialty) {}
 
     @PostMapping("/create-doctor")
     public ResponseEntity<?> createDoctor(@RequestBody Req req) {
+        Specialty specialty = null;
+        if (req.specialty() != null && !req.specialty().isBlank()) {
+            Optional<Specialty> parsed = Specialty.fromLabel(req.specialty());
+            if (parsed.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Chuyên khoa không hợp lệ: " + req.specialty()));
+            }
+            specialty = parsed.get();
+        }
         try {
-            Doctor doctor = service.create(req.fullName(), req.username(), req.password());
-            return ResponseEntity.ok(Map.of(
-                    "message", "Tạo bác sĩ thành công!",
-                    "id", doctor.getId(),
-                    "fullName", doctor.getFullName(),
-                    "username", doctor.getUsername()
-            ));
+            Doctor doctor = service.create(req.fullName(), req.username(), req.password(), specialty);
+            Map<String, Object> body = new HashMap<>();
+            body.put("message", "Tạo bác sĩ thành công!");
+            body.put("id", doctor.getId());
+            body.put("fullName", doctor.getFullName());
+            body.put("username", doctor.getUsername());
+            body.put("specialty", doctor.getSpecialty() != null ? doctor.getSpecialty().getLabel() : null);
+            return ResponseEntity.ok(body);
         } catch (RuntimeException e) {
             return ResponseEntity.status(409).body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Lỗi server khi tạo bác sĩ."));
         }
     }
-}
\ No newline at end of file
+
+    // ✅ Gán/đổi chuyên khoa cho bác sĩ (nhận mã "TIM_MACH" hoặc tên "Tim mạch")
+    @PutMapping("/doctors/{id}/specialty")
+    public ResponseEntity<?> updateSpecialty(@PathVariable UUID id, @RequestBody SpecialtyReq req) {
+        Optional<Specialty> specialty = Specialty.fromLabel(req.specialty());
+        if (specialty.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Chuyên khoa không hợp lệ: " + req.specialty()));
+        }
+        try {
+            Doctor doctor = service.assignSpecialty(id, specialty.get());
+            return ResponseEntity.ok(Map.of(
+                    "id", doctor.getId(),
+                    "specialty", doctor.getSpecialty().name(),
+                    "label", doctor.getSpecialty().getLabel()
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // ✅ Danh sách chuyên khoa hợp lệ (cho dropdown FE)
+    @GetMapping("/specialties")
+    public ResponseEntity<?> specialties() {
+        return ResponseEntity.ok(Arrays.stream(Specialty.values())
+                .map(s -> Map.of("code", s.name(), "label", s.getLabel()))
+                .toList());
+    }
+}
@@ -1,19 +1,34 @@
 package com.nckh.yte.controller;
 
+import com.nckh.yte.dto.AppointmentView;
 import com.nckh.yte.entity.Appointment;
+import com.nckh.yte.entity.AppointmentStatus;
 import com.nckh.yte.repository.DoctorRepository;
 import com.nckh.yte.repository.NurseRepository;
 import com.nckh.yte.repository.PatientRepository;
 import com.nckh.yte.security.UserDetailsImpl;
+import com.nckh.yte.service.AppointmentEvents;
 import com.nckh.yte.service.AppointmentService;
+import com.nckh.yte.service.AutoBookingQueue;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.net.URI;
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 @RestController
 @RequiredArgsConstructor
@@ -22,6 +37,8 @@ import java.util.Map;
 public class AppointmentController {
 
     private final AppointmentService appointmentService;
+    private final AutoBookingQueue autoBookingQueue;
+    private final AppointmentEvents appointmentEvents;
     private final DoctorRepository doctorRepository;
     private final NurseRepository nurseRepository;
     private final PatientRepository patientRepository;
@@ -31,9 +48,11 @@ public class AppointmentController {
      * Hỗ trợ cả:
      *   - POST /api/appointments/auto-schedule   (chuẩn REST)
      *   - POST /ai/auto-schedule                 (legacy từ FE hiện tại)
+     * Trả 202 ngay với lịch hẹn PENDING; việc xếp bác sĩ chạy nền.
+     * Theo dõi kết quả qua GET /api/appointments/{id} hoặc SSE /api/appointments/{id}/events.
      */
     @PostMapping({"/api/appointments/auto-schedule", "/ai/auto-schedule"})
-    public ResponseEntity<Appointment> autoSchedule(@RequestBody Map<String, Object> body) {
+    public ResponseEntity<?> autoSchedule(@RequestBody Map<String, Object> body) {
         if (body == null) return ResponseEntity.badRequest().build();
 
         Map patientMap = (Map) body.get("patient");
@@ -51,10 +70,58 @@ public class AppointmentController {
         if (fullName == null || symptom == null || preferredDate == null || preferredWindow == null)
             return ResponseEntity.badRequest().build();
 
-        Appointment appointment = appointmentService.autoBook(
-                fullName, email, phone, gender, symptom, preferredDate, preferredWindow
-        );
-        return ResponseEntity.ok(appointment);
+        final Appointment appointment;
+        try {
+            appointment = appointmentService.autoBook(
+                    fullName, email, phone, gender, symptom, preferredDate, preferredWindow
+            );
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        try {
+            autoBookingQueue.submit(appointment.getId(), symptom);
+        } catch (TaskRejectedException e) {
+            appointmentService.cancel(appointment.getId());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .build();
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/appointments/" + appointment.getId()))
+                .body(AppointmentView.of(appointment));
+    }
+
+    /**
+     * 🔎 Trạng thái một lịch hẹn (dùng để poll sau khi đặt lịch tự động)
+     */
+    @GetMapping({"/api/appointments/{id}", "/appointments/{id}"})
+    public ResponseEntity<AppointmentView> getAppointment(@PathVariable UUID id, Authentication authentication) {
+        return appointmentService.findView(id)
+                .filter(a -> canView(a, authentication))
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * 📡 SSE: nhận một event "appointment" khi lịch hẹn được xếp xong
+     */
+    @GetMapping(value = {"/api/appointments/{id}/events", "/appointments/{id}/events"},
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> appointmentEvents(@PathVariable UUID id, Authentication authentication) {
+        return appointmentService.findView(id)
+                .filter(a -> canView(a, authentication))
+                .map(a -> ResponseEntity.ok(appointmentEvents.subscribe(a)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /** Bệnh nhân chỉ xem được lịch của chính mình; nhân viên y tế xem được tất cả. */
+    private boolean canView(AppointmentView appointment, Authentication authentication) {
+        UserDetailsImpl principal = (UserDetailsImpl) authentication.getPrincipal();
+        if (!principal.hasRole("PATIENT")) return true;
+        return appointment.getPatientId() != null
+                && patientRepository.findByUser_Username(principal.getUsername())
+                        .map(p -> appointment.getPatientId().equals(p.getId()))
+                        .orElse(false);
     }
 
     /**
@@ -62,27 +129,59 @@ public class AppointmentController {
      * Hỗ trợ cả:
      *   - GET /api/appointments/me   (chuẩn REST)
      *   - GET /appointments/me       (legacy từ FE hiện tại)
+     * Trả về read model phẳng (patientName, doctorName, ...) đọc bằng một query.
+     * Lọc: status, from/to (yyyy-MM-dd, bao gồm hai đầu).
+     * Không có {@code page} → mảng như cũ; có {@code page} →
+     * {"items": [...], page, size, totalElements, totalPages}.
      */
     @GetMapping({"/api/appointments/me", "/appointments/me"})
-    public ResponseEntity<List<Appointment>> myAppointments(Authentication authentication) {
+    public ResponseEntity<?> myAppointments(
+            Authentication authentication,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) AppointmentStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
         UserDetailsImpl principal = (UserDetailsImpl) authentication.getPrincipal();
+        AppointmentService.Owner owner = ownerOf(principal);
+
+        if (page == null) {
+            if (owner == null) return ResponseEntity.ok(List.of());
+            return ResponseEntity.ok(appointmentService.findViewList(owner, status, from, to));
+        }
 
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Page<AppointmentView> result = owner == null
+                ? Page.empty()
+                : appointmentService.findViews(owner, status, from, to,
+                        PageRequest.of(Math.max(page, 0), pageSize, AppointmentService.VIEW_ORDER));
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("items", result.getContent());
+        body.put("page", Math.max(page, 0));
+        body.put("size", pageSize);
+        body.put("totalElements", result.getTotalElements());
+        body.put("totalPages", result.getTotalPages());
+        return ResponseEntity.ok(body);
+    }
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    /** Phạm vi lịch hẹn theo vai trò; null nếu tài khoản chưa gắn hồ sơ bác sĩ/y tá/bệnh nhân. */
+    private AppointmentService.Owner ownerOf(UserDetailsImpl principal) {
         if (principal.hasAuthority("ROLE_DOCTOR")) {
-            var doctor = doctorRepository.findByUsername(principal.getUsername()).orElse(null);
-            if (doctor == null) return ResponseEntity.ok(List.of());
-            return ResponseEntity.ok(appointmentService.getAppointmentsForDoctor(doctor.getId()));
+            return doctorRepository.findByUsername(principal.getUsername())
+                    .map(d -> AppointmentService.Owner.doctor(d.getId())).orElse(null);
         } else if (principal.hasAuthority("ROLE_NURSE")) {
-            var nurse = nurseRepository.findByUsername(principal.getUsername()).orElse(null);
-            if (nurse == null) return ResponseEntity.ok(List.of());
-            return ResponseEntity.ok(appointmentService.getAppointmentsForNurse(nurse.getId()));
+            return nurseRepository.findByUsername(principal.getUsername())
+                    .map(n -> AppointmentService.Owner.nurse(n.getId())).orElse(null);
         } else if (principal.hasAuthority("ROLE_PATIENT")) {
-            var patient = patientRepository.findByUser_Username(principal.getUsername()).orElse(null);
-            if (patient == null) return ResponseEntity.ok(List.of());
-            return ResponseEntity.ok(appointmentService.getAppointmentsForPatient(patient.getId()));
+            return patientRepository.findByUser_Username(principal.getUsername())
+                    .map(p -> AppointmentService.Owner.patient(p.getId())).orElse(null);
         } else if (principal.hasAuthority("ROLE_ADMIN")) {
-            return ResponseEntity.ok(appointmentService.getAllAppointments());
+            return AppointmentService.Owner.ALL;
         }
-
-        return ResponseEntity.ok(List.of());
+        return null;
     }
 }
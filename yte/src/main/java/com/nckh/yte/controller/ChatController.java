@@ -1,12 +1,20 @@
 package com.nckh.yte.controller;
 
 import com.nckh.yte.service.ChatService;
+import com.nckh.yte.service.UpstreamGuard;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReference;
 
+@Slf4j
 @RestController
 // ✅ FIX MAPPING: Ánh xạ tới cả /api/ai và /ai
 @RequestMapping({"/api/ai", "/ai"})
@@ -16,13 +24,80 @@ public class ChatController {
 
     private final ChatService chatService;
 
+    private static final long STREAM_TIMEOUT_MS = 120_000;
+
     @PostMapping("/chat")
     public ResponseEntity<Map<String, Object>> chat(@RequestBody Map<String, String> body) {
         String message = body != null ? body.get("message") : null;
-        String reply = chatService.generateAIResponse(message);
+        String reply;
+        try {
+            reply = chatService.askAI(message);
+        } catch (UpstreamGuard.UpstreamUnavailableException e) {
+            return ResponseEntity.status(503).header("Retry-After", "30")
+                    .body(Map.of("error", "⚠️ Trợ lý AI đang quá tải, vui lòng thử lại sau."));
+        }
         if (reply == null) return ResponseEntity.status(500).body(Map.of("error", "⚠️ Không nhận được phản hồi từ AI."));
 
-        // Xây JSON tương thích Gemini (Java 8 dùng Collections + Arrays)
+        return ResponseEntity.ok(replyBody(reply));
+    }
+
+    /**
+     * Chat dạng stream (Server-Sent Events): mỗi đoạn text từ OpenAI được đẩy về ngay dưới
+     * dạng event {@code delta} ({"text": ...}); cuối cùng là event {@code done} mang đúng
+     * JSON reply/candidates như {@code POST /chat}. Lỗi (kể cả OpenAI im lặng quá lâu) thì gửi event {@code error}.
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter chatStream(@RequestBody Map<String, String> body) {
+        String message = body != null ? body.get("message") : null;
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+
+        ChatService.ChatStream stream;
+        try {
+            AtomicReference<ChatService.ChatStream> self = new AtomicReference<>();
+            stream = chatService.streamAI(message, delta -> {
+                if (!send(emitter, "delta", Map.of("text", delta))) {
+                    ChatService.ChatStream s = self.get();
+                    if (s != null) s.cancel();
+                }
+            });
+            self.set(stream);
+        } catch (UpstreamGuard.UpstreamUnavailableException e) {
+            send(emitter, "error", Map.of("error", "⚠️ Trợ lý AI đang quá tải, vui lòng thử lại sau."));
+            emitter.complete();
+            return emitter;
+        } catch (IllegalStateException e) {
+            log.warn("Không mở được chat stream: {}", e.getMessage());
+            send(emitter, "error", Map.of("error", "⚠️ Không nhận được phản hồi từ AI."));
+            emitter.complete();
+            return emitter;
+        }
+
+        emitter.onTimeout(stream::cancel);
+        emitter.onError(e -> stream.cancel());
+        stream.done().whenComplete((reply, ex) -> {
+            if (ex == null) {
+                send(emitter, "done", replyBody(reply));
+            } else if (!(ex instanceof CancellationException)) {
+                log.warn("Chat stream lỗi: {}", ex.getMessage());
+                send(emitter, "error", Map.of("error", "⚠️ Không nhận được phản hồi từ AI."));
+            }
+            emitter.complete();
+        });
+        return emitter;
+    }
+
+    /** @return false nếu client đã ngắt kết nối */
+    private static boolean send(SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    // Xây JSON tương thích Gemini
+    private static Map<String, Object> replyBody(String reply) {
         Map<String, Object> part = new HashMap<>();
         part.put("text", reply);
 
@@ -35,8 +110,7 @@ public class ChatController {
         Map<String, Object> resp = new HashMap<>();
         resp.put("reply", reply);
         resp.put("candidates", Arrays.asList(candidate));
-
-        return ResponseEntity.ok(resp);
+        return resp;
     }
 
     @GetMapping("/chat/ping")
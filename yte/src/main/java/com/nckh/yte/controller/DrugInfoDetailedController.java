@@ -1,8 +1,14 @@
 package com.nckh.yte.controller;
 
 import com.nckh.yte.OpenAIConfig;
-import com.nckh.yte.entity.Information;
-import com.nckh.yte.repository.InformationRepository;
+import com.nckh.yte.config.UpstreamHttpClients;
+import com.nckh.yte.config.UpstreamHttpProps;
+import com.nckh.yte.security.RateLimitFilter;
+import com.nckh.yte.service.DrugInfoBatchService;
+import com.nckh.yte.service.DrugInfoCache;
+import com.nckh.yte.service.DrugNameIndex;
+import com.nckh.yte.service.UpstreamGuard;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -12,6 +18,7 @@ import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.*;
 
 @RestController
@@ -22,57 +29,134 @@ import java.util.*;
 public class DrugInfoDetailedController {
 
     private final OpenAIConfig openAIConfig;
-    private final RestTemplate restTemplate;
-    private final InformationRepository informationRepository;
+    private final UpstreamHttpClients httpClients;
+    private final UpstreamHttpProps upstreamProps;
+    private final DrugInfoCache drugInfoCache;
+    private final UpstreamGuard upstreamGuard;
+    private final DrugInfoBatchService drugInfoBatchService;
+    private final DrugNameIndex drugNameIndex;
+    private final RateLimitFilter rateLimitFilter;
 
     @PostMapping("/drug-info-full")
-    public ResponseEntity<Object> getDrugInfoFull(@RequestBody Map<String, String> body) {
-        String drugName = body != null ? body.get("drug") : null;
-        if (drugName == null || drugName.isBlank()) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Missing 'drug' field!"));
+    public ResponseEntity<Object> getDrugInfoFull(
+            @RequestBody Map<String, String> body,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return lookup(body != null ? body.get("drug") : null, null, acceptEncoding, null);
+    }
+
+    /**
+     * Bản GET của tra cứu thuốc – cache được ở client/proxy, trả 304 khi If-None-Match khớp ETag.
+     * GET /api/ai/drug-info-full?drug=paracetamol
+     */
+    @GetMapping("/drug-info-full")
+    public ResponseEntity<Object> getDrugInfoFullGet(
+            @RequestParam(value = "drug", required = false) String drug,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return lookup(drug, ifNoneMatch, acceptEncoding, CacheControl.maxAge(Duration.ofHours(1)).cachePublic());
+    }
+
+    /**
+     * Gợi ý tên thuốc khi gõ (chỉ trong các thuốc đã có trong cache, không gọi AI).
+     * GET /api/ai/drug-names?q=para&limit=10 → [{"name": "Paracetamol", "key": "paracetamol"}]
+     * Không dấu vẫn khớp; gõ sai nhẹ thì trả tên gần nhất để FE hỏi lại ("amoxicilin" → Amoxicillin?).
+     */
+    @GetMapping("/drug-names")
+    public ResponseEntity<List<DrugNameIndex.Suggestion>> suggestDrugNames(
+            @RequestParam(value = "q", defaultValue = "") String q,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return ResponseEntity.ok(drugNameIndex.complete(q, Math.max(1, Math.min(limit, 50))));
+    }
+
+    /**
+     * Tra nhiều thuốc một lúc (màn hình nhà thuốc, duyệt đơn thuốc).
+     * Body: {"drugs": ["paracetamol", "amoxicillin", ...]}
+     * Trả về {"results": [{"drug", "cached", "data": {giống drug-info-full}} | {"drug", "error"}]}
+     * theo đúng thứ tự gửi lên; 503 nếu không thuốc nào lấy được do AI quá tải.
+     * Mỗi nhóm thuốc phải gọi AI tính một token hạn mức; không đủ → 429 kèm {@code Retry-After}.
+     */
+    @PostMapping("/drug-info-batch")
+    public ResponseEntity<Object> getDrugInfoBatch(@RequestBody Map<String, Object> body,
+                                                   HttpServletRequest request) {
+        if (body == null || !(body.get("drugs") instanceof List<?> drugs) || drugs.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Missing 'drugs' list!"));
+        }
+        if (drugs.size() > drugInfoBatchService.maxDrugs()) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error", "Tối đa " + drugInfoBatchService.maxDrugs() + " thuốc mỗi lần"));
         }
-        
-        final String trimmedDrugName = drugName.trim();
 
-        // 1. KIỂM TRA CACHE TRƯỚC
+        List<String> names = drugs.stream().filter(Objects::nonNull).map(Object::toString).toList();
+        if (names.stream().allMatch(n -> DrugInfoCache.normalizeKey(n.trim()).isEmpty())) {
+            return ResponseEntity.badRequest().body(Map.of("error", DrugInfoBatchService.INVALID_NAME));
+        }
         try {
-            Optional<Information> cached = informationRepository.findByName(trimmedDrugName);
-            if (cached.isPresent()) {
-                String cachedJson = cached.get().getResponseData();
-                Map<String, Object> cachedResponse = new JSONObject(cachedJson).toMap();
-                if (cachedResponse.containsKey("items")) {
-                     return ResponseEntity.ok(cachedResponse);
-                }
+            DrugInfoBatchService.BatchResult result =
+                    drugInfoBatchService.lookup(names, tokens -> rateLimitFilter.charge(request, tokens));
+            if (result.retryAfterMs() > 0) {
+                long retryAfter = Math.max(1, (result.retryAfterMs() + 999) / 1000);
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                        .body(Map.of("error", "Quá nhiều yêu cầu, vui lòng thử lại sau " + retryAfter + " giây"));
             }
+            if (result.total() == 0) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Missing 'drugs' list!"));
+            }
+            if (result.failed() == result.total()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "30")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(result.body());
+            }
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(result.body());
         } catch (Exception e) {
-            System.err.println("Lỗi khi đọc cache: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Lỗi máy chủ nội bộ (GPT): " + e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<Object> lookup(String drugName, String ifNoneMatch, String acceptEncoding,
+                                          CacheControl cacheControl) {
+        if (drugName == null || drugName.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Missing 'drug' field!"));
+        }
+        
+        final String trimmedDrugName = drugName.trim();
+        final String cacheKey = DrugInfoCache.normalizeKey(trimmedDrugName);
+        if (cacheKey.isEmpty()) {
+            // "!!!", chữ ngoài Latin… đều ra khoá rỗng – không cho dùng chung một bản ghi cache
+            return ResponseEntity.badRequest().body(Map.of("error", DrugInfoBatchService.INVALID_NAME));
         }
 
-        // 2. GỌI THẲNG GPT (OpenAI)
+        // 1. KIỂM TRA CACHE (L1 bộ nhớ → L2 bảng Information)
+        // 2. Nếu miss: GỌI GPT (OpenAI) – các request đồng thời cùng thuốc dùng chung 1 lời gọi
+        //    (request đến sau chờ tối đa bằng deadline của OpenAI, không treo theo leader)
+        // 3. LƯU KẾT QUẢ MỚI VÀO CACHE
+        long maxWaitMs = upstreamProps.pool(UpstreamHttpClients.OPENAI).getDeadlineMs();
         try {
-            Map<String, Object> aiResponse = callGptForDrugInfo(trimmedDrugName);
-            Map<String, Object> responseMap;
-
-            // Kiểm tra xem AI có trả về lỗi "không tìm thấy" không
-            if (aiResponse.containsKey("error")) {
-                responseMap = Map.of(
-                        "items", Collections.emptyList(),
-                        "message", aiResponse.get("error").toString()
-                );
-                saveToCache(trimmedDrugName, responseMap);
-                return ResponseEntity.ok(responseMap);
-            }
-            
-            // Gói nó vào list 'items'
-            List<Map<String, Object>> items = new ArrayList<>();
-            items.add(aiResponse);
-            
-            responseMap = Map.of("items", items);
+            DrugInfoCache.Entry response = drugInfoCache.getOrLoad(cacheKey, trimmedDrugName, maxWaitMs, () -> {
+                Map<String, Object> aiResponse = callGptForDrugInfo(trimmedDrugName);
 
-            // 3. LƯU KẾT QUẢ MỚI VÀO CACHE
-            saveToCache(trimmedDrugName, responseMap);
-            return ResponseEntity.ok(responseMap);
+                // Kiểm tra xem AI có trả về lỗi "không tìm thấy" không
+                if (aiResponse.containsKey("error")) {
+                    return Map.of(
+                            "items", Collections.emptyList(),
+                            "message", aiResponse.get("error").toString()
+                    );
+                }
 
+                // Gói nó vào list 'items'
+                List<Map<String, Object>> items = new ArrayList<>();
+                items.add(aiResponse);
+                return Map.of("items", items);
+            });
+            return cachedResponse(response, ifNoneMatch, acceptEncoding, cacheControl);
+
+        } catch (UpstreamGuard.UpstreamUnavailableException ex) {
+            // OpenAI đang quá tải/lỗi liên tục – báo client thử lại sau thay vì giữ thread chờ
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(Map.of("error", "Dịch vụ AI tạm thời không khả dụng, vui lòng thử lại sau."));
         } catch (HttpStatusCodeException ex) {
             // Lỗi mạng khi gọi OpenAI
             return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(Map.of(
@@ -86,18 +170,66 @@ public class DrugInfoDetailedController {
         }
     }
 
-    private void saveToCache(String drugName, Map<String, Object> responseMap) {
-        try {
-            String responseJson = new JSONObject(responseMap).toString();
-            
-            Information newCacheEntry = new Information();
-            newCacheEntry.setName(drugName); 
-            newCacheEntry.setResponseData(responseJson);
-            
-            informationRepository.save(newCacheEntry);
-        } catch (Exception e) {
-            System.err.println("Lỗi khi lưu cache: " + e.getMessage());
+    /**
+     * Ghi thẳng byte đã dựng sẵn trong cache (không parse/serialize lại):
+     * 304 nếu ETag khớp, bản gzip nếu client nhận gzip, còn lại là JSON gốc.
+     */
+    private static ResponseEntity<Object> cachedResponse(DrugInfoCache.Entry entry, String ifNoneMatch,
+                                                         String acceptEncoding, CacheControl cacheControl) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(entry.etag());
+        headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        if (cacheControl != null) headers.setCacheControl(cacheControl);
+
+        if (etagMatches(ifNoneMatch, entry.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
         }
+
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        byte[] body = entry.body();
+        if (entry.gzip() != null && acceptsGzip(acceptEncoding)) {
+            // Tomcat thấy Content-Encoding đã có nên không nén lại
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            body = entry.gzip();
+        }
+        headers.setContentLength(body.length);
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String c = candidate.trim();
+            if (c.startsWith("W/")) c = c.substring(2);
+            if (c.equals("*") || c.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /** {@code gzip} có trong Accept-Encoding với q > 0 ("gzip;q=0", "gzip;q=0.000" là từ chối). */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String part : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (!tokens[0].trim().equals("gzip")) continue;
+            return qValue(tokens) > 0;
+        }
+        return false;
+    }
+
+    /** q của một mục Accept-Encoding; không có q là 1, q sai cú pháp coi như từ chối. */
+    private static double qValue(String[] tokens) {
+        for (int i = 1; i < tokens.length; i++) {
+            String param = tokens[i].trim();
+            int eq = param.indexOf('=');
+            if (eq < 0 || !param.substring(0, eq).trim().equals("q")) continue;
+            try {
+                return Double.parseDouble(param.substring(eq + 1).trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 1;
     }
 
     private Map<String, Object> callGptForDrugInfo(String drugName) {
@@ -139,7 +271,9 @@ public class DrugInfoDetailedController {
         HttpEntity<String> req = new HttpEntity<>(body.toString(), headers);
 
         try {
-            ResponseEntity<String> res = restTemplate.exchange(uri, HttpMethod.POST, req, String.class);
+            RestTemplate restTemplate = httpClients.restTemplate(UpstreamHttpClients.OPENAI);
+            ResponseEntity<String> res = upstreamGuard.call(UpstreamHttpClients.OPENAI,
+                    () -> restTemplate.exchange(uri, HttpMethod.POST, req, String.class));
             if (!res.getStatusCode().is2xxSuccessful() || res.getBody() == null) {
                 throw new RuntimeException("Không có phản hồi từ OpenAI");
             }
@@ -156,7 +290,7 @@ public class DrugInfoDetailedController {
             JSONObject drugJson = new JSONObject(cleanedJson);
             return drugJson.toMap();
 
-        } catch (HttpStatusCodeException ex) {
+        } catch (HttpStatusCodeException | UpstreamGuard.UpstreamUnavailableException ex) {
             throw ex;
         } catch (Exception e) {
             throw new RuntimeException("Lỗi khi gọi hoặc phân tích (parse) phản hồi từ OpenAI: " + e.getMessage());
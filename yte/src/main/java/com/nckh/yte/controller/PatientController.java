@@ -1,13 +1,22 @@
 package com.nckh.yte.controller;
 
 import com.nckh.yte.dto.ApiResponse;
+import com.nckh.yte.dto.PatientListItem;
 import com.nckh.yte.entity.User;
 import com.nckh.yte.service.PatientService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
 
 @RestController
@@ -18,9 +27,40 @@ public class PatientController {
 
     private final PatientService patientService;
 
+    /**
+     * Không có {@code page}: trả về mảng như cũ. Có {@code page} (0-based)/{@code size}/{@code q}:
+     * trả về {"data": [...], page, size, totalElements, totalPages}.
+     */
     @GetMapping
-    public ResponseEntity<List<User>> list() {
-        return ResponseEntity.ok(patientService.getAll());
+    public ResponseEntity<?> list(@RequestParam(required = false) Integer page,
+                                  @RequestParam(defaultValue = "20") int size,
+                                  @RequestParam(required = false) String q) {
+        if (page == null) {
+            return ResponseEntity.ok(patientService.getAll());
+        }
+        Page<PatientListItem> result = patientService.getPage(q,
+                PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, 100)), Sort.by("username").and(Sort.by("id"))));
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("data", result.getContent());
+        body.put("page", result.getNumber());
+        body.put("size", result.getSize());
+        body.put("totalElements", result.getTotalElements());
+        body.put("totalPages", result.getTotalPages());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Xuất toàn bộ danh bạ bệnh nhân ra CSV, ghi dần theo từng lô đọc từ DB.
+     * Chạy dưới spring.mvc.async.request-timeout (application.yml), không phải 30s mặc định của Tomcat.
+     */
+    @GetMapping(value = "/export", produces = "text/csv")
+    public ResponseEntity<StreamingResponseBody> export() {
+        StreamingResponseBody body = patientService::exportCsv;
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"patients.csv\"")
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -1,7 +1,7 @@
 package com.nckh.yte.controller;
 
-import com.nckh.yte.DrugApiConfig;
-import com.nckh.yte.GeminiConfig;
+import com.nckh.yte.OpenAIConfig;
+import com.nckh.yte.config.GeminiProps;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.env.Environment;
 import org.springframework.http.ResponseEntity;
@@ -14,20 +14,20 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class TestConfigController {
     private final Environment env;
-    private final GeminiConfig gemini;
-    private final DrugApiConfig drugApi;
+    private final GeminiProps gemini;
+    private final OpenAIConfig openai;
 
     @GetMapping("/config")
     public ResponseEntity<Map<String, Object>> config() {
         String port = env.getProperty("local.server.port", env.getProperty("server.port", "8080"));
         return ResponseEntity.ok(Map.of(
             "port", port,
-            "datasource.url", env.getProperty("spring.datasource.url"),
-            "gemini.baseurl", gemini.getBaseurl(),
-            "gemini.model", gemini.getModel(),
-            "gemini.apikey_set", gemini.getApikey() != null && !gemini.getApikey().isBlank(),
-            "drugapi.baseurl", drugApi.getBaseurl(),
-            "drugapi.apikey_set", drugApi.getApikey() != null && !drugApi.getApikey().isBlank()
+            "datasource.url", String.valueOf(env.getProperty("spring.datasource.url")),
+            "gemini.baseurl", String.valueOf(gemini.getBaseUrl()),
+            "gemini.model", String.valueOf(gemini.getModel()),
+            "gemini.apikey_set", gemini.getApiKey() != null && !gemini.getApiKey().isBlank(),
+            "openai.baseurl", String.valueOf(openai.getBaseurl()),
+            "openai.apikey_set", openai.getApikey() != null && !openai.getApikey().isBlank()
         ));
     }
 }
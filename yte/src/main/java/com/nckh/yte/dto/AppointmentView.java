@@ -0,0 +1,88 @@
+package com.nckh.yte.dto;
+
+import com.nckh.yte.entity.Appointment;
+import com.nckh.yte.entity.AppointmentStatus;
+import com.nckh.yte.entity.Specialty;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Một dòng trong danh sách lịch hẹn – đọc bằng một query duy nhất (xem AppointmentRepository.findViews),
+ * không kéo theo các entity Patient/Doctor/Nurse/User.
+ */
+@Data
+@NoArgsConstructor
+public class AppointmentView {
+
+    private UUID id;
+
+    private AppointmentStatus status;
+
+    /** Lý do không xếp được lịch (status = UNASSIGNED). */
+    private String failureReason;
+
+    private String symptom;
+
+    private LocalDateTime startTime;
+
+    private LocalDateTime endTime;
+
+    private LocalDate preferredDate;
+
+    private String preferredWindow;
+
+    private UUID patientId;
+
+    private String patientName;
+
+    private UUID doctorId;
+
+    private String doctorName;
+
+    private String specialty;
+
+    private Long nurseId;
+
+    private String nurseName;
+
+    public AppointmentView(UUID id, AppointmentStatus status, String failureReason, String symptom,
+                           LocalDateTime startTime, LocalDateTime endTime,
+                           LocalDate preferredDate, String preferredWindow,
+                           UUID patientId, String patientFirstName, String patientLastName,
+                           UUID doctorId, String doctorName, Specialty specialty,
+                           Long nurseId, String nurseName) {
+        this.id = id;
+        this.status = status;
+        this.failureReason = failureReason;
+        this.symptom = symptom;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.preferredDate = preferredDate;
+        this.preferredWindow = preferredWindow;
+        this.patientId = patientId;
+        String fn = patientFirstName != null ? patientFirstName.trim() : "";
+        String ln = patientLastName != null ? patientLastName.trim() : "";
+        this.patientName = (fn + " " + ln).trim();
+        this.doctorId = doctorId;
+        this.doctorName = doctorName;
+        this.specialty = specialty != null ? specialty.getLabel() : null;
+        this.nurseId = nurseId;
+        this.nurseName = nurseName;
+    }
+
+    /** Dựng từ entity đã nạp sẵn (vd. lịch vừa tạo), không đọc thêm từ DB. */
+    public static AppointmentView of(Appointment a) {
+        var p = a.getPatient();
+        var d = a.getDoctor();
+        var n = a.getNurse();
+        return new AppointmentView(a.getId(), a.getStatus(), a.getFailureReason(), a.getSymptom(), a.getStartTime(), a.getEndTime(),
+                a.getPreferredDate(), a.getPreferredWindow(),
+                p != null ? p.getId() : null, p != null ? p.getFirstName() : null, p != null ? p.getLastName() : null,
+                d != null ? d.getId() : null, d != null ? d.getFullName() : null, d != null ? d.getSpecialty() : null,
+                n != null ? n.getId() : null, n != null ? n.getFullName() : null);
+    }
+}
@@ -0,0 +1,45 @@
+package com.nckh.yte.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Một dòng trong danh bạ bệnh nhân: tài khoản (users) + hồ sơ Patient (nếu có), đọc bằng một query.
+ * {@code id} là id của tài khoản – giống các API /patients/{id}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientListItem {
+
+    private UUID id;
+
+    private String username;
+
+    private String fullName;
+
+    private boolean enabled;
+
+    private UUID patientId;
+
+    private String firstName;
+
+    private String lastName;
+
+    private LocalDate dob;
+
+    private String phone;
+
+    private String email;
+
+    private String address;
+
+    private String gender;
+
+    private String department;
+
+}
@@ -0,0 +1,27 @@
+package com.nckh.yte.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Một dòng trong danh sách tài khoản (admin) – chỉ các cột cần hiển thị, không có password.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserSummary {
+
+    private UUID id;
+
+    private String fullName;
+
+    private String username;
+
+    private String role;
+
+    private boolean enabled;
+
+}
@@ -7,7 +7,13 @@ import java.time.LocalDateTime;
 import java.util.UUID; 
 
 @Entity
-@Table(name = "appointments")
+@Table(name = "appointments", indexes = {
+        @Index(name = "idx_appointment_doctor_start", columnList = "doctor_id, startTime"),
+        @Index(name = "idx_appointment_patient", columnList = "patient_id"),
+        @Index(name = "idx_appointment_nurse", columnList = "nurse_id"),
+        @Index(name = "idx_appointment_status", columnList = "status"),
+        @Index(name = "idx_appointment_start", columnList = "startTime")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -44,4 +50,7 @@ public class Appointment {
     @Enumerated(EnumType.STRING)
     @Builder.Default
     private AppointmentStatus status = AppointmentStatus.PENDING; // ✅ Đổi mặc định thành PENDING
+
+    @Column(length = 500)
+    private String failureReason; // Lý do khi status = UNASSIGNED
 }
\ No newline at end of file
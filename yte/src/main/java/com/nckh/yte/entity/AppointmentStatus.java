@@ -6,6 +6,8 @@ package com.nckh.yte.entity;
 public enum AppointmentStatus {
     /** Yêu cầu mới, đang chờ hệ thống xử lý và xếp lịch. */
     PENDING,
+    /** Không xếp được lịch tự động (hết slot, ngày đã qua, lỗi xử lý); lý do trong failureReason. Không xử lý lại. */
+    UNASSIGNED,
     /** Đã được xếp lịch (có bác sĩ, thời gian cụ thể). */
     SCHEDULED,
     /** Đã hoàn thành. */
@@ -9,6 +9,8 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_doctor_username", columnNames = "username"),
+        indexes = @Index(name = "idx_doctor_specialty", columnList = "specialty"))
 public class Doctor {
 
     @Id
@@ -18,6 +20,10 @@ public class Doctor {
     private String fullName;
     private String username;
 
+    @Enumerated(EnumType.STRING)
+    @Column(length = 32)
+    private Specialty specialty;
+
     // ===== THÊM GETTER & SETTER THỦ CÔNG =====
     public UUID getId() { return id; }
     public void setId(UUID id) { this.id = id; }
@@ -27,4 +33,7 @@ public class Doctor {
 
     public String getUsername() { return username; }
     public void setUsername(String username) { this.username = username; }
+
+    public Specialty getSpecialty() { return specialty; }
+    public void setSpecialty(Specialty specialty) { this.specialty = specialty; }
 }
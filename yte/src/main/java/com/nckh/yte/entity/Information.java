@@ -8,6 +8,8 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_information_name_key", columnNames = "name_key"),
+        indexes = @Index(name = "idx_information_name", columnList = "name"))
 public class Information {
 
     @Id
@@ -16,6 +18,10 @@ public class Information {
 
     private String name;
 
+    /** Khoá tra cứu đã chuẩn hoá (bỏ dấu, chữ thường) – xem {@code VietnameseText.fold}. */
+    @Column(name = "name_key")
+    private String nameKey;
+
     @Column(columnDefinition="TEXT")
     private String responseData;
 
@@ -35,4 +41,12 @@ public class Information {
     public String getResponseData() {
         return responseData;
     }
+
+    public void setNameKey(String nameKey) {
+        this.nameKey = nameKey;
+    }
+
+    public String getNameKey() {
+        return nameKey;
+    }
 }
@@ -1,10 +1,14 @@
 package com.nckh.yte.entity;
 
 import jakarta.persistence.*;
-import lombok.Data;
+import lombok.*;
 
 @Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_nurse_username", columnNames = "username"))
 public class Nurse {
 
     @Id
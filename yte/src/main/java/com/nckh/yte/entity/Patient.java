@@ -7,7 +7,7 @@ import java.time.LocalDate;
 import java.util.UUID; 
 
 @Entity
-@Table(name = "patient") // Tên table nên là "patients" (số nhiều)
+@Table(name = "patient", indexes = @Index(name = "idx_patient_user", columnList = "user_id")) // Tên table nên là "patients" (số nhiều)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -1,9 +1,15 @@
 package com.nckh.yte.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.util.UUID;
 
+// Bốn role cố định → cache L2 (chỉ đọc), nạp User không cần query bảng role
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_role_name", columnNames = "name"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "role")
 public class Role {
 
     @Id
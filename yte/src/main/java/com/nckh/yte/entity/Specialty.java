@@ -0,0 +1,50 @@
+package com.nckh.yte.entity;
+
+import com.nckh.yte.util.VietnameseText;
+
+import java.util.Optional;
+
+/**
+ * Mã chuyên khoa chuẩn hoá, lưu trong cột {@code doctor.specialty}.
+ * {@link #getLabel()} là tên hiển thị tiếng Việt (cũng là giá trị Gemini trả về).
+ */
+public enum Specialty {
+    TIM_MACH("Tim mạch"),
+    CO_XUONG_KHOP("Cơ xương khớp"),
+    TAI_MUI_HONG("Tai mũi họng"),
+    DA_LIEU("Da liễu"),
+    RANG_HAM_MAT("Răng hàm mặt"),
+    NOI_TIET("Nội tiết"),
+    TIEU_HOA("Tiêu hóa"),
+    DA_KHOA("Đa khoa");
+
+    private final String label;
+    private final String folded;
+
+    Specialty(String label) {
+        this.label = label;
+        this.folded = VietnameseText.fold(label);
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Nhận cả mã ("TIM_MACH") lẫn tên hiển thị, có dấu hoặc không ("Tim mạch", "tim mach",
+     * "Khoa Tim mạch").
+     */
+    public static Optional<Specialty> fromLabel(String value) {
+        if (value == null || value.isBlank()) return Optional.empty();
+        String f = VietnameseText.fold(value);
+        for (Specialty s : values()) {
+            if (f.equals(s.folded) || f.equals(s.name().toLowerCase().replace('_', ' '))) {
+                return Optional.of(s);
+            }
+        }
+        for (Specialty s : values()) {
+            if ((" " + f + " ").contains(" " + s.folded + " ")) return Optional.of(s);
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,30 @@
+package com.nckh.yte.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Kết quả phân loại triệu chứng → chuyên khoa đã lấy từ Gemini, lưu lại để dùng sau khi khởi động lại.
+ * Khoá là dấu vân tay của triệu chứng (xem {@code SymptomSpecialtyCache.fingerprint}).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "symptom_specialty",
+        indexes = @Index(name = "idx_symptom_specialty_created", columnList = "createdAt"))
+public class SymptomSpecialty {
+
+    @Id
+    @Column(length = 255)
+    private String fingerprint;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 32, nullable = false)
+    private Specialty specialty;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -2,12 +2,22 @@ package com.nckh.yte.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import java.time.Instant;
 import java.util.UUID;
 
 @Data
+@Builder
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Table(name = "users", // "user" là từ khoá của Postgres
+        uniqueConstraints = @UniqueConstraint(name = "uk_users_username", columnNames = "username"),
+        indexes = {
+        @Index(name = "idx_user_username_id", columnList = "username, id"),
+        @Index(name = "idx_user_role", columnList = "role_id")
+})
 public class User {
 
     @Id
@@ -18,8 +28,12 @@ public class User {
     private String password;
     private String fullName;
     private boolean enabled;
+    /** Token có {@code iat} trước mốc này (theo giây) không còn hiệu lực; null = chưa thu hồi lần nào. */
+    private Instant tokensValidAfter;
 
+    // Nạp role bằng id (select riêng) để lấy từ cache L2 thay vì join mỗi lần
     @ManyToOne
+    @Fetch(FetchMode.SELECT)
     private Role role;
 
     // ===== THÊM GETTER & SETTER THỦ CÔNG =====
@@ -38,6 +52,9 @@ public class User {
     public boolean isEnabled() { return enabled; }
     public void setEnabled(boolean enabled) { this.enabled = enabled; }
 
+    public Instant getTokensValidAfter() { return tokensValidAfter; }
+    public void setTokensValidAfter(Instant tokensValidAfter) { this.tokensValidAfter = tokensValidAfter; }
+
     public Role getRole() { return role; }
     public void setRole(Role role) { this.role = role; }
 }
@@ -1,8 +1,21 @@
 package com.nckh.yte.repository;
 
+import com.nckh.yte.dto.AppointmentView;
 import com.nckh.yte.entity.Appointment;
+import com.nckh.yte.entity.AppointmentStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID; // ✅ Thêm import
 
 // ✅ Sửa: Long -> UUID
@@ -11,9 +24,112 @@ public interface AppointmentRepository extends JpaRepository<Appointment, UUID>
     // ✅ Sửa: Long -> UUID
     List<Appointment> findByDoctorId(UUID doctorId);
 
-    // ✅ Sửa: Long -> UUID
-    List<Appointment> findByNurseId(UUID nurseId);
+    // Nurse dùng id kiểu Long (IDENTITY)
+    List<Appointment> findByNurseId(Long nurseId);
 
     // ✅ Sửa: Long -> UUID
     List<Appointment> findByPatientId(UUID patientId);
-}
\ No newline at end of file
+
+    /** Lịch đã xếp trong tương lai của các bác sĩ – cần xếp lại khi bác sĩ bị xoá. */
+    interface Reassignable {
+        UUID getId();
+        String getSymptom();
+    }
+
+    @Query("select a.id as id, a.symptom as symptom from Appointment a " +
+           "where a.doctor.id in :doctorIds and a.status = :status and a.startTime >= :from")
+    List<Reassignable> findReassignable(@Param("doctorIds") Collection<UUID> doctorIds,
+                                        @Param("status") AppointmentStatus status,
+                                        @Param("from") LocalDateTime from);
+
+    /** Trả các lịch về PENDING, chưa có bác sĩ/giờ khám, để AutoBookingQueue xếp lại. */
+    @Modifying
+    @Query("update Appointment a set a.doctor = null, a.startTime = null, a.endTime = null, " +
+           "a.status = com.nckh.yte.entity.AppointmentStatus.PENDING where a.id in :ids")
+    int resetToPending(@Param("ids") Collection<UUID> ids);
+
+    /** Lịch sử khám vẫn giữ, chỉ bỏ liên kết tới bác sĩ đã xoá. */
+    @Modifying
+    @Query("update Appointment a set a.doctor = null where a.doctor.id in :doctorIds")
+    int detachDoctors(@Param("doctorIds") Collection<UUID> doctorIds);
+
+    @Modifying
+    @Query("update Appointment a set a.nurse = null where a.nurse.id in :nurseIds")
+    int detachNurses(@Param("nurseIds") Collection<Long> nurseIds);
+
+    /** Giờ khám đang giữ của các bệnh nhân – cần trả lại DoctorScheduleIndex khi xoá lịch. */
+    @Query("select a.doctor.id as doctorId, a.startTime as startTime, a.endTime as endTime " +
+           "from Appointment a " +
+           "where a.patient.id in :patientIds and a.doctor is not null and a.status = :status")
+    List<BookedSlot> findSlotsOfPatients(@Param("patientIds") Collection<UUID> patientIds,
+                                         @Param("status") AppointmentStatus status);
+
+    @Modifying
+    @Query("delete from Appointment a where a.patient.id in :patientIds")
+    int deleteByPatientIdIn(@Param("patientIds") Collection<UUID> patientIds);
+
+    /** Yêu cầu đặt lịch chưa được xếp bác sĩ (dùng để xử lý lại sau khi khởi động; UNASSIGNED không nằm trong đó). */
+    List<Appointment> findByStatusAndDoctorIsNull(AppointmentStatus status);
+
+    /** Khoảng thời gian đã có bác sĩ nhận – chỉ lấy 3 cột cần cho DoctorScheduleIndex. */
+    interface BookedSlot {
+        UUID getDoctorId();
+        LocalDateTime getStartTime();
+        LocalDateTime getEndTime();
+    }
+
+    @Query("select a.doctor.id as doctorId, a.startTime as startTime, a.endTime as endTime " +
+           "from Appointment a " +
+           "where a.doctor is not null and a.startTime >= :from and a.startTime < :to and a.status <> :excluded")
+    List<BookedSlot> findBookedSlots(@Param("from") LocalDateTime from,
+                                     @Param("to") LocalDateTime to,
+                                     @Param("excluded") AppointmentStatus excluded);
+
+    String VIEW_FROM =
+            "from Appointment a left join a.patient p left join a.doctor d left join a.nurse n " +
+            "where (:patientId is null or p.id = :patientId) " +
+            "and (:doctorId is null or d.id = :doctorId) " +
+            "and (:nurseId is null or n.id = :nurseId) " +
+            "and (:status is null or a.status = :status) " +
+            // Lịch chưa xếp giờ (PENDING) thì lọc theo ngày mong muốn
+            "and (:from is null or a.startTime >= :from or (a.startTime is null and a.preferredDate >= :fromDate)) " +
+            "and (:to is null or a.startTime < :to or (a.startTime is null and a.preferredDate < :toDate)) ";
+
+    String VIEW_SELECT =
+            "select new com.nckh.yte.dto.AppointmentView(a.id, a.status, a.failureReason, a.symptom, a.startTime, a.endTime, " +
+            "a.preferredDate, a.preferredWindow, p.id, p.firstName, p.lastName, " +
+            "d.id, d.fullName, d.specialty, n.id, n.fullName) ";
+
+    /**
+     * Danh sách lịch hẹn dạng read model: một query join sẵn bệnh nhân/bác sĩ/y tá.
+     * Tham số null = không lọc. {@code from}/{@code to} là nửa khoảng [from, to);
+     * {@code fromDate}/{@code toDate} là ngày tương ứng (cho lịch chưa có giờ khám).
+     */
+    @Query(value = VIEW_SELECT + VIEW_FROM, countQuery = "select count(a) " + VIEW_FROM)
+    Page<AppointmentView> findViews(@Param("patientId") UUID patientId,
+                                    @Param("doctorId") UUID doctorId,
+                                    @Param("nurseId") Long nurseId,
+                                    @Param("status") AppointmentStatus status,
+                                    @Param("from") LocalDateTime from,
+                                    @Param("fromDate") LocalDate fromDate,
+                                    @Param("to") LocalDateTime to,
+                                    @Param("toDate") LocalDate toDate,
+                                    Pageable pageable);
+
+    /** Như {@link #findViews} nhưng trả về toàn bộ (API cũ không phân trang). */
+    @Query(VIEW_SELECT + VIEW_FROM)
+    List<AppointmentView> findViewList(@Param("patientId") UUID patientId,
+                                       @Param("doctorId") UUID doctorId,
+                                       @Param("nurseId") Long nurseId,
+                                       @Param("status") AppointmentStatus status,
+                                       @Param("from") LocalDateTime from,
+                                       @Param("fromDate") LocalDate fromDate,
+                                       @Param("to") LocalDateTime to,
+                                       @Param("toDate") LocalDate toDate,
+                                       Sort sort);
+
+    /** Một lịch hẹn dạng read model (API trạng thái, SSE) – không trả entity ra ngoài. */
+    @Query(VIEW_SELECT + "from Appointment a left join a.patient p left join a.doctor d left join a.nurse n " +
+            "where a.id = :id")
+    Optional<AppointmentView> findViewById(@Param("id") UUID id);
+}
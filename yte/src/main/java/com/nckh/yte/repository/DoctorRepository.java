@@ -1,7 +1,12 @@
 package com.nckh.yte.repository;
 
 import com.nckh.yte.entity.Doctor;
+import com.nckh.yte.entity.Specialty;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List; // ✅ Thêm import (hoặc bỏ java.util. ở dưới)
 import java.util.Optional; // ✅ Thêm import (hoặc bỏ java.util. ở dưới)
 import java.util.UUID; // ✅ Thêm import
@@ -21,14 +26,28 @@ public interface DoctorRepository extends JpaRepository<Doctor, UUID> {
     Optional<Doctor> findByUsername(String username);
 
     /**
-     * Find doctors by specialty name ignoring case.  Although the current
-     * {@link Doctor} entity does not define a {@code specialty} property, this
-     * method is provided for future compatibility.  It will only be used if
-     * such a property is added later.
+     * Find doctors with the given specialty code (indexed column).
      *
-     * @param specialty the specialty to search for
+     * @param specialty the specialty code
      * @return list of matching doctors
      */
-    // ✅ (Bỏ java.util.)
-    List<Doctor> findBySpecialtyIgnoreCase(String specialty);
+    List<Doctor> findBySpecialty(Specialty specialty);
+
+    /** Only the columns {@code DoctorRoster} needs. */
+    interface IdAndSpecialty {
+        UUID getId();
+        Specialty getSpecialty();
+    }
+
+    /** Bác sĩ có tài khoản bị vô hiệu hoá không nhận lịch mới. */
+    @Query("select d.id as id, d.specialty as specialty from Doctor d " +
+           "where not exists (select 1 from User u where u.username = d.username and u.enabled = false)")
+    List<IdAndSpecialty> findAllIdsAndSpecialties();
+
+    @Query("select d.id from Doctor d where d.username in :usernames")
+    List<UUID> findIdsByUsernameIn(@Param("usernames") Collection<String> usernames);
+
+    @Modifying
+    @Query("delete from Doctor d where d.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<UUID> ids);
 }
\ No newline at end of file
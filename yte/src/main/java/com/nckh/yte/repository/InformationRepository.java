@@ -1,10 +1,19 @@
 package com.nckh.yte.repository;
 
 import com.nckh.yte.entity.Information;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 /**
  * Repository cho {@link Information} entity (hiện đang là Drug Cache).
@@ -12,10 +21,51 @@ import java.util.UUID;
  */
 public interface InformationRepository extends JpaRepository<Information, UUID> {
 
+    /**
+     * Tìm một bản ghi cache theo khoá đã chuẩn hoá (bỏ dấu, chữ thường).
+     * @param nameKey Khoá tra cứu, xem {@code VietnameseText.fold}.
+     * @return Optional chứa bản ghi cache nếu tìm thấy.
+     */
+    Optional<Information> findFirstByNameKey(String nameKey);
+
     /**
      * Tìm một bản ghi cache dựa trên tên thuốc (tra cứu chính xác, phân biệt chữ hoa/thường).
+     * Chỉ dùng cho các bản ghi cũ chưa có {@code nameKey}.
      * @param name Tên thuốc đã nhập.
      * @return Optional chứa bản ghi cache nếu tìm thấy.
      */
-    Optional<Information> findByName(String name);
-}
\ No newline at end of file
+    Optional<Information> findFirstByName(String name);
+
+    /**
+     * Tra nhiều khoá trong một câu {@code IN} (dùng cho tra cứu theo lô).
+     * @param nameKeys Các khoá đã chuẩn hoá.
+     * @return Các bản ghi tìm thấy (không theo thứ tự).
+     */
+    List<Information> findByNameKeyIn(Collection<String> nameKeys);
+
+    /**
+     * Bản ghi cũ chưa có {@code nameKey}, tra theo tên gốc.
+     * @param names Các tên thuốc đã trim.
+     * @return Các bản ghi tìm thấy.
+     */
+    List<Information> findByNameInAndNameKeyIsNull(Collection<String> names);
+
+    /** Các cột {@code DrugNameIndex} cần để dựng chỉ mục tên thuốc. */
+    interface NameRow {
+        String getNameKey();
+        String getName();
+        String getResponseData();
+    }
+
+    /**
+     * Duyệt toàn bộ cache thuốc theo từng lô (không nạp hết vào bộ nhớ).
+     * Phải gọi trong transaction và đóng stream sau khi dùng.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "200"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select i.nameKey as nameKey, i.name as name, i.responseData as responseData " +
+           "from Information i where i.nameKey is not null")
+    Stream<NameRow> streamNameRows();
+}
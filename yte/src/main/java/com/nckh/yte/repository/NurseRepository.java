@@ -2,11 +2,16 @@ package com.nckh.yte.repository;
 
 import com.nckh.yte.entity.Nurse;
 
-import java.util.UUID;
+import java.util.Collection;
+import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface NurseRepository extends JpaRepository<Nurse, UUID> {
+// Nurse dùng id kiểu Long (IDENTITY)
+public interface NurseRepository extends JpaRepository<Nurse, Long> {
     boolean existsByUsername(String username);
 
     /**
@@ -17,4 +22,11 @@ public interface NurseRepository extends JpaRepository<Nurse, UUID> {
      * @return an optional nurse record
      */
     java.util.Optional<Nurse> findByUsername(String username);
+
+    @Query("select n.id from Nurse n where n.username in :usernames")
+    List<Long> findIdsByUsernameIn(@Param("usernames") Collection<String> usernames);
+
+    @Modifying
+    @Query("delete from Nurse n where n.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -3,7 +3,12 @@ package com.nckh.yte.repository;
 import com.nckh.yte.entity.Patient;
 import com.nckh.yte.entity.User; // ✅ Thêm import
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID; // ✅ Thêm import
 
@@ -15,4 +20,11 @@ public interface PatientRepository extends JpaRepository<Patient, UUID> {
     
     // (Bạn có thể xóa phương thức cũ này đi nếu không dùng ở đâu khác)
     Optional<Patient> findByUser_Username(String username); 
+
+    @Query("select p.id from Patient p where p.user.id in :userIds")
+    List<UUID> findIdsByUserIdIn(@Param("userIds") Collection<UUID> userIds);
+
+    @Modifying
+    @Query("delete from Patient p where p.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<UUID> ids);
 }
\ No newline at end of file
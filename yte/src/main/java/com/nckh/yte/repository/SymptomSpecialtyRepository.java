@@ -0,0 +1,22 @@
+package com.nckh.yte.repository;
+
+import com.nckh.yte.entity.SymptomSpecialty;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository cho cache phân loại triệu chứng ({@link SymptomSpecialty}).
+ */
+public interface SymptomSpecialtyRepository extends JpaRepository<SymptomSpecialty, String> {
+
+    /** Xoá các kết quả đã quá hạn. */
+    @Modifying
+    @Transactional
+    @Query("delete from SymptomSpecialty s where s.createdAt < :before")
+    int deleteOlderThan(@Param("before") LocalDateTime before);
+}
@@ -1,8 +1,23 @@
 package com.nckh.yte.repository;
 
+import com.nckh.yte.dto.PatientListItem;
+import com.nckh.yte.dto.UserSummary;
 import com.nckh.yte.entity.User;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
 import java.util.*;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 /**
  * Repository for accessing user data.
@@ -19,4 +34,94 @@ public interface UserRepository extends JpaRepository<User, UUID> {
      * Example: findByRole_NameIgnoreCase("PATIENT")
      */
     List<User> findByRole_NameIgnoreCase(String roleName);
+
+    /**
+     * Danh sách tài khoản (trừ ADMIN) dạng projection, lọc theo role và từ khoá ngay trong SQL.
+     * @param role tên role viết hoa (null = mọi role)
+     * @param q mẫu LIKE đã viết thường, ví dụ "%an%" (null = không lọc)
+     */
+    @Query(value = "select new com.nckh.yte.dto.UserSummary(u.id, u.fullName, u.username, r.name, u.enabled) " +
+                   "from User u left join u.role r " +
+                   "where (r.name is null or upper(r.name) <> 'ADMIN') " +
+                   "and (:role is null or upper(r.name) = :role) " +
+                   "and (:q is null or lower(u.username) like :q or lower(u.fullName) like :q)",
+           countQuery = "select count(u) from User u left join u.role r " +
+                        "where (r.name is null or upper(r.name) <> 'ADMIN') " +
+                        "and (:role is null or upper(r.name) = :role) " +
+                        "and (:q is null or lower(u.username) like :q or lower(u.fullName) like :q)")
+    Page<UserSummary> searchSummaries(@Param("role") String role, @Param("q") String q, Pageable pageable);
+
+    /**
+     * Như {@link #searchSummaries} nhưng phân trang theo keyset (username, id): trang sâu
+     * vẫn chỉ đọc đúng {@code pageable.getPageSize()} dòng qua index thay vì bỏ qua OFFSET dòng.
+     * Trang đầu tiên: truyền afterUsername = "" và afterId = null.
+     */
+    @Query("select new com.nckh.yte.dto.UserSummary(u.id, u.fullName, u.username, r.name, u.enabled) " +
+           "from User u left join u.role r " +
+           "where (r.name is null or upper(r.name) <> 'ADMIN') " +
+           "and (:role is null or upper(r.name) = :role) " +
+           "and (:q is null or lower(u.username) like :q or lower(u.fullName) like :q) " +
+           "and (u.username > :afterUsername or (u.username = :afterUsername and (:afterId is null or u.id > :afterId))) " +
+           "order by u.username, u.id")
+    List<UserSummary> searchSummariesAfter(@Param("role") String role,
+                                           @Param("q") String q,
+                                           @Param("afterUsername") String afterUsername,
+                                           @Param("afterId") UUID afterId,
+                                           Pageable pageable);
+
+    String PATIENT_LIST_SELECT =
+            "select new com.nckh.yte.dto.PatientListItem(u.id, u.username, u.fullName, u.enabled, " +
+            "p.id, p.firstName, p.lastName, p.dob, p.phone, p.email, p.address, p.gender, p.department) " +
+            "from User u join u.role r left join Patient p on p.user = u ";
+    String PATIENT_LIST_WHERE =
+            "where r.name = :role " +
+            "and (:q is null or lower(u.username) like :q or lower(u.fullName) like :q or p.phone like :q) ";
+
+    /**
+     * Danh bạ bệnh nhân: tài khoản có role {@code role} kèm hồ sơ Patient, một query cho cả trang.
+     * @param q mẫu LIKE đã viết thường, ví dụ "%an%" (null = không lọc)
+     */
+    @Query(value = PATIENT_LIST_SELECT + PATIENT_LIST_WHERE,
+           countQuery = "select count(u) from User u join u.role r left join Patient p on p.user = u " + PATIENT_LIST_WHERE)
+    Page<PatientListItem> findPatientList(@Param("role") String role, @Param("q") String q, Pageable pageable);
+
+    /**
+     * Toàn bộ danh bạ bệnh nhân dạng stream (đọc theo lô từ cursor DB, không nạp hết vào bộ nhớ).
+     * Phải gọi trong transaction và đóng stream sau khi dùng.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query(PATIENT_LIST_SELECT + "where r.name = :role order by u.username, u.id")
+    Stream<PatientListItem> streamPatientList(@Param("role") String role);
+
+    /** id + username + tên role – đủ để xoá/vô hiệu hoá tài khoản mà không nạp entity. */
+    interface AccountRef {
+        UUID getId();
+        String getUsername();
+        String getRole();
+    }
+
+    @Query("select u.id as id, u.username as username, r.name as role from User u left join u.role r " +
+           "where u.id in :ids")
+    List<AccountRef> findAccountRefs(@Param("ids") Collection<UUID> ids);
+
+    @Modifying
+    @Query("delete from User u where u.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /** Khoá tài khoản và thu hồi mọi token đã phát hành (mở khoá lại cũng không dùng lại được token cũ). */
+    @Modifying
+    @Query("update User u set u.enabled = false, u.tokensValidAfter = :now where u.id in :ids and u.enabled = true")
+    int disableByIdIn(@Param("ids") Collection<UUID> ids, @Param("now") Instant now);
+
+    /** Trạng thái tài khoản cần cho mỗi request đã đăng nhập (xem TokenRevocationRegistry). */
+    interface AuthState {
+        boolean isEnabled();
+        Instant getTokensValidAfter();
+    }
+
+    @Query("select u.enabled as enabled, u.tokensValidAfter as tokensValidAfter from User u where u.id = :id")
+    Optional<AuthState> findAuthState(@Param("id") UUID id);
 }
@@ -0,0 +1,91 @@
+package com.nckh.yte.security;
+
+import com.nckh.yte.config.RateLimitProps;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bucket dùng chung giữa các instance, lưu trong bảng {@code rate_limit_bucket} (Postgres).
+ * Mỗi lần lấy token là một câu upsert có điều kiện – DB tự khoá dòng, không cần round-trip đọc trước.
+ * Đồng hồ là epoch millis của từng instance, nên các máy cần đồng bộ NTP.
+ * DB lỗi thì cho qua (fail-open): giới hạn tần suất không được làm sập luồng đặt lịch.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.store", havingValue = "jdbc")
+public class JdbcRateLimitStore implements RateLimitStore {
+
+    private static final long SWEEP_INTERVAL_MS = 60_000;
+
+    /** Bucket mới cũng phải qua điều kiện capacity: xin nhiều hơn capacity thì không chèn dòng nào. */
+    private static final String ACQUIRE_SQL =
+            "INSERT INTO rate_limit_bucket (bucket_key, tat) SELECT ?, ? WHERE ? <= ? " +
+            "ON CONFLICT (bucket_key) DO UPDATE " +
+            "SET tat = GREATEST(rate_limit_bucket.tat, ?) + ? " +
+            "WHERE GREATEST(rate_limit_bucket.tat, ?) + ? - ? <= ? " +
+            "RETURNING tat";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AtomicLong lastSweep = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public JdbcRateLimitStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public long tryAcquire(String key, RateLimitProps.Rule rule, int tokens) {
+        long now = System.currentTimeMillis();
+        long interval = Math.max(1, TimeUnit.NANOSECONDS.toMillis(rule.intervalNanos()));
+        long burst = interval * Math.max(1, rule.getCapacity());
+        long cost = interval * Math.max(1, tokens);
+
+        try {
+            List<Long> granted = jdbcTemplate.queryForList(ACQUIRE_SQL, Long.class,
+                    key, now + cost, cost, burst,
+                    now, cost,
+                    now, cost, now, burst);
+            if (!granted.isEmpty()) {
+                sweep(now);
+                return 0;
+            }
+            List<Long> tat = jdbcTemplate.queryForList(
+                    "SELECT tat FROM rate_limit_bucket WHERE bucket_key = ?", Long.class, key);
+            long next = Math.max(tat.isEmpty() ? now : tat.get(0), now) + cost;
+            return Math.max(1, next - now - burst);
+        } catch (DataAccessException e) {
+            if (failures.incrementAndGet() % 100 == 1) {
+                log.warn("Không truy cập được rate_limit_bucket, tạm bỏ qua giới hạn: {}", e.getMessage());
+            }
+            return 0;
+        }
+    }
+
+    /** Bucket có mốc đã qua là bucket đầy – xoá cho bảng gọn. */
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL_MS || !lastSweep.compareAndSet(last, now)) return;
+        try {
+            jdbcTemplate.update("DELETE FROM rate_limit_bucket WHERE tat < ?", now);
+        } catch (DataAccessException e) {
+            log.debug("Dọn rate_limit_bucket lỗi: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("store", "jdbc");
+        s.put("failures", failures.get());
+        return s;
+    }
+}
@@ -1,27 +1,44 @@
 package com.nckh.yte.security;
 
+import com.nckh.yte.config.RequestMdcFilter;
 import com.nckh.yte.service.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
+import java.util.Date;
 
 /**
  * Filter JWT chạy 1 lần mỗi request, xác thực token và gán SecurityContextHolder.
+ * Mặc định principal được dựng thẳng từ claims (không truy vấn DB) và token đã
+ * xác thực được giữ trong {@link VerifiedTokenCache} đến khi hết hạn; user bị xoá/khoá hoặc token
+ * phát hành trước lần đổi mật khẩu vẫn bị chặn qua {@link TokenRevocationRegistry} (đọc DB, cache ngắn).
+ * Đặt {@code app.jwt.stateless=false} để quay về tra user trong DB mỗi request.
  */
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class JwtAuthFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserDetailsServiceImpl userDetailsService;
+    private final TokenRevocationRegistry revocationRegistry;
+    private final VerifiedTokenCache tokenCache;
+
+    @Value("${app.jwt.stateless:true}")
+    private boolean stateless;
 
     @Override
     protected void doFilterInternal(HttpServletRequest req,
@@ -32,21 +49,15 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         final String path = req.getServletPath();
         final String header = req.getHeader("Authorization");
 
-        System.out.println("──────────────────────────────────────────────");
-        System.out.println("[JwtAuthFilter] 🔍 Path: " + path);
-        System.out.println("[JwtAuthFilter] 🔍 Authorization header: " + header);
-
         // ✅ Chỉ bỏ qua auth & swagger
         if (path.startsWith("/api/auth/")
                 || path.startsWith("/swagger-ui/")
                 || path.startsWith("/v3/api-docs")) {
-            System.out.println("[JwtAuthFilter] ⚙️ Public endpoint → skip JWT check");
             chain.doFilter(req, res);
             return;
         }
 
         if (header == null || !header.startsWith("Bearer ")) {
-            System.out.println("[JwtAuthFilter] ⚠️ Không có header Bearer hợp lệ → skip");
             chain.doFilter(req, res);
             return;
         }
@@ -54,41 +65,65 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         final String token = header.substring(7).trim();
 
         try {
-            boolean valid = jwtUtil.validate(token);
-            System.out.println("[JwtAuthFilter] ✅ Token valid? " + valid);
-
-            if (!valid) {
-                System.err.println("[JwtAuthFilter] ❌ Token không hợp lệ hoặc hết hạn!");
-                res.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                res.setContentType("application/json");
-                res.getWriter().write("{\"error\":\"Invalid or expired token\"}");
-                return;
-            }
-
-            final String username = jwtUtil.extractUsername(token);
-            System.out.println("[JwtAuthFilter] 👤 Username extracted: " + username);
-
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                var userDetails = userDetailsService.loadUserByUsername(username);
-                System.out.println("[JwtAuthFilter] 🧩 Authorities: " + userDetails.getAuthorities());
+            if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                UserDetailsImpl userDetails;
+                Date issuedAt;
+
+                VerifiedTokenCache.Entry cached = stateless ? tokenCache.get(token) : null;
+                if (cached != null) {
+                    // ✅ Token đã xác thực trước đó và còn hạn → bỏ qua HMAC + decode claims
+                    userDetails = cached.principal();
+                    issuedAt = cached.issuedAt();
+                } else {
+                    // ✅ Parse + xác thực chữ ký đúng 1 lần
+                    final Claims claims;
+                    try {
+                        claims = jwtUtil.parseClaims(token);
+                    } catch (JwtException | IllegalArgumentException e) {
+                        log.debug("Token {} không hợp lệ hoặc hết hạn: {}", JwtUtil.redact(token), e.getMessage());
+                        unauthorized(res, "Invalid or expired token");
+                        return;
+                    }
+                    if (claims.getSubject() == null) {
+                        chain.doFilter(req, res);
+                        return;
+                    }
+
+                    // Stateless: dựng principal từ claims roles/uid, không truy vấn DB.
+                    // Token cũ thiếu uid (hoặc tắt app.jwt.stateless) → tra DB như trước.
+                    userDetails = stateless ? UserDetailsImpl.fromClaims(claims) : null;
+                    if (userDetails != null) {
+                        tokenCache.put(token, userDetails, claims.getIssuedAt(), claims.getExpiration());
+                    } else {
+                        userDetails = (UserDetailsImpl) userDetailsService.loadUserByUsername(claims.getSubject());
+                    }
+                    issuedAt = claims.getIssuedAt();
+                }
+
+                if (revocationRegistry.isRevoked(userDetails.getId(), issuedAt)) {
+                    unauthorized(res, "Token has been revoked");
+                    return;
+                }
 
                 var auth = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(req));
                 SecurityContextHolder.getContext().setAuthentication(auth);
-
-                System.out.println("[JwtAuthFilter] ✅ SecurityContextHolder set for user: " + username);
+                MDC.put(RequestMdcFilter.USER_ID, String.valueOf(userDetails.getId()));
             }
 
         } catch (Exception e) {
-            System.err.println("[JwtAuthFilter] ⚠️ Lỗi khi xác thực token: " + e.getMessage());
-            e.printStackTrace();
-            res.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            res.setContentType("application/json");
-            res.getWriter().write("{\"error\":\"Token processing failed\"}");
+            log.warn("Lỗi khi xác thực token: {}", e.getMessage());
+            unauthorized(res, "Token processing failed");
             return;
         }
 
         chain.doFilter(req, res);
     }
+
+    private static void unauthorized(HttpServletResponse res, String error) throws IOException {
+        res.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        res.setContentType("application/json");
+        res.getWriter().write("{\"error\":\"" + error + "\"}");
+    }
 }
@@ -2,23 +2,30 @@ package com.nckh.yte.security;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
 import java.util.*;
 
+@Slf4j
 @Component
 public class JwtUtil {
 
     private final Key key;
     private final long expirationMs;
+    /** Parser dựng sẵn một lần, thread-safe – không build lại cho mỗi request. */
+    private final JwtParser parser;
 
     public JwtUtil(
             @Value("${app.jwt.secret}") String secret,
             @Value("${app.jwt.expiration-ms}") long expirationMs) {
         this.key = Keys.hmacShaKeyFor(secret.getBytes());
         this.expirationMs = expirationMs;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
     }
 
     public String generateToken(String username, Collection<String> roles, UUID userId) {
@@ -50,17 +57,35 @@ public class JwtUtil {
             parse(token);
             return true;
         } catch (ExpiredJwtException e) {
-            System.out.println("⚠️ JWT expired: " + e.getMessage());
+            log.debug("JWT expired: {}", e.getMessage());
         } catch (JwtException | IllegalArgumentException e) {
-            System.out.println("⚠️ JWT invalid: " + e.getMessage());
+            log.debug("JWT invalid: {}", e.getMessage());
         }
         return false;
     }
 
+    /**
+     * Xác thực chữ ký + hạn dùng và trả về claims trong một lần parse.
+     * @throws JwtException nếu token sai chữ ký, hết hạn hoặc sai định dạng
+     */
+    public Claims parseClaims(String token) {
+        return parse(token).getBody();
+    }
+
+    /**
+     * Dạng an toàn để ghi log: chỉ giữ vài ký tự cuối của chữ ký.
+     * Không bao giờ ghi token hay header Authorization đầy đủ ra log.
+     */
+    public static String redact(String token) {
+        if (token == null || token.length() < 12) return "***";
+        return "***" + token.substring(token.length() - 6);
+    }
+
+    public long getExpirationMs() {
+        return expirationMs;
+    }
+
     private Jws<Claims> parse(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token);
+        return parser.parseClaimsJws(token);
     }
 }
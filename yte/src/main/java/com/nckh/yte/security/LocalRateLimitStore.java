@@ -0,0 +1,89 @@
+package com.nckh.yte.security;
+
+import com.nckh.yte.config.RateLimitProps;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bucket trong bộ nhớ: mỗi khoá một {@link AtomicLong}, cập nhật bằng compare-and-set (không khoá).
+ * Bucket đã hồi đầy không còn mang thông tin gì nên bị dọn khi số khoá vượt {@code max-keys}.
+ * Dọn xong vẫn vượt (nhiều khoá đang bị giới hạn, vd quét IP giả) thì bỏ các bucket có mốc TAT
+ * sớm nhất – bucket gần đầy lại nhất, mất đi ít thông tin nhất – cho về đúng {@code max-keys}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.store", havingValue = "local", matchIfMissing = true)
+public class LocalRateLimitStore implements RateLimitStore {
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** Mốc 0 của đồng hồ, để giá trị luôn dương (0 = bucket mới, đầy). */
+    private final long origin = System.nanoTime();
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final int maxKeys;
+
+    public LocalRateLimitStore(RateLimitProps props) {
+        this.maxKeys = props.getMaxKeys();
+    }
+
+    @Override
+    public long tryAcquire(String key, RateLimitProps.Rule rule, int tokens) {
+        long now = System.nanoTime() - origin;
+        long interval = rule.intervalNanos();
+        long cost = interval * Math.max(1, tokens);
+        long burst = interval * Math.max(1, rule.getCapacity());
+
+        AtomicLong tat = buckets.computeIfAbsent(key, k -> new AtomicLong());
+        try {
+            while (true) {
+                long current = tat.get();
+                long next = Math.max(current, now) + cost;
+                long over = next - now - burst;
+                if (over > 0) {
+                    return Math.max(1, TimeUnit.NANOSECONDS.toMillis(over));
+                }
+                if (tat.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        } finally {
+            if (buckets.size() > maxKeys) sweep(now);
+        }
+    }
+
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        // Dọn tối đa mỗi giây một lần, trừ khi khoá mới dồn tới gấp đôi max-keys ngay trong giây đó
+        boolean overflow = buckets.size() > 2L * maxKeys;
+        if ((!overflow && now - last < SWEEP_INTERVAL_NANOS) || !lastSweep.compareAndSet(last, now)) return;
+        buckets.values().removeIf(tat -> tat.get() <= now);
+
+        int excess = buckets.size() - maxKeys;
+        if (excess <= 0) return;
+        // Chụp mốc trước khi sắp xếp: giá trị còn đổi trong lúc sort thì comparator không nhất quán
+        buckets.entrySet().stream()
+                .map(e -> Map.entry(e, e.getValue().get()))
+                .sorted(Map.Entry.comparingByValue())
+                .limit(excess)
+                .forEach(e -> {
+                    if (buckets.remove(e.getKey().getKey(), e.getKey().getValue())) evicted.incrementAndGet();
+                });
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("store", "local");
+        s.put("buckets", buckets.size());
+        s.put("maxKeys", maxKeys);
+        s.put("evicted", evicted.get());
+        return s;
+    }
+}
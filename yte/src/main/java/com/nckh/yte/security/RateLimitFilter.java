@@ -0,0 +1,146 @@
+package com.nckh.yte.security;
+
+import com.nckh.yte.config.RateLimitProps;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Giới hạn tần suất cho các endpoint tốn tiền upstream (AI) và đặt lịch.
+ * Chạy sau {@link JwtAuthFilter}: client đã đăng nhập được tính theo username,
+ * còn lại theo IP. Vượt hạn mức → 429 kèm {@code Retry-After} (giây).
+ * Route và hạn mức cấu hình trong {@code app.rate-limit.routes}.
+ */
+@Slf4j
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimitProps props;
+    private final RateLimitStore store;
+    private final AntPathMatcher matcher = new AntPathMatcher();
+
+    private final Map<String, AtomicLong> allowed = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> rejected = new ConcurrentHashMap<>();
+
+    public RateLimitFilter(RateLimitProps props, RateLimitStore store) {
+        this.props = props;
+        this.store = store;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest req) {
+        return !props.isEnabled() || "OPTIONS".equals(req.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req,
+                                    HttpServletResponse res,
+                                    FilterChain chain)
+            throws ServletException, IOException {
+
+        Map.Entry<String, RateLimitProps.Rule> route = match(req.getServletPath());
+        if (route == null) {
+            chain.doFilter(req, res);
+            return;
+        }
+
+        String name = route.getKey();
+        long waitMs = store.tryAcquire(name + ":" + clientKey(req), route.getValue());
+        if (waitMs == 0) {
+            allowed.computeIfAbsent(name, k -> new AtomicLong()).incrementAndGet();
+            chain.doFilter(req, res);
+            return;
+        }
+
+        rejected.computeIfAbsent(name, k -> new AtomicLong()).incrementAndGet();
+        long retryAfter = Math.max(1, (waitMs + 999) / 1000);
+        log.debug("Rate limit {} cho {}, thử lại sau {}s", name, clientKey(req), retryAfter);
+
+        res.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        res.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        res.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        res.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        res.getWriter().write("{\"error\":\"Quá nhiều yêu cầu, vui lòng thử lại sau " + retryAfter + " giây\"}");
+    }
+
+    /**
+     * Trừ thêm token cho một request đã qua filter nhưng tốn nhiều lời gọi upstream
+     * (vd tra thuốc theo lô: mỗi nhóm thuốc một lời gọi AI). Cùng bucket với filter;
+     * số token bị chặn trên bởi capacity để request lớn vẫn có lúc đi qua được.
+     * @return 0 nếu được phép (hoặc route không giới hạn), ngược lại số mili giây cần chờ
+     */
+    public long charge(HttpServletRequest req, int tokens) {
+        if (!props.isEnabled() || tokens <= 0) return 0;
+        Map.Entry<String, RateLimitProps.Rule> route = match(req.getServletPath());
+        if (route == null) return 0;
+
+        String name = route.getKey();
+        int n = Math.min(tokens, Math.max(1, route.getValue().getCapacity()));
+        long waitMs = store.tryAcquire(name + ":" + clientKey(req), route.getValue(), n);
+        if (waitMs > 0) rejected.computeIfAbsent(name, k -> new AtomicLong()).incrementAndGet();
+        return waitMs;
+    }
+
+    private Map.Entry<String, RateLimitProps.Rule> match(String path) {
+        for (Map.Entry<String, RateLimitProps.Rule> e : props.getRoutes().entrySet()) {
+            for (String pattern : e.getValue().getPatterns()) {
+                if (matcher.match(pattern, path)) return e;
+            }
+        }
+        return null;
+    }
+
+    private String clientKey(HttpServletRequest req) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)) {
+            return "u:" + auth.getName();
+        }
+        return "ip:" + clientIp(req);
+    }
+
+    private String clientIp(HttpServletRequest req) {
+        if (props.isTrustForwardedFor()) {
+            String forwarded = req.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isBlank()) {
+                int comma = forwarded.indexOf(',');
+                return (comma < 0 ? forwarded : forwarded.substring(0, comma)).trim();
+            }
+        }
+        return req.getRemoteAddr();
+    }
+
+    /**
+     * Số request được cho qua / bị chặn theo route.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> s = new LinkedHashMap<>(store.stats());
+        Map<String, Object> routes = new LinkedHashMap<>();
+        for (String name : props.getRoutes().keySet()) {
+            AtomicLong ok = allowed.get(name);
+            AtomicLong denied = rejected.get(name);
+            routes.put(name, Map.of(
+                    "allowed", ok != null ? ok.get() : 0L,
+                    "rejected", denied != null ? denied.get() : 0L));
+        }
+        s.put("routes", routes);
+        return s;
+    }
+}
@@ -0,0 +1,30 @@
+package com.nckh.yte.security;
+
+import com.nckh.yte.config.RateLimitProps;
+
+import java.util.Map;
+
+/**
+ * Nơi lưu trạng thái token bucket. Mỗi bucket chỉ là một mốc thời gian
+ * (GCRA – "theoretical arrival time"): lấy một token = đẩy mốc thêm một khoảng
+ * {@link RateLimitProps.Rule#intervalNanos()}, bucket đầy khi mốc vượt quá
+ * hiện tại + capacity × interval.
+ */
+public interface RateLimitStore {
+
+    /**
+     * Lấy một token từ bucket {@code key}.
+     * @return 0 nếu được phép, ngược lại là số mili giây cần chờ
+     */
+    default long tryAcquire(String key, RateLimitProps.Rule rule) {
+        return tryAcquire(key, rule, 1);
+    }
+
+    /**
+     * Lấy {@code tokens} token cùng lúc (tất cả hoặc không gì cả).
+     * @return 0 nếu được phép, ngược lại là số mili giây cần chờ
+     */
+    long tryAcquire(String key, RateLimitProps.Rule rule, int tokens);
+
+    Map<String, Object> stats();
+}
@@ -0,0 +1,100 @@
+package com.nckh.yte.security;
+
+import com.nckh.yte.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kiểm tra token còn hiệu lực theo trạng thái tài khoản trong DB, cho cả đường xác thực stateless:
+ * user đã bị xoá, bị khoá, hoặc token phát hành trước {@code users.tokens_valid_after}
+ * (đổi mật khẩu, khoá tài khoản) đều bị từ chối.
+ * <p>
+ * Trạng thái mỗi user được giữ trong bộ nhớ tối đa {@code app.jwt.revocation.check-ttl-ms} rồi đọc lại từ DB,
+ * nên thay đổi trên instance khác (hoặc trước khi khởi động lại) có hiệu lực chậm nhất sau khoảng đó;
+ * trên instance thực hiện thay đổi thì {@link #revokeUser} bỏ cache ngay.
+ */
+@Slf4j
+@Component
+public class TokenRevocationRegistry {
+
+    /** Trạng thái tài khoản tại thời điểm đọc; {@code exists=false}: user đã bị xoá. */
+    private record State(boolean exists, boolean enabled, Instant validAfter, long loadedAtNanos) {
+    }
+
+    private final Map<UUID, State> states = new ConcurrentHashMap<>();
+    private final UserRepository userRepository;
+    private final VerifiedTokenCache tokenCache;
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    public TokenRevocationRegistry(UserRepository userRepository,
+                                   VerifiedTokenCache tokenCache,
+                                   @Value("${app.jwt.revocation.check-ttl-ms:10000}") long ttlMs,
+                                   @Value("${app.jwt.cache.max-entries:10000}") int maxEntries) {
+        this.userRepository = userRepository;
+        this.tokenCache = tokenCache;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMs));
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Bỏ trạng thái đã cache và các token đã xác thực của user trên instance này.
+     * Gọi sau khi thay đổi (xoá, khoá, đặt {@code tokens_valid_after}) đã được ghi xuống DB.
+     */
+    public void revokeUser(UUID userId) {
+        if (userId == null) return;
+        states.remove(userId);
+        tokenCache.invalidateUser(userId);
+    }
+
+    /**
+     * @param userId id của principal
+     * @param issuedAt claim {@code iat} (độ chính xác theo giây)
+     * @return true nếu user không còn, bị khoá, hoặc token phát hành trước {@code tokens_valid_after}
+     */
+    public boolean isRevoked(UUID userId, Date issuedAt) {
+        if (userId == null) return false;
+        State s = state(userId);
+        if (!s.exists() || !s.enabled()) return true;
+        if (s.validAfter() == null) return false;
+        if (issuedAt == null) return true;
+        // iat bị làm tròn xuống theo giây → so theo giây, đăng nhập lại cùng giây với lúc thu hồi vẫn hợp lệ
+        return TimeUnit.MILLISECONDS.toSeconds(issuedAt.getTime()) < s.validAfter().getEpochSecond();
+    }
+
+    private State state(UUID userId) {
+        long now = System.nanoTime();
+        State cached = states.get(userId);
+        if (cached != null && now - cached.loadedAtNanos() < ttlNanos) return cached;
+
+        State loaded;
+        try {
+            loaded = userRepository.findAuthState(userId)
+                    .map(a -> new State(true, a.isEnabled(), a.getTokensValidAfter(), now))
+                    .orElseGet(() -> new State(false, false, null, now));
+        } catch (DataAccessException e) {
+            // DB tạm lỗi: dùng trạng thái cũ nếu có, không thì không thể xác nhận → từ chối
+            if (cached != null) {
+                log.warn("Không đọc được trạng thái user {}, dùng bản cache: {}", userId, e.getMessage());
+                return cached;
+            }
+            throw e;
+        }
+        if (states.size() >= maxEntries) states.clear();
+        states.put(userId, loaded);
+        return loaded;
+    }
+
+    public int size() {
+        return states.size();
+    }
+}
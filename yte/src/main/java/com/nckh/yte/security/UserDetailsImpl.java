@@ -1,11 +1,14 @@
 package com.nckh.yte.security;
 
 import com.nckh.yte.entity.User;
+import io.jsonwebtoken.Claims;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Data
@@ -18,17 +21,51 @@ public class UserDetailsImpl implements UserDetails {
     private String fullName;
     private Collection<? extends GrantedAuthority> authorities;
 
-    public static UserDetailsImpl build(User user) {
-        // Nếu chưa map authorities, tạm thời để null
-        return new UserDetailsImpl(
+    /**
+     * Principal dựng từ entity {@link User} (đường cũ, có truy vấn DB).
+     */
+    public UserDetailsImpl(User user) {
+        this(
                 user.getId(),
                 user.getUsername(),
                 user.getPassword(),
                 user.getFullName(),
-                null
+                user.getRole() != null ? List.of(toAuthority(user.getRole().getName())) : List.of()
         );
     }
 
+    public static UserDetailsImpl build(User user) {
+        return new UserDetailsImpl(user);
+    }
+
+    /**
+     * Principal dựng thẳng từ claims đã xác thực ({@code sub}, {@code uid}, {@code roles})
+     * mà {@link JwtUtil#generateToken} nhúng sẵn – không cần truy vấn DB.
+     * @return null nếu token thiếu {@code uid} (token cũ) để caller tự fallback
+     */
+    public static UserDetailsImpl fromClaims(Claims claims) {
+        Object uid = claims.get("uid");
+        if (uid == null) return null;
+
+        Object roles = claims.get("roles");
+        List<GrantedAuthority> authorities = roles instanceof Collection<?> c
+                ? c.stream().map(r -> toAuthority(String.valueOf(r))).toList()
+                : List.of();
+
+        return new UserDetailsImpl(
+                UUID.fromString(uid.toString()),
+                claims.getSubject(),
+                null,
+                null,
+                authorities
+        );
+    }
+
+    /** Role trong DB không có prefix (ADMIN, DOCTOR...), authority luôn là ROLE_xxx. */
+    private static GrantedAuthority toAuthority(String role) {
+        return new SimpleGrantedAuthority(role.startsWith("ROLE_") ? role : "ROLE_" + role);
+    }
+
     // ===== THÊM getId() THỦ CÔNG =====
     public UUID getId() {
         return id;
@@ -40,6 +77,11 @@ public class UserDetailsImpl implements UserDetails {
                 .anyMatch(a -> a.getAuthority().equals(roleName));
     }
 
+    /** Như {@link #hasAuthority(String)} nhưng nhận tên role không prefix, ví dụ "PATIENT". */
+    public boolean hasRole(String role) {
+        return hasAuthority("ROLE_" + role);
+    }
+
     // Các phương thức còn lại giữ nguyên
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
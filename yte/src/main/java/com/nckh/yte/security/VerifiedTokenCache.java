@@ -0,0 +1,118 @@
+package com.nckh.yte.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache các token đã xác thực (chữ ký + claims) đến đúng thời điểm {@code exp}.
+ * Client gửi lại cùng một bearer token hàng nghìn lần mỗi ngày, nên lần sau
+ * chỉ cần 1 phép băm SHA-256 thay vì HMAC + decode JSON.
+ * Khoá là digest của token – không giữ token gốc trong bộ nhớ.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    /** Principal + thời điểm phát hành/hết hạn của một token đã xác thực. */
+    public record Entry(UserDetailsImpl principal, Date issuedAt, long expiresAtMillis) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public VerifiedTokenCache(@Value("${app.jwt.cache.max-entries:10000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return entry còn hạn của token, hoặc null nếu chưa có / đã hết hạn
+     */
+    public Entry get(String token) {
+        String key = digest(token);
+        Entry e = entries.get(key);
+        if (e != null && e.expiresAtMillis() <= System.currentTimeMillis()) {
+            if (entries.remove(key, e)) evictions.incrementAndGet();
+            e = null;
+        }
+        if (e == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return e;
+    }
+
+    public void put(String token, UserDetailsImpl principal, Date issuedAt, Date expiration) {
+        if (expiration == null) return; // token không có exp → không cache
+        if (entries.size() >= maxEntries) {
+            makeRoom();
+        }
+        entries.put(digest(token), new Entry(principal, issuedAt, expiration.getTime()));
+    }
+
+    /**
+     * Bỏ mọi token của một user (đổi mật khẩu, xoá/khoá tài khoản).
+     */
+    public void invalidateUser(UUID userId) {
+        if (userId == null) return;
+        entries.values().removeIf(e -> {
+            boolean match = userId.equals(e.principal().getId());
+            if (match) evictions.incrementAndGet();
+            return match;
+        });
+    }
+
+    /** Dọn token hết hạn; nếu vẫn đầy thì bỏ bớt ~10% entry bất kỳ. */
+    private void makeRoom() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(e -> {
+            boolean expired = e.expiresAtMillis() <= now;
+            if (expired) evictions.incrementAndGet();
+            return expired;
+        });
+
+        int target = maxEntries - Math.max(1, maxEntries / 10);
+        Iterator<String> it = entries.keySet().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(md.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("entries", entries.size());
+        s.put("hits", h);
+        s.put("misses", m);
+        s.put("evictions", evictions.get());
+        s.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        return s;
+    }
+}
@@ -0,0 +1,206 @@
+package com.nckh.yte.service;
+
+import com.nckh.yte.entity.AppointmentStatus;
+import com.nckh.yte.repository.AppointmentRepository;
+import com.nckh.yte.repository.DoctorRepository;
+import com.nckh.yte.repository.NurseRepository;
+import com.nckh.yte.repository.PatientRepository;
+import com.nckh.yte.repository.UserRepository;
+import com.nckh.yte.security.TokenRevocationRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Xoá / vô hiệu hoá tài khoản theo lô.
+ * <p>
+ * Mọi bước là câu lệnh theo tập ({@code ... where id in :ids}) trong cùng một transaction,
+ * nên chi phí chỉ phụ thuộc số tài khoản bị xoá, không phụ thuộc tổng số nhân viên:
+ * <ul>
+ *   <li>Bác sĩ: lịch SCHEDULED sắp tới trả về PENDING và được xếp lại; lịch cũ giữ lại, bỏ liên kết bác sĩ.</li>
+ *   <li>Y tá: bỏ liên kết khỏi các lịch hẹn.</li>
+ *   <li>Bệnh nhân: xoá lịch hẹn (giờ đã giữ được trả lại lịch bác sĩ) và hồ sơ bệnh nhân.</li>
+ * </ul>
+ * Vô hiệu hoá bác sĩ cũng xếp lại lịch sắp tới như khi xoá, nhưng giữ hồ sơ và lịch sử khám.
+ * Sau khi commit: thu hồi token, làm mới {@link DoctorRoster} và {@link DoctorScheduleIndex}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AccountService {
+
+    /** Số id tối đa trong một lần gọi (giữ câu IN và transaction ở mức vừa phải). */
+    public static final int MAX_BATCH = 500;
+
+    private final UserRepository userRepository;
+    private final DoctorRepository doctorRepository;
+    private final NurseRepository nurseRepository;
+    private final PatientRepository patientRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final TokenRevocationRegistry revocationRegistry;
+    private final DoctorRoster doctorRoster;
+    private final DoctorScheduleIndex scheduleIndex;
+    private final AutoBookingQueue autoBookingQueue;
+
+    /**
+     * Kết quả của một thao tác theo lô.
+     * @param usernames tài khoản thực sự bị tác động
+     * @param skipped id không tồn tại hoặc là ADMIN
+     */
+    public record Result(List<String> usernames, List<UUID> skipped, int rescheduled) {
+        public int affected() {
+            return usernames.size();
+        }
+    }
+
+    /**
+     * Xoá tài khoản cùng hồ sơ bác sĩ/y tá/bệnh nhân và lịch hẹn phụ thuộc.
+     * @param includeAdmins false: bỏ qua tài khoản ADMIN (dùng cho thao tác theo lô)
+     */
+    @Transactional
+    public Result delete(Collection<UUID> ids, boolean includeAdmins) {
+        Targets t = resolve(ids, includeAdmins);
+        if (t.userIds.isEmpty()) return new Result(List.of(), t.skipped, 0);
+
+        List<UUID> doctorIds = t.doctors.isEmpty() ? List.of() : doctorRepository.findIdsByUsernameIn(t.doctors);
+        List<AppointmentRepository.Reassignable> reassign = resetUpcoming(doctorIds);
+        if (!doctorIds.isEmpty()) {
+            appointmentRepository.detachDoctors(doctorIds);
+            doctorRepository.deleteByIdIn(doctorIds);
+        }
+
+        List<Long> nurseIds = t.nurses.isEmpty() ? List.of() : nurseRepository.findIdsByUsernameIn(t.nurses);
+        if (!nurseIds.isEmpty()) {
+            appointmentRepository.detachNurses(nurseIds);
+            nurseRepository.deleteByIdIn(nurseIds);
+        }
+
+        // Bệnh nhân gắn với user qua patient.user_id (mọi role đều kiểm tra cho chắc)
+        List<UUID> patientIds = patientRepository.findIdsByUserIdIn(t.userIds);
+        List<AppointmentRepository.BookedSlot> freed = List.of();
+        if (!patientIds.isEmpty()) {
+            freed = appointmentRepository.findSlotsOfPatients(patientIds, AppointmentStatus.SCHEDULED);
+            appointmentRepository.deleteByPatientIdIn(patientIds);
+            patientRepository.deleteByIdIn(patientIds);
+        }
+
+        userRepository.deleteByIdIn(t.userIds);
+
+        List<AppointmentRepository.BookedSlot> toRelease = freed;
+        afterCommit(() -> {
+            t.userIds.forEach(revocationRegistry::revokeUser);
+            toRelease.forEach(s -> scheduleIndex.release(s.getDoctorId(), s.getStartTime(), s.getEndTime()));
+            afterDoctorsRemoved(doctorIds, reassign);
+        });
+        log.info("Đã xoá {} tài khoản (bác sĩ: {}, y tá: {}, bệnh nhân: {}, lịch xếp lại: {})",
+                t.userIds.size(), doctorIds.size(), nurseIds.size(), patientIds.size(), reassign.size());
+        return new Result(t.usernames, t.skipped, reassign.size());
+    }
+
+    /**
+     * Vô hiệu hoá tài khoản (giữ dữ liệu) và thu hồi token đang dùng.
+     */
+    @Transactional
+    public Result disable(Collection<UUID> ids) {
+        Targets t = resolve(ids, false);
+        if (t.userIds.isEmpty()) return new Result(List.of(), t.skipped, 0);
+
+        List<UUID> doctorIds = t.doctors.isEmpty() ? List.of() : doctorRepository.findIdsByUsernameIn(t.doctors);
+        List<AppointmentRepository.Reassignable> reassign = resetUpcoming(doctorIds);
+
+        userRepository.disableByIdIn(t.userIds, Instant.now());
+        afterCommit(() -> {
+            t.userIds.forEach(revocationRegistry::revokeUser);
+            afterDoctorsRemoved(doctorIds, reassign);
+        });
+        log.info("Đã vô hiệu hoá {} tài khoản (bác sĩ: {}, lịch xếp lại: {})",
+                t.userIds.size(), doctorIds.size(), reassign.size());
+        return new Result(t.usernames, t.skipped, reassign.size());
+    }
+
+    /** Lịch SCHEDULED sắp tới của các bác sĩ trả về PENDING; trả về danh sách cần xếp lại. */
+    private List<AppointmentRepository.Reassignable> resetUpcoming(List<UUID> doctorIds) {
+        if (doctorIds.isEmpty()) return List.of();
+        List<AppointmentRepository.Reassignable> reassign = appointmentRepository.findReassignable(
+                doctorIds, AppointmentStatus.SCHEDULED, LocalDateTime.now());
+        if (!reassign.isEmpty()) {
+            appointmentRepository.resetToPending(reassign.stream().map(AppointmentRepository.Reassignable::getId).toList());
+        }
+        return reassign;
+    }
+
+    /** Sau commit: bác sĩ không còn nhận lịch → nạp lại roster, bỏ lịch trong index, xếp lại lịch đã gỡ. */
+    private void afterDoctorsRemoved(List<UUID> doctorIds, List<AppointmentRepository.Reassignable> reassign) {
+        if (doctorIds.isEmpty()) return;
+        doctorRoster.refresh();
+        doctorIds.forEach(scheduleIndex::forgetDoctor);
+        requeue(reassign);
+    }
+
+    private record Targets(List<UUID> userIds, List<String> usernames, List<UUID> skipped,
+                           List<String> doctors, List<String> nurses) {
+    }
+
+    private Targets resolve(Collection<UUID> ids, boolean includeAdmins) {
+        Set<UUID> requested = new LinkedHashSet<>(ids);
+        List<UUID> userIds = new ArrayList<>();
+        List<String> usernames = new ArrayList<>();
+        List<String> doctors = new ArrayList<>();
+        List<String> nurses = new ArrayList<>();
+
+        for (UserRepository.AccountRef ref : userRepository.findAccountRefs(requested)) {
+            String role = normalize(ref.getRole());
+            if (!includeAdmins && role.equals("ADMIN")) continue;
+            userIds.add(ref.getId());
+            usernames.add(ref.getUsername());
+            if (ref.getUsername() != null) {
+                if (role.equals("DOCTOR")) doctors.add(ref.getUsername());
+                else if (role.equals("NURSE")) nurses.add(ref.getUsername());
+            }
+        }
+
+        List<UUID> skipped = new ArrayList<>(requested);
+        skipped.removeAll(userIds);
+        return new Targets(userIds, usernames, skipped, doctors, nurses);
+    }
+
+    private void requeue(List<AppointmentRepository.Reassignable> appointments) {
+        for (int i = 0; i < appointments.size(); i++) {
+            AppointmentRepository.Reassignable a = appointments.get(i);
+            try {
+                autoBookingQueue.submit(a.getId(), a.getSymptom());
+            } catch (TaskRejectedException e) {
+                // Còn PENDING trong DB → AutoBookingQueue.resumePending xử lý ở lần khởi động sau
+                log.warn("Hàng đợi đặt lịch đầy, {} lịch hẹn sẽ được xếp lại sau", appointments.size() - i);
+                return;
+            }
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static String normalize(String role) {
+        if (role == null) return "";
+        String n = role.trim().toUpperCase();
+        return n.startsWith("ROLE_") ? n.substring(5) : n;
+    }
+}
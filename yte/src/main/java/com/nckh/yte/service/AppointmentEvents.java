@@ -0,0 +1,98 @@
+package com.nckh.yte.service;
+
+import com.nckh.yte.dto.AppointmentView;
+import com.nckh.yte.entity.AppointmentStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Kênh SSE báo cho client khi một lịch hẹn đặt tự động đã xử lý xong.
+ * Mỗi lịch hẹn có thể có nhiều subscriber; tất cả nhận đúng một event rồi stream đóng.
+ * Event mang {@link AppointmentView} (không serialize entity – Patient kéo theo User/mật khẩu).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AppointmentEvents {
+
+    private static final long TIMEOUT_MS = 60_000;
+
+    private final AppointmentService appointmentService;
+
+    private final Map<UUID, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Đăng ký nhận kết quả. Nếu lịch hẹn đã xử lý xong thì gửi ngay và đóng stream.
+     * @param current trạng thái controller vừa đọc (đã kiểm tra quyền xem)
+     */
+    public SseEmitter subscribe(AppointmentView current) {
+        UUID id = current.getId();
+        SseEmitter emitter = new SseEmitter(TIMEOUT_MS);
+
+        if (current.getStatus() != AppointmentStatus.PENDING) {
+            send(emitter, current);
+            return emitter;
+        }
+
+        // compute/computeIfPresent: thêm và gỡ nguyên tử với publish, danh sách rỗng thì bỏ khỏi map
+        subscribers.compute(id, (k, list) -> {
+            List<SseEmitter> l = list != null ? list : new CopyOnWriteArrayList<>();
+            l.add(emitter);
+            return l;
+        });
+        Runnable remove = () -> subscribers.computeIfPresent(id, (k, list) -> {
+            list.remove(emitter);
+            return list.isEmpty() ? null : list;
+        });
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        // publish có thể đã chạy giữa lúc controller đọc trạng thái và lúc đăng ký → đọc lại
+        appointmentService.findView(id)
+                .filter(latest -> latest.getStatus() != AppointmentStatus.PENDING)
+                .ifPresent(latest -> {
+                    remove.run();
+                    send(emitter, latest);
+                });
+        return emitter;
+    }
+
+    /**
+     * Gửi trạng thái mới nhất cho mọi subscriber của lịch hẹn và đóng stream.
+     * Không ai đang chờ thì không đọc DB.
+     */
+    public void publish(UUID appointmentId) {
+        List<SseEmitter> list = subscribers.remove(appointmentId);
+        if (list == null || list.isEmpty()) return;
+        appointmentService.findView(appointmentId).ifPresentOrElse(
+                view -> list.forEach(emitter -> send(emitter, view)),
+                () -> list.forEach(SseEmitter::complete));
+    }
+
+    private static void send(SseEmitter emitter, AppointmentView appointment) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name("appointment")
+                    .id(String.valueOf(appointment.getId()))
+                    .data(appointment));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            // Client đã ngắt hoặc stream đã đóng
+            log.debug("Không gửi được SSE cho lịch hẹn {}: {}", appointment.getId(), e.getMessage());
+        } catch (RuntimeException e) {
+            // Lỗi serialize – đóng stream thay vì để client chờ tới timeout
+            log.warn("Lỗi khi gửi SSE cho lịch hẹn {}: {}", appointment.getId(), e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+}
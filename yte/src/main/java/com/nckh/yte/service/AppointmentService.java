@@ -1,21 +1,28 @@
 package com.nckh.yte.service;
 
+import com.nckh.yte.dto.AppointmentView;
 import com.nckh.yte.entity.*;
 import com.nckh.yte.repository.*;
 import com.nckh.yte.security.UserDetailsImpl;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.Random;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class AppointmentService {
@@ -26,13 +33,17 @@ public class AppointmentService {
     private final NurseRepository nurseRepository;
     private final UserRepository userRepository;
     private final GeminiService geminiService;
+    private final DoctorScheduleIndex scheduleIndex;
+    private final DoctorRoster doctorRoster;
+    private final SymptomClassifier symptomClassifier;
+    private final SymptomSpecialtyCache symptomCache;
 
     // === CÁC HÀM GET ===
     public List<Appointment> getAppointmentsForDoctor(UUID doctorId) {
         return appointmentRepository.findByDoctorId(doctorId);
     }
 
-    public List<Appointment> getAppointmentsForNurse(UUID nurseId) {
+    public List<Appointment> getAppointmentsForNurse(Long nurseId) {
         return appointmentRepository.findByNurseId(nurseId);
     }
 
@@ -41,7 +52,11 @@ public class AppointmentService {
     }
 
     public Appointment create(Appointment appointment) {
-        return appointmentRepository.save(appointment);
+        Appointment saved = appointmentRepository.save(appointment);
+        if (saved.getDoctor() != null) {
+            scheduleIndex.markBooked(saved.getDoctor().getId(), saved.getStartTime(), saved.getEndTime());
+        }
+        return saved;
     }
 
     public List<Appointment> getAllAppointments() {
@@ -49,30 +64,69 @@ public class AppointmentService {
     }
 
 
-    // === HÀM AUTOBOOK (FIX LOGIC) ===
+    /**
+     * Lịch hẹn mà một người xem được: đúng một trong các id, hoặc tất cả (admin).
+     */
+    public record Owner(UUID patientId, UUID doctorId, Long nurseId) {
+        public static final Owner ALL = new Owner(null, null, null);
+
+        public static Owner patient(UUID id) { return new Owner(id, null, null); }
+
+        public static Owner doctor(UUID id) { return new Owner(null, id, null); }
+
+        public static Owner nurse(Long id) { return new Owner(null, null, id); }
+    }
+
+    /** Mới nhất trước (Postgres: lịch chưa xếp giờ đứng đầu), rồi theo ngày mong muốn. */
+    public static final Sort VIEW_ORDER = Sort.by(Sort.Order.desc("startTime"),
+            Sort.Order.desc("preferredDate"), Sort.Order.asc("id"));
+
+    /**
+     * Danh sách lịch hẹn (read model) trong một query, lọc theo trạng thái và khoảng ngày.
+     * @param from ngày bắt đầu (bao gồm), null = không giới hạn
+     * @param to   ngày kết thúc (bao gồm), null = không giới hạn
+     */
+    @Transactional(readOnly = true)
+    public Page<AppointmentView> findViews(Owner owner, AppointmentStatus status,
+                                           LocalDate from, LocalDate to, Pageable pageable) {
+        LocalDate toExclusive = to != null ? to.plusDays(1) : null;
+        return appointmentRepository.findViews(owner.patientId(), owner.doctorId(), owner.nurseId(), status,
+                from != null ? from.atStartOfDay() : null, from,
+                toExclusive != null ? toExclusive.atStartOfDay() : null, toExclusive,
+                pageable);
+    }
+
+    @Transactional(readOnly = true)
+    public List<AppointmentView> findViewList(Owner owner, AppointmentStatus status, LocalDate from, LocalDate to) {
+        LocalDate toExclusive = to != null ? to.plusDays(1) : null;
+        return appointmentRepository.findViewList(owner.patientId(), owner.doctorId(), owner.nurseId(), status,
+                from != null ? from.atStartOfDay() : null, from,
+                toExclusive != null ? toExclusive.atStartOfDay() : null, toExclusive,
+                VIEW_ORDER);
+    }
+
+    public Optional<Appointment> findById(UUID id) {
+        return appointmentRepository.findById(id);
+    }
+
+    public Optional<AppointmentView> findView(UUID id) {
+        return appointmentRepository.findViewById(id);
+    }
+
+    // === HÀM AUTOBOOK ===
+    // Chỉ ghi nhận yêu cầu (PENDING) rồi trả về ngay; phân loại chuyên khoa + xếp bác sĩ
+    // chạy trong AutoBookingQueue để không giữ connection DB/thread servlet trong lúc chờ Gemini.
     @Transactional
     public Appointment autoBook(String patientName, String email, String phone, String gender,
                                 String symptom, LocalDate preferredDate, String preferredWindow) {
+        if (preferredDate.isBefore(LocalDate.now())) {
+            throw new IllegalArgumentException("Ngày khám mong muốn đã qua: " + preferredDate);
+        }
 
         Patient patient = null;
         User user = null;
 
-        // ✅ BƯỚC 1: SỬ DỤNG GEMINI ĐỂ XÁC ĐỊNH CHUYÊN KHOA
-        String requiredSpecialty = null;
-        try {
-            requiredSpecialty = geminiService.determineSpecialtyFromSymptom(symptom);
-        } catch (Exception e) {
-            System.err.println("Lỗi nghiêm trọng khi gọi GeminiService, chuyển sang logic cũ. Lỗi: " + e.getMessage());
-        }
-
-        if (requiredSpecialty == null || requiredSpecialty.trim().isEmpty()) {
-            System.out.println("GEMINI FAILED hoặc trả về rỗng. Đang dùng logic dự phòng (legacy).");
-            requiredSpecialty = determineSpecialtyLegacy(symptom); 
-        } else {
-            System.out.println("GEMINI SUCCESS: Chuyên khoa được xác định: " + requiredSpecialty);
-        }
-
-        // ✅ BƯỚC 2: Tìm User hiện tại
+        // ✅ BƯỚC 1: Tìm User hiện tại
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth != null && auth.getPrincipal() instanceof UserDetailsImpl principal) {
             if (principal.hasRole("PATIENT")) {
@@ -83,7 +137,7 @@ public class AppointmentService {
             }
         }
 
-        // ✅ BƯỚC 3: Logic tạo Patient Profile (Nếu User đã tồn tại nhưng Profile Patient chưa có)
+        // ✅ BƯỚC 2: Logic tạo Patient Profile (Nếu User đã tồn tại nhưng Profile Patient chưa có)
         if (patient == null && user != null) {
             // User đã tồn tại (đã đăng nhập) nhưng chưa có hồ sơ Patient
             String fn, ln;
@@ -103,7 +157,6 @@ public class AppointmentService {
                             .firstName(fn)
                             .lastName(ln)
                             .user(user) // Gán User đã tồn tại
-                            .department(requiredSpecialty)
                             .email(email)
                             .phone(phone)
                             .gender(gender)
@@ -116,39 +169,9 @@ public class AppointmentService {
              throw new RuntimeException("Lỗi logic: User không xác định.");
         }
 
-        // ✅ BƯỚC 4: CHỌN BÁC SĨ (Logic giữ nguyên)
-        List<Doctor> specialists = doctorRepository.findBySpecialtyIgnoreCase(requiredSpecialty);
-        Doctor doctor;
-        
-        if (!specialists.isEmpty()) {
-            doctor = specialists.get(new Random().nextInt(specialists.size()));
-        } else {
-            List<Doctor> generalists = doctorRepository.findBySpecialtyIgnoreCase("Đa khoa");
-            if (!generalists.isEmpty()) {
-                System.out.println("Không tìm thấy BS chuyên khoa: " + requiredSpecialty + ". Chuyển về Đa khoa.");
-                doctor = generalists.get(new Random().nextInt(generalists.size()));
-            } else {
-                List<Doctor> allDoctors = doctorRepository.findAll();
-                doctor = allDoctors.isEmpty() ? null : allDoctors.get(new Random().nextInt(allDoctors.size()));
-            }
-        }
-
-        // ✅ BƯỚC 5: Tạo Appointment (Logic giữ nguyên)
-        LocalDateTime startTime;
-        try {
-            String startTimeStr = preferredWindow.split("\\s*-\\s*")[0]; 
-            LocalTime time = LocalTime.parse(startTimeStr); 
-            startTime = preferredDate.atTime(time); 
-        } catch (Exception e) {
-            startTime = preferredDate.atTime(8, 0); 
-        }
-        LocalDateTime endTime = startTime.plusMinutes(30);
-
+        // ✅ BƯỚC 3: Ghi nhận yêu cầu – chưa có bác sĩ/giờ khám
         Appointment appointment = Appointment.builder()
                 .patient(patient)
-                .doctor(doctor)
-                .startTime(startTime)
-                .endTime(endTime)
                 .symptom(symptom)
                 .status(AppointmentStatus.PENDING)
                 .preferredDate(preferredDate)
@@ -158,14 +181,148 @@ public class AppointmentService {
         return appointmentRepository.save(appointment);
     }
 
-    private String determineSpecialtyLegacy(String reason) {
-        if (reason == null || reason.trim().isEmpty()) return "Đa khoa";
-        String r = reason.toLowerCase();
-        if (r.contains("tim") || r.contains("huyết áp")) return "Tim mạch";
-        if (r.contains("xương") || r.contains("khớp") || r.contains("đau lưng")) return "Cơ xương khớp";
-        if (r.contains("tai") || r.contains("mũi") || r.contains("họng")) return "Tai mũi họng";
-        if (r.contains("da") || r.contains("ngứa")) return "Da liễu";
-        if (r.contains("răng") || r.contains("nướu")) return "Răng hàm mặt";
-        return "Đa khoa";
+    /**
+     * Xác định chuyên khoa từ triệu chứng: bộ phân loại nội bộ trước, chỉ hỏi Gemini khi
+     * độ tin cậy thấp; Gemini lỗi/rỗng thì vẫn dùng kết quả nội bộ.
+     * Không chạy trong transaction – lời gọi Gemini có thể mất vài giây.
+     */
+    public String classifySpecialty(String symptom) {
+        SymptomClassifier.Result local = symptomClassifier.classify(symptom);
+        if (symptomClassifier.isConfident(local)) {
+            log.debug("Phân loại nội bộ: {} ({})", local.specialty(), local.confidence());
+            return local.specialty().getLabel();
+        }
+
+        // Triệu chứng tương tự đã hỏi Gemini trước đó → dùng lại kết quả
+        String fingerprint = SymptomSpecialtyCache.fingerprint(symptom);
+        Optional<Specialty> cached = symptomCache.get(fingerprint);
+        if (cached.isPresent()) {
+            return cached.get().getLabel();
+        }
+
+        String requiredSpecialty = null;
+        try {
+            requiredSpecialty = geminiService.determineSpecialtyFromSymptom(symptom);
+        } catch (Exception e) {
+            log.error("Lỗi khi gọi GeminiService, dùng kết quả phân loại nội bộ: {}", e.getMessage());
+        }
+
+        if (requiredSpecialty == null || requiredSpecialty.trim().isEmpty()) {
+            log.info("Gemini thất bại hoặc trả về rỗng, dùng kết quả phân loại nội bộ: {}", local.specialty());
+            return local.specialty().getLabel();
+        }
+        log.debug("Gemini xác định chuyên khoa: {}", requiredSpecialty);
+        // Chỉ lưu khi Gemini trả về đúng một chuyên khoa hợp lệ
+        Specialty.fromLabel(requiredSpecialty).ifPresent(s -> symptomCache.put(fingerprint, s));
+        return requiredSpecialty;
+    }
+
+    /**
+     * Xếp bác sĩ + giờ khám cho một yêu cầu PENDING và chuyển sang SCHEDULED;
+     * không còn slot nào thì chuyển sang UNASSIGNED kèm lý do (không xử lý lại nữa).
+     * @throws DoctorScheduleIndex.SlotTakenException instance khác đã đặt slot vừa giữ (transaction rollback)
+     */
+    @Transactional
+    public Appointment assign(UUID appointmentId, String requiredSpecialty) {
+        Appointment appointment = appointmentRepository.findById(appointmentId)
+                .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy lịch hẹn " + appointmentId));
+        if (appointment.getStatus() != AppointmentStatus.PENDING) {
+            return appointment;
+        }
+
+        Specialty specialty = Specialty.fromLabel(requiredSpecialty).orElse(Specialty.DA_KHOA);
+
+        Patient patient = appointment.getPatient();
+        if (patient != null && patient.getDepartment() == null) {
+            patient.setDepartment(specialty.getLabel());
+        }
+
+        // ✅ NHÓM BÁC SĨ ỨNG VIÊN: đúng chuyên khoa → Đa khoa → tất cả
+        List<UUID> doctorIds = doctorRoster.doctorsFor(specialty);
+        if (doctorIds.isEmpty()) {
+            doctorIds = doctorRoster.doctorsFor(Specialty.DA_KHOA);
+            if (!doctorIds.isEmpty()) {
+                log.info("Không tìm thấy BS chuyên khoa {}, chuyển về Đa khoa", specialty.getLabel());
+            } else {
+                doctorIds = doctorRoster.allDoctors();
+            }
+        }
+
+        LocalDate date = appointment.getPreferredDate();
+        if (date == null || date.isBefore(LocalDate.now())) {
+            return unassigned(appointment, date == null ? "Thiếu ngày khám mong muốn" : "Ngày khám mong muốn đã qua");
+        }
+        if (doctorIds.isEmpty()) {
+            return unassigned(appointment, "Chưa có bác sĩ nào nhận lịch");
+        }
+
+        // ✅ GIỮ SLOT 30 PHÚT SỚM NHẤT CÒN TRỐNG, ưu tiên bác sĩ ít lịch nhất trong ngày
+        Optional<DoctorScheduleIndex.Slot> slot = scheduleIndex.reserveEarliest(
+                doctorIds, date, DoctorScheduleIndex.parseWindow(appointment.getPreferredWindow()));
+
+        if (slot.isEmpty()) {
+            log.info("Không còn slot trống cho lịch hẹn {} ({} {})",
+                    appointmentId, date, appointment.getPreferredWindow());
+            return unassigned(appointment, "Không còn giờ trống trong khung " + appointment.getPreferredWindow()
+                    + " ngày " + date);
+        }
+
+        DoctorScheduleIndex.Slot reserved = slot.get();
+        releaseOnRollback(reserved);
+
+        appointment.setDoctor(doctorRepository.getReferenceById(reserved.doctorId()));
+        appointment.setStartTime(reserved.start());
+        appointment.setEndTime(reserved.end());
+        appointment.setStatus(AppointmentStatus.SCHEDULED);
+        try {
+            // Flush ngay để unique index (doctor_id, start_time) báo trùng tại đây chứ không lúc commit
+            return appointmentRepository.saveAndFlush(appointment);
+        } catch (DataIntegrityViolationException e) {
+            throw new DoctorScheduleIndex.SlotTakenException(reserved, e);
+        }
+    }
+
+    private Appointment unassigned(Appointment appointment, String reason) {
+        appointment.setStatus(AppointmentStatus.UNASSIGNED);
+        appointment.setFailureReason(reason);
+        return appointmentRepository.save(appointment);
+    }
+
+    /**
+     * Xếp lịch tự động thất bại (lỗi ngoài dự kiến): lịch còn PENDING chuyển sang UNASSIGNED,
+     * để client (poll/SSE) nhận kết quả thay vì chờ mãi và lần khởi động sau không xử lý lại.
+     */
+    @Transactional
+    public void markUnassigned(UUID appointmentId, String reason) {
+        appointmentRepository.findById(appointmentId)
+                .filter(a -> a.getStatus() == AppointmentStatus.PENDING)
+                .ifPresent(a -> unassigned(a, reason));
+    }
+
+    /** Transaction đặt lịch bị rollback thì trả slot lại cho chỉ mục. */
+    private void releaseOnRollback(DoctorScheduleIndex.Slot slot) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    scheduleIndex.release(slot.doctorId(), slot.start(), slot.end());
+                }
+            }
+        });
+    }
+
+    /**
+     * Huỷ một yêu cầu chưa kịp xử lý (ví dụ hàng đợi đặt lịch đã đầy).
+     */
+    @Transactional
+    public void cancel(UUID appointmentId) {
+        appointmentRepository.findById(appointmentId).ifPresent(a -> {
+            a.setStatus(AppointmentStatus.CANCELLED);
+            appointmentRepository.save(a);
+            if (a.getDoctor() != null) {
+                scheduleIndex.release(a.getDoctor().getId(), a.getStartTime(), a.getEndTime());
+            }
+        });
     }
-}
\ No newline at end of file
+}
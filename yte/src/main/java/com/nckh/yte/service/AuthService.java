@@ -4,7 +4,6 @@ import com.nckh.yte.dto.LoginRequest;
 import com.nckh.yte.dto.RegisterRequest;
 import com.nckh.yte.entity.Role;
 import com.nckh.yte.entity.User;
-import com.nckh.yte.repository.RoleRepository;
 import com.nckh.yte.repository.UserRepository;
 import com.nckh.yte.security.UserDetailsImpl;
 import lombok.RequiredArgsConstructor;
@@ -17,7 +16,7 @@ import java.util.UUID;
 public class AuthService {
 
     private final UserRepository userRepo;
-    private final RoleRepository roleRepo;
+    private final RoleRegistry roleRegistry;
     private final PasswordEncoder encoder;
 
     public UUID register(RegisterRequest req) {
@@ -27,7 +26,7 @@ public class AuthService {
         }
 
         // 2. Lấy role mặc định (PATIENT) – bạn có thể tuỳ chỉnh theo ý
-        Role role = roleRepo.findByName("PATIENT")
+        Role role = roleRegistry.findByName("PATIENT")
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy role PATIENT"));
 
         // 3. Tạo user mới
@@ -0,0 +1,99 @@
+package com.nckh.yte.service;
+
+import com.nckh.yte.entity.Appointment;
+import com.nckh.yte.entity.AppointmentStatus;
+import com.nckh.yte.repository.AppointmentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+
+/**
+ * Hàng đợi xử lý đặt lịch tự động.
+ * Request chỉ ghi lịch hẹn PENDING rồi trả 202; worker ở đây mới gọi Gemini
+ * để xác định chuyên khoa, xếp bác sĩ và chuyển lịch hẹn sang SCHEDULED
+ * (hoặc UNASSIGNED kèm lý do nếu không xếp được).
+ */
+@Slf4j
+@Service
+public class AutoBookingQueue {
+
+    /** Số lần xếp lại khi DB báo slot đã có lịch (chạy nhiều instance). */
+    private static final int MAX_SLOT_RETRIES = 3;
+
+    private final ThreadPoolTaskExecutor executor;
+    private final AppointmentService appointmentService;
+    private final DoctorScheduleIndex scheduleIndex;
+    private final AppointmentRepository appointmentRepository;
+    private final AppointmentEvents events;
+
+    public AutoBookingQueue(@Qualifier("bookingExecutor") ThreadPoolTaskExecutor executor,
+                            AppointmentService appointmentService,
+                            DoctorScheduleIndex scheduleIndex,
+                            AppointmentRepository appointmentRepository,
+                            AppointmentEvents events) {
+        this.executor = executor;
+        this.appointmentService = appointmentService;
+        this.scheduleIndex = scheduleIndex;
+        this.appointmentRepository = appointmentRepository;
+        this.events = events;
+    }
+
+    /**
+     * Đưa một lịch hẹn PENDING vào hàng đợi.
+     * @throws TaskRejectedException nếu hàng đợi đã đầy
+     */
+    public void submit(UUID appointmentId, String symptom) {
+        executor.execute(() -> process(appointmentId, symptom));
+    }
+
+    private void process(UUID appointmentId, String symptom) {
+        try {
+            String specialty = appointmentService.classifySpecialty(symptom);
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    appointmentService.assign(appointmentId, specialty);
+                    break;
+                } catch (DoctorScheduleIndex.SlotTakenException e) {
+                    // Instance khác đã đặt slot này: ghi nhận vào chỉ mục rồi xếp slot kế tiếp
+                    DoctorScheduleIndex.Slot taken = e.slot();
+                    scheduleIndex.markBooked(taken.doctorId(), taken.start(), taken.end());
+                    if (attempt >= MAX_SLOT_RETRIES) throw e;
+                    log.info("Slot {} đã có lịch khác, xếp lại lịch hẹn {} (lần {})", taken.start(), appointmentId, attempt);
+                }
+            }
+            events.publish(appointmentId);
+        } catch (Exception e) {
+            log.error("Đặt lịch tự động thất bại cho {}: {}", appointmentId, e.getMessage(), e);
+            try {
+                appointmentService.markUnassigned(appointmentId, e instanceof DoctorScheduleIndex.SlotTakenException
+                        ? "Không giữ được giờ trống sau nhiều lần thử"
+                        : "Lỗi hệ thống khi xếp lịch tự động");
+            } catch (Exception ex) {
+                log.error("Không ghi được trạng thái UNASSIGNED cho {}: {}", appointmentId, ex.getMessage());
+            }
+            events.publish(appointmentId);
+        }
+    }
+
+    /**
+     * Yêu cầu còn PENDING từ lần chạy trước (server tắt giữa chừng) được xử lý lại.
+     * Lịch UNASSIGNED là trạng thái cuối, không nằm trong danh sách này.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePending() {
+        for (Appointment a : appointmentRepository.findByStatusAndDoctorIsNull(AppointmentStatus.PENDING)) {
+            try {
+                submit(a.getId(), a.getSymptom());
+            } catch (TaskRejectedException e) {
+                log.warn("Hàng đợi đặt lịch đầy, bỏ qua xử lý lại các yêu cầu PENDING còn lại");
+                return;
+            }
+        }
+    }
+}
@@ -1,35 +1,249 @@
-package com.example.yte.service;
+package com.nckh.yte.service;
 
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.yte.OpenAIConfig;
+import com.nckh.yte.config.UpstreamHttpClients;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 @Service
-@RequiredArgsConstructor
-public class ChatService {
+public class ChatService implements DisposableBean {
 
-    @Value("${ai.openai.apikey}")
-    private String openAiKey;
+    private final OpenAIConfig openAIConfig;
+    private final UpstreamHttpClients httpClients;
+    private final UpstreamGuard upstreamGuard;
+    private final ObjectMapper objectMapper;
+    private final long idleTimeoutNanos;
 
-    @Value("${ai.openai.model}")
-    private String model;
+    /** Một thread daemon kiểm tra mọi stream đang chạy có bị OpenAI bỏ treo không. */
+    private final ScheduledExecutorService idleWatchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "chat-idle-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    /** Thời gian tối đa chờ header phản hồi của request stream. */
+    private static final long STREAM_TIMEOUT_MS = 30_000;
+
+    public ChatService(OpenAIConfig openAIConfig,
+                       UpstreamHttpClients httpClients,
+                       UpstreamGuard upstreamGuard,
+                       ObjectMapper objectMapper,
+                       @Value("${app.chat.stream-idle-timeout-ms:20000}") long idleTimeoutMs) {
+        this.openAIConfig = openAIConfig;
+        this.httpClients = httpClients;
+        this.upstreamGuard = upstreamGuard;
+        this.objectMapper = objectMapper;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, idleTimeoutMs));
+    }
 
     public String askAI(String userMessage) {
 
-        String url = "https://api.openai.com/v1/chat/completions";
+        String url = completionsUrl();
 
         HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(openAiKey);
+        headers.setBearerAuth(openAIConfig.getApikey());
         headers.setContentType(MediaType.APPLICATION_JSON);
 
+        Map<String, Object> body = buildBody(userMessage);
+
+        HttpEntity<Map<String, Object>> request =
+                new HttpEntity<>(body, headers);
+
+        RestTemplate restTemplate = httpClients.restTemplate(UpstreamHttpClients.OPENAI);
+        ResponseEntity<Map> response;
+        try {
+            response = upstreamGuard.call(UpstreamHttpClients.OPENAI,
+                    () -> restTemplate.postForEntity(url, request, Map.class));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Lỗi khi gọi OpenAI: " + e.getMessage(), e);
+        }
+
+        Map choice = (Map)((List)response.getBody().get("choices")).get(0);
+        Map messageObj = (Map)choice.get("message");
+
+        return messageObj.get("content").toString();
+    }
+
+    /**
+     * Gọi OpenAI với {@code stream: true} và chuyển từng đoạn text cho {@code onDelta} ngay khi nhận được.
+     * Không chặn thread gọi: dữ liệu được đọc bất đồng bộ bởi JDK HttpClient.
+     * Header đã về mà quá {@code app.chat.stream-idle-timeout-ms} không nhận được dòng nào thì stream bị huỷ
+     * và {@link ChatStream#done()} lỗi {@link TimeoutException} – HttpClient chỉ có timeout chờ header
+     * ({@code STREAM_TIMEOUT_MS}), không có timeout đọc body.
+     * @return stream đang chạy; {@link ChatStream#done()} hoàn tất với toàn bộ câu trả lời
+     * @throws IllegalStateException không tạo được request
+     */
+    public ChatStream streamAI(String userMessage, Consumer<String> onDelta) {
+        UpstreamGuard.Lease lease = upstreamGuard.acquire(UpstreamHttpClients.OPENAI);
+
+        Map<String, Object> body = buildBody(userMessage);
+        body.put("stream", true);
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(completionsUrl()))
+                    .timeout(Duration.ofMillis(STREAM_TIMEOUT_MS))
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + openAIConfig.getApikey())
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (Exception e) {
+            lease.succeeded();
+            throw new IllegalStateException("Không tạo được request OpenAI: " + e.getMessage(), e);
+        }
+
+        ChatStream stream = new ChatStream(objectMapper, onDelta);
+        stream.done().whenComplete((text, ex) -> {
+            if (ex == null || ex instanceof CancellationException) lease.succeeded();
+            else lease.failed();
+        });
+
+        HttpResponse.BodyHandler<Void> handler = info -> {
+            if (info.statusCode() / 100 != 2) {
+                stream.fail(new IllegalStateException("OpenAI trả về HTTP " + info.statusCode()));
+                return HttpResponse.BodySubscribers.discarding();
+            }
+            stream.lastActivity = System.nanoTime();
+            watchIdle(stream, idleTimeoutNanos);
+            return HttpResponse.BodySubscribers.fromLineSubscriber(stream);
+        };
+        httpClients.streamingClient().sendAsync(request, handler)
+                .whenComplete((res, ex) -> {
+                    if (ex != null) stream.fail(ex);
+                });
+        return stream;
+    }
+
+    /** Hẹn giờ tới lúc stream có thể hết hạn; có dòng mới trong lúc chờ thì hẹn lại phần còn lại. */
+    private void watchIdle(ChatStream stream, long delayNanos) {
+        idleWatchdog.schedule(() -> {
+            if (stream.done().isDone()) return;
+            long idle = System.nanoTime() - stream.lastActivity;
+            if (idle >= idleTimeoutNanos) {
+                stream.timeout(new TimeoutException(
+                        "OpenAI không gửi dữ liệu trong " + TimeUnit.NANOSECONDS.toMillis(idle) + "ms"));
+            } else {
+                watchIdle(stream, idleTimeoutNanos - idle);
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        idleWatchdog.shutdownNow();
+    }
+
+    /**
+     * Đọc từng dòng SSE của OpenAI ("data: {...}" / "data: [DONE]") và ghép câu trả lời.
+     */
+    public static final class ChatStream implements Flow.Subscriber<String> {
+        private final ObjectMapper objectMapper;
+        private final Consumer<String> onDelta;
+        private final StringBuilder text = new StringBuilder();
+        private final CompletableFuture<String> done = new CompletableFuture<>();
+        private volatile Flow.Subscription subscription;
+        /** Lần cuối nhận được dòng (hoặc lúc header về) – cho watchdog idle. */
+        private volatile long lastActivity;
+
+        ChatStream(ObjectMapper objectMapper, Consumer<String> onDelta) {
+            this.objectMapper = objectMapper;
+            this.onDelta = onDelta;
+        }
+
+        public CompletableFuture<String> done() {
+            return done;
+        }
+
+        /** Client ngắt kết nối → huỷ luôn request tới OpenAI. */
+        public void cancel() {
+            Flow.Subscription s = subscription;
+            if (s != null) s.cancel();
+            done.cancel(false);
+        }
+
+        void fail(Throwable e) {
+            done.completeExceptionally(e);
+        }
+
+        /** Như {@link #cancel()} nhưng là lỗi: client nhận event {@code error}, breaker tính một lần hỏng. */
+        void timeout(TimeoutException e) {
+            done.completeExceptionally(e);
+            Flow.Subscription s = subscription;
+            if (s != null) s.cancel();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (done.isDone()) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(String line) {
+            lastActivity = System.nanoTime();
+            if (!line.startsWith("data:")) return;
+            String data = line.substring(5).trim();
+            if (data.equals("[DONE]")) {
+                done.complete(text.toString());
+                return;
+            }
+            try {
+                JsonNode delta = objectMapper.readTree(data).path("choices").path(0).path("delta").path("content");
+                if (delta.isTextual() && !delta.asText().isEmpty()) {
+                    text.append(delta.asText());
+                    onDelta.accept(delta.asText());
+                }
+            } catch (Exception e) {
+                subscription.cancel();
+                done.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(text.toString());
+        }
+    }
+
+    private String completionsUrl() {
+        String baseUrl = openAIConfig.getBaseurl();
+        return (baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl) + "/chat/completions";
+    }
+
+    private Map<String, Object> buildBody(String userMessage) {
         Map<String, Object> body = new HashMap<>();
-        body.put("model", model);
+        body.put("model", openAIConfig.getModel());
 
         List<Map<String, String>> messages = new ArrayList<>();
 
@@ -48,16 +262,6 @@ public class ChatService {
         messages.add(user);
 
         body.put("messages", messages);
-
-        HttpEntity<Map<String, Object>> request =
-                new HttpEntity<>(body, headers);
-
-        ResponseEntity<Map> response =
-                restTemplate.postForEntity(url, request, Map.class);
-
-        Map choice = (Map)((List)response.getBody().get("choices")).get(0);
-        Map messageObj = (Map)choice.get("message");
-
-        return messageObj.get("content").toString();
+        return body;
     }
 }
@@ -0,0 +1,111 @@
+package com.nckh.yte.service;
+
+import com.nckh.yte.entity.Specialty;
+import com.nckh.yte.repository.DoctorRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Danh sách id bác sĩ theo chuyên khoa, giữ trong bộ nhớ.
+ * Số bác sĩ nhỏ và ít thay đổi, nên luồng đặt lịch chỉ đọc một snapshot bất biến
+ * thay vì query bảng doctor cho mỗi lịch hẹn. Snapshot được nạp lại khi admin
+ * thêm/xoá bác sĩ hoặc đổi chuyên khoa.
+ */
+@Slf4j
+@Service
+public class DoctorRoster {
+
+    private record Snapshot(Map<Specialty, List<UUID>> bySpecialty, List<UUID> all) {
+    }
+
+    private final DoctorRepository doctorRepository;
+    private volatile Snapshot snapshot;
+    /** Không dùng synchronized: query JDBC bên trong sẽ ghim carrier của virtual thread. */
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    public DoctorRoster(DoctorRepository doctorRepository) {
+        this.doctorRepository = doctorRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        refresh();
+    }
+
+    /**
+     * Bác sĩ thuộc chuyên khoa (bác sĩ chưa gán chuyên khoa không thuộc khoa nào).
+     */
+    public List<UUID> doctorsFor(Specialty specialty) {
+        return current().bySpecialty().getOrDefault(specialty, List.of());
+    }
+
+    public List<UUID> allDoctors() {
+        return current().all();
+    }
+
+    /** Nạp lại snapshot từ DB (tuần tự, để snapshot cũ không ghi đè snapshot mới hơn). */
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            loadSnapshot();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void loadSnapshot() {
+        Map<Specialty, List<UUID>> grouped = new EnumMap<>(Specialty.class);
+        List<UUID> all = new ArrayList<>();
+        for (DoctorRepository.IdAndSpecialty d : doctorRepository.findAllIdsAndSpecialties()) {
+            all.add(d.getId());
+            if (d.getSpecialty() != null) {
+                grouped.computeIfAbsent(d.getSpecialty(), k -> new ArrayList<>()).add(d.getId());
+            }
+        }
+        grouped.replaceAll((k, v) -> List.copyOf(v));
+        snapshot = new Snapshot(grouped, List.copyOf(all));
+        log.info("Đã nạp {} bác sĩ ({} chuyên khoa)", all.size(), grouped.size());
+    }
+
+    /**
+     * Nạp lại sau khi transaction hiện tại commit (để đọc được thay đổi vừa ghi);
+     * nếu không có transaction thì nạp ngay.
+     */
+    public void refreshAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refresh();
+            }
+        });
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            refreshLock.lock();
+            try {
+                if (snapshot == null) loadSnapshot();
+                s = snapshot;
+            } finally {
+                refreshLock.unlock();
+            }
+        }
+        return s;
+    }
+}
@@ -0,0 +1,239 @@
+package com.nckh.yte.service;
+
+import com.nckh.yte.entity.AppointmentStatus;
+import com.nckh.yte.repository.AppointmentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Chỉ mục lịch bận của bác sĩ trong bộ nhớ, dùng để xếp lịch không trùng giờ.
+ * <p>
+ * Một ngày được chia thành 48 slot 30 phút, nên lịch của một bác sĩ trong một
+ * ngày vừa khít một {@code long} (bit i = slot i đã có người đặt).
+ * Tìm slot trống = vài phép toán bit; giữ chỗ = một lần compare-and-set
+ * trên {@link AtomicLong}, nên hai request đồng thời không thể lấy cùng một slot.
+ * <p>
+ * Dữ liệu của mỗi ngày được nạp từ {@link AppointmentRepository} ở lần đầu
+ * cần tới, sau đó cập nhật dần theo từng lần đặt/huỷ. Ngày đã qua không được xếp lịch
+ * (chỉ mục bỏ chúng đi), trong ngày hôm nay chỉ xếp slot chưa bắt đầu.
+ * <p>
+ * Chỉ mục nằm trong bộ nhớ của từng instance; khi chạy nhiều instance, unique index
+ * {@code uk_appointment_doctor_start} (V5) chặn hai lịch cùng bác sĩ, cùng giờ và
+ * {@link AppointmentService#assign} báo {@link SlotTakenException} để xếp lại.
+ */
+@Slf4j
+@Service
+public class DoctorScheduleIndex {
+
+    public static final int SLOT_MINUTES = 30;
+    private static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    private static final int MAX_ATTEMPTS = 16;
+
+    /** Khung giờ FE gửi lên (xem book_appointment_auto_screen.dart). */
+    private static final Map<String, TimeWindow> NAMED_WINDOWS = Map.of(
+            "MORNING", new TimeWindow(LocalTime.of(8, 0), LocalTime.of(11, 30)),
+            "AFTERNOON", new TimeWindow(LocalTime.of(13, 30), LocalTime.of(16, 30)),
+            "EVENING", new TimeWindow(LocalTime.of(17, 30), LocalTime.of(20, 0))
+    );
+    private static final TimeWindow WORKING_DAY = new TimeWindow(LocalTime.of(8, 0), LocalTime.of(17, 0));
+
+    public record TimeWindow(LocalTime start, LocalTime end) {
+    }
+
+    public record Slot(UUID doctorId, LocalDateTime start, LocalDateTime end) {
+    }
+
+    private record DayKey(UUID doctorId, LocalDate date) {
+    }
+
+    /** Slot đã giữ trong chỉ mục nhưng DB báo đã có lịch khác (instance khác vừa đặt). */
+    public static class SlotTakenException extends RuntimeException {
+        private final Slot slot;
+
+        public SlotTakenException(Slot slot, Throwable cause) {
+            super("Slot " + slot.start() + " của bác sĩ " + slot.doctorId() + " đã có lịch khác", cause);
+            this.slot = slot;
+        }
+
+        public Slot slot() {
+            return slot;
+        }
+    }
+
+    private final AppointmentRepository appointmentRepository;
+
+    private final Map<DayKey, AtomicLong> occupied = new ConcurrentHashMap<>();
+    private final Map<LocalDate, Boolean> loadedDays = new ConcurrentHashMap<>();
+    /** Khoá nạp ngày: không dùng synchronized vì query JDBC bên trong sẽ ghim carrier của virtual thread. */
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    public DoctorScheduleIndex(AppointmentRepository appointmentRepository) {
+        this.appointmentRepository = appointmentRepository;
+    }
+
+    /**
+     * Đọc khung giờ mong muốn: "MORNING"/"AFTERNOON"/"EVENING" hoặc "HH:mm - HH:mm".
+     * Không đọc được thì dùng giờ hành chính 08:00–17:00.
+     */
+    public static TimeWindow parseWindow(String preferredWindow) {
+        if (preferredWindow == null) return WORKING_DAY;
+        TimeWindow named = NAMED_WINDOWS.get(preferredWindow.trim().toUpperCase());
+        if (named != null) return named;
+        try {
+            String[] parts = preferredWindow.split("\\s*-\\s*");
+            LocalTime start = LocalTime.parse(parts[0].trim());
+            LocalTime end = parts.length > 1 ? LocalTime.parse(parts[1].trim()) : start.plusMinutes(SLOT_MINUTES);
+            return end.isAfter(start) ? new TimeWindow(start, end) : new TimeWindow(start, start.plusMinutes(SLOT_MINUTES));
+        } catch (Exception e) {
+            return WORKING_DAY;
+        }
+    }
+
+    /**
+     * Giữ slot 30 phút sớm nhất còn trống trong khung giờ, ưu tiên bác sĩ ít lịch nhất trong ngày.
+     * @param doctorIds các bác sĩ đủ điều kiện (cùng chuyên khoa)
+     * @return slot đã giữ, hoặc rỗng nếu không ai còn trống trong khung giờ (hoặc ngày đã qua)
+     */
+    public Optional<Slot> reserveEarliest(List<UUID> doctorIds, LocalDate date, TimeWindow window) {
+        LocalDateTime now = LocalDateTime.now();
+        // Ngày đã qua bị evictPastDays() bỏ ngay sau khi nạp → slot vừa giữ sẽ mất, dễ xếp trùng
+        if (doctorIds.isEmpty() || date.isBefore(now.toLocalDate())) return Optional.empty();
+        ensureLoaded(date);
+
+        long windowMask = mask(slotOf(window.start()), slotCeil(window.end()));
+        if (date.equals(now.toLocalDate())) {
+            windowMask &= mask(firstSlotFrom(now.toLocalTime()), SLOTS_PER_DAY);
+        }
+        if (windowMask == 0) return Optional.empty();
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            AtomicLong bestDay = null;
+            long bestSeen = 0;
+            UUID bestDoctor = null;
+            int bestSlot = -1;
+            int bestLoad = Integer.MAX_VALUE;
+
+            for (UUID doctorId : doctorIds) {
+                AtomicLong day = day(doctorId, date);
+                long seen = day.get();
+                long free = ~seen & windowMask;
+                if (free == 0) continue;
+
+                int load = Long.bitCount(seen);
+                int slot = Long.numberOfTrailingZeros(free);
+                if (load < bestLoad || (load == bestLoad && slot < bestSlot)) {
+                    bestDay = day;
+                    bestSeen = seen;
+                    bestDoctor = doctorId;
+                    bestSlot = slot;
+                    bestLoad = load;
+                }
+            }
+
+            if (bestDay == null) return Optional.empty();
+            if (bestDay.compareAndSet(bestSeen, bestSeen | (1L << bestSlot))) {
+                LocalDateTime start = date.atStartOfDay().plusMinutes((long) bestSlot * SLOT_MINUTES);
+                return Optional.of(new Slot(bestDoctor, start, start.plusMinutes(SLOT_MINUTES)));
+            }
+            // Có request khác vừa giữ chỗ của bác sĩ này → tính lại
+        }
+
+        log.warn("Không giữ được slot sau {} lần thử (ngày {})", MAX_ATTEMPTS, date);
+        return Optional.empty();
+    }
+
+    /**
+     * Trả lại slot (lịch bị huỷ hoặc transaction đặt lịch bị rollback).
+     */
+    public void release(UUID doctorId, LocalDateTime start, LocalDateTime end) {
+        if (doctorId == null || start == null) return;
+        AtomicLong day = occupied.get(new DayKey(doctorId, start.toLocalDate()));
+        if (day == null) return;
+        long bits = rangeMask(start, end);
+        day.getAndUpdate(v -> v & ~bits);
+    }
+
+    /** Đánh dấu slot đã bận (lịch được tạo ngoài luồng đặt tự động). */
+    public void markBooked(UUID doctorId, LocalDateTime start, LocalDateTime end) {
+        if (doctorId == null || start == null) return;
+        if (!loadedDays.containsKey(start.toLocalDate())) return; // sẽ được nạp từ DB khi cần
+        long bits = rangeMask(start, end);
+        day(doctorId, start.toLocalDate()).getAndUpdate(v -> v | bits);
+    }
+
+    /** Bỏ toàn bộ lịch của một bác sĩ khỏi chỉ mục (bác sĩ bị xoá). */
+    public void forgetDoctor(UUID doctorId) {
+        occupied.keySet().removeIf(k -> k.doctorId().equals(doctorId));
+    }
+
+    private void ensureLoaded(LocalDate date) {
+        if (loadedDays.containsKey(date)) return;
+        loadLock.lock();
+        try {
+            if (loadedDays.containsKey(date)) return;
+            LocalDateTime from = date.atStartOfDay();
+            for (AppointmentRepository.BookedSlot b : appointmentRepository.findBookedSlots(
+                    from, from.plusDays(1), AppointmentStatus.CANCELLED)) {
+                long bits = rangeMask(b.getStartTime(), b.getEndTime());
+                day(b.getDoctorId(), date).getAndUpdate(v -> v | bits);
+            }
+            loadedDays.put(date, Boolean.TRUE);
+        } finally {
+            loadLock.unlock();
+        }
+        evictPastDays();
+    }
+
+    private void evictPastDays() {
+        LocalDate today = LocalDate.now();
+        loadedDays.keySet().removeIf(d -> d.isBefore(today));
+        occupied.keySet().removeIf(k -> k.date().isBefore(today));
+    }
+
+    private AtomicLong day(UUID doctorId, LocalDate date) {
+        return occupied.computeIfAbsent(new DayKey(doctorId, date), k -> new AtomicLong());
+    }
+
+    private static long rangeMask(LocalDateTime start, LocalDateTime end) {
+        int from = slotOf(start.toLocalTime());
+        int to = end != null && end.toLocalDate().equals(start.toLocalDate())
+                ? slotCeil(end.toLocalTime())
+                : (end != null ? SLOTS_PER_DAY : from + 1);
+        return mask(from, Math.max(to, from + 1));
+    }
+
+    /** Bit [from, to) được bật. */
+    private static long mask(int from, int to) {
+        from = Math.max(0, from);
+        to = Math.min(SLOTS_PER_DAY, to);
+        if (to <= from) return 0;
+        return ((1L << to) - 1) & ~((1L << from) - 1);
+    }
+
+    private static int slotOf(LocalTime t) {
+        return (t.getHour() * 60 + t.getMinute()) / SLOT_MINUTES;
+    }
+
+    /** Slot đầu tiên bắt đầu không sớm hơn {@code t}. */
+    private static int firstSlotFrom(LocalTime t) {
+        long slotNanos = TimeUnit.MINUTES.toNanos(SLOT_MINUTES);
+        return (int) ((t.toNanoOfDay() + slotNanos - 1) / slotNanos);
+    }
+
+    private static int slotCeil(LocalTime t) {
+        int minutes = t.getHour() * 60 + t.getMinute();
+        return (minutes + SLOT_MINUTES - 1) / SLOT_MINUTES;
+    }
+}
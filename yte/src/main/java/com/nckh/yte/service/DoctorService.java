@@ -2,26 +2,34 @@ package com.nckh.yte.service;
 
 import com.nckh.yte.entity.Doctor;
 import com.nckh.yte.entity.Role;
+import com.nckh.yte.entity.Specialty;
 import com.nckh.yte.entity.User;
 import com.nckh.yte.repository.DoctorRepository;
-import com.nckh.yte.repository.RoleRepository;
 import com.nckh.yte.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.UUID;
+
 @Service
 @RequiredArgsConstructor
 public class DoctorService {
 
     private final DoctorRepository doctorRepo;
     private final UserRepository userRepo;
-    private final RoleRepository roleRepo;
+    private final RoleRegistry roleRegistry;
     private final PasswordEncoder encoder;
+    private final DoctorRoster roster;
 
     @Transactional
     public Doctor create(String fullName, String username, String password) {
+        return create(fullName, username, password, null);
+    }
+
+    @Transactional
+    public Doctor create(String fullName, String username, String password, Specialty specialty) {
         // Kiểm tra username trùng trong bảng users
         if (userRepo.existsByUsername(username)) {
             throw new RuntimeException("Tên đăng nhập đã tồn tại!");
@@ -34,11 +42,12 @@ public class DoctorService {
         Doctor doctor = new Doctor();
         doctor.setFullName(fullName);
         doctor.setUsername(username);
+        doctor.setSpecialty(specialty);
         // KHÔNG set password vì entity Doctor không có field này
         doctorRepo.save(doctor);
 
         // 2️⃣ Lấy role "DOCTOR" từ bảng roles
-        Role roleDoctor = roleRepo.findByName("DOCTOR")
+        Role roleDoctor = roleRegistry.findByName("DOCTOR")
                 .orElseThrow(() -> new RuntimeException("Thiếu role DOCTOR trong bảng roles"));
 
         // 3️⃣ Tạo user login — gán 1 role duy nhất
@@ -50,6 +59,20 @@ public class DoctorService {
         user.setRole(roleDoctor);
         userRepo.save(user);
 
+        roster.refreshAfterCommit();
+        return doctor;
+    }
+
+    /**
+     * Gán/đổi chuyên khoa cho bác sĩ.
+     */
+    @Transactional
+    public Doctor assignSpecialty(UUID doctorId, Specialty specialty) {
+        Doctor doctor = doctorRepo.findById(doctorId)
+                .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy bác sĩ " + doctorId));
+        doctor.setSpecialty(specialty);
+        doctorRepo.save(doctor);
+        roster.refreshAfterCommit();
         return doctor;
     }
 }
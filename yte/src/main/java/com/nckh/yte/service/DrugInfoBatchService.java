@@ -0,0 +1,369 @@
+package com.nckh.yte.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.yte.OpenAIConfig;
+import com.nckh.yte.config.UpstreamHttpClients;
+import com.nckh.yte.config.UpstreamHttpProps;
+import com.nckh.yte.util.SingleFlight;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Tra cứu thông tin nhiều thuốc trong một request.
+ * <ol>
+ *   <li>Cache hit: L1, phần còn lại một câu {@code IN} xuống bảng Information ({@link DrugInfoCache#getAll}).</li>
+ *   <li>Miss: gom thành nhóm {@code chunk-size} thuốc, mỗi nhóm một lời gọi OpenAI với JSON schema
+ *       cố định; các nhóm chạy song song (vẫn qua {@link UpstreamGuard}).</li>
+ *   <li>Kết quả được tách theo từng thuốc và lưu cache như tra cứu đơn lẻ.</li>
+ * </ol>
+ * Mỗi miss được giữ chỗ trong single-flight của {@link DrugInfoCache} trước khi gọi AI: thuốc đang được
+ * request khác tra (đơn lẻ hay theo lô) thì chờ kết quả đó thay vì gọi thêm một lần và ghi trùng khoá.
+ * Response được ghép thẳng từ byte trong cache, không parse lại.
+ */
+@Slf4j
+@Service
+public class DrugInfoBatchService implements DisposableBean {
+
+    /** Lỗi cho tên thuốc chuẩn hoá ra khoá rỗng – các tên như vậy sẽ dùng chung một bản ghi cache. */
+    public static final String INVALID_NAME = "Tên thuốc không hợp lệ";
+
+    /** Khoá ASCII trong schema → khoá tiếng Việt mà FE đang hiển thị (giống tra cứu đơn lẻ). */
+    private static final Map<String, String> FIELDS = new LinkedHashMap<>();
+
+    static {
+        FIELDS.put("name", "Tên thuốc");
+        FIELDS.put("manufacturer", "Hãng sản xuất");
+        FIELDS.put("summary", "Tóm tắt bác sĩ");
+        FIELDS.put("indications", "Chỉ định / Công dụng");
+        FIELDS.put("dosage", "Liều dùng");
+        FIELDS.put("contraindications", "Chống chỉ định");
+        FIELDS.put("sideEffects", "Tác dụng phụ");
+        FIELDS.put("precautions", "Thận trọng / Lưu ý");
+        FIELDS.put("interactions", "Tương tác thuốc");
+    }
+
+    private final OpenAIConfig openAIConfig;
+    private final UpstreamHttpClients httpClients;
+    private final UpstreamGuard upstreamGuard;
+    private final DrugInfoCache drugInfoCache;
+    private final ObjectMapper objectMapper;
+    private final long waitMs;
+    private final int maxDrugs;
+    private final int chunkSize;
+    private final ExecutorService chunkExecutor;
+
+    public DrugInfoBatchService(OpenAIConfig openAIConfig,
+                                UpstreamHttpClients httpClients,
+                                UpstreamGuard upstreamGuard,
+                                DrugInfoCache drugInfoCache,
+                                ObjectMapper objectMapper,
+                                UpstreamHttpProps upstreamProps,
+                                @Value("${app.drug-info.batch.max-drugs:20}") int maxDrugs,
+                                @Value("${app.drug-info.batch.chunk-size:4}") int chunkSize,
+                                @Value("${app.threads.virtual:false}") boolean virtualThreads) {
+        this.openAIConfig = openAIConfig;
+        this.httpClients = httpClients;
+        this.upstreamGuard = upstreamGuard;
+        this.drugInfoCache = drugInfoCache;
+        this.objectMapper = objectMapper;
+        this.waitMs = upstreamProps.pool(UpstreamHttpClients.OPENAI).getDeadlineMs();
+        this.maxDrugs = maxDrugs;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.chunkExecutor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("drug-batch-", 0).factory())
+                : Executors.newCachedThreadPool(r -> {
+                    Thread t = new Thread(r, "drug-batch");
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    public int maxDrugs() {
+        return maxDrugs;
+    }
+
+    /**
+     * Kết quả theo lô: body JSON và số thuốc không lấy được (lỗi upstream).
+     * @param retryAfterMs khác 0: hết hạn mức gọi AI, không tra gì cả ({@code body} null)
+     */
+    public record BatchResult(byte[] body, int failed, int total, long retryAfterMs) {
+
+        static BatchResult limited(long retryAfterMs) {
+            return new BatchResult(null, 0, 0, retryAfterMs);
+        }
+    }
+
+    /** Một thuốc chưa có trong cache mà request này giữ chỗ nạp. */
+    private record Miss(String key, String raw, SingleFlight.Ticket<DrugInfoCache.Entry> ticket) {
+    }
+
+    /**
+     * @param drugNames tên thuốc theo thứ tự client gửi (trùng khoá chỉ tra một lần)
+     * @param charge trừ thêm {@code n} token hạn mức cho các lời gọi AI ngoài lời gọi đầu tiên;
+     *               trả về số ms phải chờ nếu không đủ (0 = được phép)
+     * @return {@code {"results": [{"drug": ..., "cached": bool, "data": {...}} | {"drug": ..., "error": ...}]}}
+     */
+    public BatchResult lookup(List<String> drugNames, IntToLongFunction charge) throws IOException {
+        Map<String, String> rawByKey = new LinkedHashMap<>();
+        List<String> requested = new ArrayList<>();
+        for (String name : drugNames) {
+            if (name == null || name.isBlank()) continue;
+            String raw = name.trim();
+            requested.add(raw);
+            String key = DrugInfoCache.normalizeKey(raw);
+            // Tên không còn chữ/số nào sau khi chuẩn hoá ("!!!", chữ ngoài Latin): không tra cache, không gọi AI
+            if (!key.isEmpty()) rawByKey.putIfAbsent(key, raw);
+        }
+
+        Map<String, DrugInfoCache.Entry> hits = drugInfoCache.getAll(rawByKey);
+        List<Map.Entry<String, String>> misses = rawByKey.entrySet().stream()
+                .filter(e -> !hits.containsKey(e.getKey()))
+                .toList();
+
+        // Mỗi nhóm là một lời gọi AI có tính phí; RateLimitFilter đã trừ token cho nhóm đầu
+        int chunks = (misses.size() + chunkSize - 1) / chunkSize;
+        if (chunks > 1) {
+            long wait = charge.applyAsLong(chunks - 1);
+            if (wait > 0) return BatchResult.limited(wait);
+        }
+
+        List<Miss> mine = new ArrayList<>();
+        Map<String, SingleFlight.Ticket<DrugInfoCache.Entry>> others = new LinkedHashMap<>();
+        for (Map.Entry<String, String> miss : misses) {
+            SingleFlight.Ticket<DrugInfoCache.Entry> ticket = drugInfoCache.claim(miss.getKey());
+            if (ticket.leader()) mine.add(new Miss(miss.getKey(), miss.getValue(), ticket));
+            else others.put(miss.getKey(), ticket);
+        }
+
+        Map<String, DrugInfoCache.Entry> loaded = new HashMap<>();
+        Map<String, String> errors = new HashMap<>();
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        try {
+            for (int i = 0; i < mine.size(); i += chunkSize) {
+                List<Miss> chunk = mine.subList(i, Math.min(i + chunkSize, mine.size()));
+                calls.add(CompletableFuture.runAsync(() -> loadChunk(chunk, loaded, errors), chunkExecutor));
+            }
+        } finally {
+            // Nhóm không lên được executor: trả lỗi cho các request đang chờ thay vì để treo
+            if (calls.size() * chunkSize < mine.size()) {
+                mine.subList(calls.size() * chunkSize, mine.size())
+                        .forEach(m -> m.ticket().fail(new IllegalStateException("Không xếp được lời gọi AI")));
+            }
+        }
+        calls.forEach(CompletableFuture::join);
+
+        // Thuốc do request khác đang tra: chờ kết quả đó (tối đa bằng hạn chót gọi AI)
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+        others.forEach((key, ticket) -> {
+            try {
+                loaded.put(key, ticket.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                errors.put(key, "Dịch vụ AI tạm thời không khả dụng, vui lòng thử lại sau.");
+            } catch (Exception e) {
+                errors.put(key, errorMessage(e));
+            }
+        });
+
+        // Ghép response từ byte đã có sẵn
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("{\"results\":[".getBytes(StandardCharsets.UTF_8));
+        int failed = 0;
+        for (int i = 0; i < requested.size(); i++) {
+            String raw = requested.get(i);
+            String key = DrugInfoCache.normalizeKey(raw);
+            if (i > 0) out.write(',');
+            out.write("{\"drug\":".getBytes(StandardCharsets.UTF_8));
+            out.write(objectMapper.writeValueAsBytes(raw));
+
+            if (key.isEmpty()) {
+                out.write(",\"error\":".getBytes(StandardCharsets.UTF_8));
+                out.write(objectMapper.writeValueAsBytes(INVALID_NAME));
+                out.write('}');
+                continue;
+            }
+            DrugInfoCache.Entry hit = hits.get(key);
+            DrugInfoCache.Entry entry = hit != null ? hit : loaded.get(key);
+            if (entry != null) {
+                out.write((",\"cached\":" + (hit != null) + ",\"data\":").getBytes(StandardCharsets.UTF_8));
+                out.write(entry.body());
+            } else {
+                failed++;
+                out.write(",\"error\":".getBytes(StandardCharsets.UTF_8));
+                out.write(objectMapper.writeValueAsBytes(errors.getOrDefault(key, "Không lấy được thông tin thuốc")));
+            }
+            out.write('}');
+        }
+        out.write("]}".getBytes(StandardCharsets.UTF_8));
+        return new BatchResult(out.toByteArray(), failed, requested.size(), 0);
+    }
+
+    private void loadChunk(List<Miss> chunk,
+                           Map<String, DrugInfoCache.Entry> loaded,
+                           Map<String, String> errors) {
+        List<String> names = chunk.stream().map(Miss::raw).toList();
+        try {
+            JSONArray results = callGpt(names);
+
+            Map<String, JSONObject> byQuery = new HashMap<>();
+            for (int i = 0; i < results.length(); i++) {
+                JSONObject r = results.optJSONObject(i);
+                if (r != null) byQuery.putIfAbsent(DrugInfoCache.normalizeKey(r.optString("query")), r);
+            }
+
+            for (Miss miss : chunk) {
+                // Chỉ ghép theo "query"; không đoán theo vị trí – AI đảo thứ tự hay bỏ sót là trả nhầm thuốc
+                JSONObject r = byQuery.get(miss.key());
+                if (r == null) {
+                    String message = "AI không trả kết quả cho thuốc này";
+                    miss.ticket().fail(new IllegalStateException(message));
+                    synchronized (errors) {
+                        errors.put(miss.key(), message);
+                    }
+                    continue;
+                }
+                DrugInfoCache.Entry entry = drugInfoCache.complete(miss.ticket(), miss.key(), miss.raw(),
+                        toResponse(miss.raw(), r));
+                synchronized (loaded) {
+                    loaded.put(miss.key(), entry);
+                }
+            }
+        } catch (Exception e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            String message = errorMessage(cause);
+            log.warn("Tra cứu thuốc theo lô thất bại cho {}: {}", names, cause.getMessage());
+            synchronized (errors) {
+                for (Miss miss : chunk) {
+                    if (miss.ticket().isDone()) continue;
+                    miss.ticket().fail(cause);
+                    errors.put(miss.key(), message);
+                }
+            }
+        } finally {
+            // Không để request nào chờ mãi một khoá mà nhóm này đã giữ chỗ
+            chunk.stream().filter(m -> !m.ticket().isDone())
+                    .forEach(m -> m.ticket().fail(new IllegalStateException("Không lấy được thông tin thuốc")));
+        }
+    }
+
+    private static String errorMessage(Throwable cause) {
+        return cause instanceof UpstreamGuard.UpstreamUnavailableException
+                ? "Dịch vụ AI tạm thời không khả dụng, vui lòng thử lại sau."
+                : "Lỗi khi gọi AI (GPT): " + cause.getMessage();
+    }
+
+    /** Cùng dạng với response tra cứu đơn lẻ: {"items": [thuốc]} hoặc {"items": [], "message": ...}. */
+    private static Map<String, Object> toResponse(String raw, JSONObject r) {
+        if (!r.optBoolean("found", false)) {
+            return Map.of(
+                    "items", Collections.emptyList(),
+                    "message", "Không thể tìm thấy thông tin cho thuốc '" + raw + "'."
+            );
+        }
+        Map<String, Object> drug = new LinkedHashMap<>();
+        FIELDS.forEach((field, label) -> {
+            String value = r.optString(field, "").trim();
+            if (!value.isEmpty()) drug.put(label, value);
+        });
+        return Map.of("items", List.of(drug));
+    }
+
+    private JSONArray callGpt(List<String> names) throws Exception {
+        URI uri = URI.create(trimTrailingSlash(openAIConfig.getBaseurl()) + "/chat/completions");
+
+        StringBuilder prompt = new StringBuilder("Tôi cần thông tin về các thuốc sau (mỗi dòng một thuốc):\n");
+        for (String name : names) prompt.append("- ").append(name).append('\n');
+        prompt.append("\nTên thuốc có thể viết sai, là tên tiếng Việt hoặc tên biệt dược – hãy tìm thuốc đúng nhất.\n")
+                .append("Trả về đúng một phần tử trong \"results\" cho mỗi thuốc, theo đúng thứ tự trên; ")
+                .append("\"query\" chép nguyên văn tên đã cho. Không tìm thấy thì \"found\": false và để trống các trường khác.\n")
+                .append("Nội dung bằng tiếng Việt: summary 2-3 câu; các trường còn lại chi tiết, dùng gạch đầu dòng •.");
+
+        JSONObject body = new JSONObject()
+                .put("model", openAIConfig.getModel())
+                .put("messages", new JSONArray()
+                        .put(new JSONObject()
+                                .put("role", "system")
+                                .put("content", "Bạn là một dược sĩ AI chuyên nghiệp. Nhiệm vụ của bạn là cung cấp thông tin thuốc chi tiết, chính xác bằng tiếng Việt."))
+                        .put(new JSONObject()
+                                .put("role", "user")
+                                .put("content", prompt.toString())))
+                .put("temperature", 0.2)
+                .put("response_format", new JSONObject()
+                        .put("type", "json_schema")
+                        .put("json_schema", new JSONObject()
+                                .put("name", "drug_info_batch")
+                                .put("strict", true)
+                                .put("schema", schema())));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(openAIConfig.getApikey());
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        HttpEntity<String> req = new HttpEntity<>(body.toString(), headers);
+
+        RestTemplate restTemplate = httpClients.restTemplate(UpstreamHttpClients.OPENAI);
+        ResponseEntity<String> res = upstreamGuard.call(UpstreamHttpClients.OPENAI,
+                () -> restTemplate.exchange(uri, HttpMethod.POST, req, String.class));
+        if (!res.getStatusCode().is2xxSuccessful() || res.getBody() == null) {
+            throw new RuntimeException("Không có phản hồi từ OpenAI");
+        }
+
+        JSONArray choices = new JSONObject(res.getBody()).optJSONArray("choices");
+        if (choices == null || choices.isEmpty()) throw new RuntimeException("Không có dữ liệu (choices) từ OpenAI");
+        JSONObject msg = choices.getJSONObject(0).optJSONObject("message");
+        String content = msg != null ? msg.optString("content", "{}") : "{}";
+        JSONArray results = new JSONObject(content).optJSONArray("results");
+        return results != null ? results : new JSONArray();
+    }
+
+    /** {"results": [{query, found, name, manufacturer, ...}]} – mọi trường bắt buộc (strict mode). */
+    private static JSONObject schema() {
+        JSONObject props = new JSONObject()
+                .put("query", new JSONObject().put("type", "string"))
+                .put("found", new JSONObject().put("type", "boolean"));
+        JSONArray required = new JSONArray().put("query").put("found");
+        for (String field : FIELDS.keySet()) {
+            props.put(field, new JSONObject().put("type", "string"));
+            required.put(field);
+        }
+        JSONObject item = new JSONObject()
+                .put("type", "object")
+                .put("properties", props)
+                .put("required", required)
+                .put("additionalProperties", false);
+        return new JSONObject()
+                .put("type", "object")
+                .put("properties", new JSONObject()
+                        .put("results", new JSONObject().put("type", "array").put("items", item)))
+                .put("required", new JSONArray().put("results"))
+                .put("additionalProperties", false);
+    }
+
+    private static String trimTrailingSlash(String s) {
+        if (s == null) return "";
+        return s.endsWith("/") ? s.substring(0, s.length() - 1) : s;
+    }
+
+    @Override
+    public void destroy() {
+        chunkExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,332 @@
+package com.nckh.yte.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.yte.entity.Information;
+import com.nckh.yte.repository.InformationRepository;
+import com.nckh.yte.util.SingleFlight;
+import com.nckh.yte.util.VietnameseText;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache 2 tầng cho thông tin thuốc.
+ * - L1: LRU trong bộ nhớ, giới hạn theo tổng số byte, giữ sẵn response hoàn chỉnh
+ *   ({@link Entry}: JSON UTF-8, bản gzip và ETag) để ghi thẳng ra socket.
+ * - L2: bảng {@link Information} trong Postgres.
+ * Khoá luôn được chuẩn hoá bằng {@link VietnameseText#fold(String)}.
+ * Các lần miss đồng thời cùng khoá được gộp qua {@link SingleFlight}: chỉ một
+ * lời gọi upstream và một lần ghi DB.
+ * Tra cứu chỉ khớp đúng khoá: tên gần giống thường là một thuốc khác (clonazepam/lorazepam),
+ * nên {@link DrugNameIndex} chỉ dùng để gợi ý ("có phải ý bạn là"), không thay tên người dùng gõ.
+ */
+@Slf4j
+@Service
+public class DrugInfoCache {
+
+    /** Chi phí ước lượng cho mỗi entry (node của map, header mảng, ...). */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final InformationRepository informationRepository;
+    private final ObjectMapper objectMapper;
+    private final DrugNameIndex nameIndex;
+    private final long maxBytes;
+    private final int maxEntries;
+
+    private final LinkedHashMap<String, Entry> l1 = new LinkedHashMap<>(256, 0.75f, true);
+    private long l1Bytes;
+
+    private final SingleFlight<String, Entry> loads = new SingleFlight<>();
+
+    private final AtomicLong l1Hits = new AtomicLong();
+    private final AtomicLong l2Hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Response đã dựng sẵn cho một thuốc.
+     * @param body JSON dạng UTF-8
+     * @param gzip {@code body} đã nén gzip; null nếu nén không nhỏ hơn
+     * @param etag ETag (có dấu nháy) tính trên {@code body}
+     */
+    public record Entry(byte[] body, byte[] gzip, String etag) {
+
+        static Entry of(byte[] body) {
+            return new Entry(body, gzipOrNull(body), "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+        }
+
+        long size() {
+            return body.length + (gzip != null ? gzip.length : 0) + etag.length() * 2L;
+        }
+    }
+
+    public DrugInfoCache(InformationRepository informationRepository,
+                         ObjectMapper objectMapper,
+                         DrugNameIndex nameIndex,
+                         @Value("${app.cache.drug-info.max-bytes:33554432}") long maxBytes,
+                         @Value("${app.cache.drug-info.max-entries:5000}") int maxEntries) {
+        this.informationRepository = informationRepository;
+        this.objectMapper = objectMapper;
+        this.nameIndex = nameIndex;
+        this.maxBytes = maxBytes;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Chuẩn hoá tên thuốc thành khoá cache.
+     */
+    public static String normalizeKey(String drugName) {
+        return VietnameseText.fold(drugName);
+    }
+
+    /**
+     * Tra cache: L1 trước, sau đó L2. Bản ghi L2 tìm thấy sẽ được đưa lên L1.
+     * @param key khoá đã chuẩn hoá
+     * @param rawName tên gốc (đã trim) – dùng cho các bản ghi cũ chưa có nameKey
+     * @return response dựng sẵn nếu có
+     */
+    public Optional<Entry> get(String key, String rawName) {
+        Entry hit;
+        synchronized (this) {
+            hit = l1.get(key);
+        }
+        if (hit != null) {
+            l1Hits.incrementAndGet();
+            return Optional.of(hit);
+        }
+
+        try {
+            Optional<Information> row = informationRepository.findFirstByNameKey(key);
+            if (row.isEmpty() && rawName != null) {
+                // Bản ghi cũ: lưu theo tên gốc, chưa có nameKey → gắn khoá cho lần sau
+                row = informationRepository.findFirstByName(rawName);
+                row.filter(info -> info.getNameKey() == null).ifPresent(info -> backfillKey(info, key));
+            }
+            if (row.isPresent() && row.get().getResponseData() != null) {
+                Entry entry = Entry.of(row.get().getResponseData().getBytes(StandardCharsets.UTF_8));
+                l2Hits.incrementAndGet();
+                putL1(key, entry);
+                return Optional.of(entry);
+            }
+        } catch (Exception e) {
+            log.warn("Lỗi khi đọc cache thuốc '{}': {}", key, e.getMessage());
+        }
+
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * Tra nhiều thuốc một lúc: L1 trước, phần còn lại bằng một câu {@code IN} xuống L2.
+     * @param rawByKey khoá đã chuẩn hoá → tên gốc (đã trim)
+     * @return các khoá có trong cache → response dựng sẵn
+     */
+    public Map<String, Entry> getAll(Map<String, String> rawByKey) {
+        Map<String, Entry> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        synchronized (this) {
+            for (String key : rawByKey.keySet()) {
+                Entry hit = l1.get(key);
+                if (hit != null) found.put(key, hit);
+                else missing.add(key);
+            }
+        }
+        l1Hits.addAndGet(found.size());
+
+        if (!missing.isEmpty()) {
+            try {
+                for (Information info : informationRepository.findByNameKeyIn(missing)) {
+                    addL2Hit(found, info.getNameKey(), info);
+                }
+                // Bản ghi cũ chưa có nameKey → tra theo tên gốc và gắn khoá cho lần sau
+                Map<String, String> keyByRaw = new HashMap<>();
+                for (String key : missing) {
+                    if (!found.containsKey(key)) keyByRaw.put(rawByKey.get(key), key);
+                }
+                if (!keyByRaw.isEmpty()) {
+                    for (Information info : informationRepository.findByNameInAndNameKeyIsNull(keyByRaw.keySet())) {
+                        String key = keyByRaw.get(info.getName());
+                        if (key == null || found.containsKey(key)) continue;
+                        backfillKey(info, key);
+                        addL2Hit(found, key, info);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Lỗi khi đọc cache thuốc theo lô ({} khoá): {}", missing.size(), e.getMessage());
+            }
+        }
+
+        misses.addAndGet(rawByKey.size() - found.size());
+        return found;
+    }
+
+    private void addL2Hit(Map<String, Entry> found, String key, Information info) {
+        if (key == null || info.getResponseData() == null || found.containsKey(key)) return;
+        Entry entry = Entry.of(info.getResponseData().getBytes(StandardCharsets.UTF_8));
+        l2Hits.incrementAndGet();
+        putL1(key, entry);
+        found.put(key, entry);
+    }
+
+    /**
+     * Tra cache, nếu miss thì chạy {@code loader} đúng một lần cho mọi request
+     * đồng thời cùng khoá rồi lưu kết quả.
+     * @param maxWaitMs thời gian tối đa chờ lời gọi của request khác (thường là deadline của upstream)
+     * @param loader gọi upstream, trả về response map (ném exception nếu lỗi)
+     * @return response dựng sẵn
+     * @throws UpstreamGuard.UpstreamUnavailableException chờ request khác quá {@code maxWaitMs}
+     */
+    public Entry getOrLoad(String key, String rawName, long maxWaitMs,
+                           Callable<Map<String, Object>> loader) throws Exception {
+        Optional<Entry> cached = get(key, rawName);
+        if (cached.isPresent()) return cached.get();
+
+        try {
+            return loads.execute(key, () -> {
+                // Leader trước có thể vừa xong giữa lúc miss và lúc vào single-flight
+                Entry fresh;
+                synchronized (this) {
+                    fresh = l1.get(key);
+                }
+                if (fresh != null) return fresh;
+                return put(key, rawName, loader.call());
+            }, maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new UpstreamGuard.UpstreamUnavailableException(
+                    "drug-info: chờ lời gọi đang chạy quá " + maxWaitMs + "ms");
+        }
+    }
+
+    /**
+     * Giữ chỗ nạp {@code key} trong cùng single-flight với {@link #getOrLoad}, cho caller tự nạp theo lô.
+     * Ticket leader: caller phải nạp rồi gọi {@link #complete} (hoặc {@link SingleFlight.Ticket#fail});
+     * không thì chờ lời gọi đang chạy bằng {@link SingleFlight.Ticket#await(long, java.util.concurrent.TimeUnit)}.
+     */
+    public SingleFlight.Ticket<Entry> claim(String key) {
+        SingleFlight.Ticket<Entry> ticket = loads.join(key);
+        if (!ticket.leader()) return ticket;
+        // Leader trước có thể vừa xong giữa lúc miss và lúc giữ chỗ
+        Entry fresh;
+        synchronized (this) {
+            fresh = l1.get(key);
+        }
+        if (fresh == null) return ticket;
+        ticket.complete(fresh);
+        return SingleFlight.Ticket.done(fresh);
+    }
+
+    /**
+     * {@link #put} cho khoá đã giữ chỗ bằng {@link #claim}, rồi trả kết quả cho các request đang chờ.
+     */
+    public Entry complete(SingleFlight.Ticket<Entry> ticket, String key, String rawName,
+                          Map<String, Object> response) throws Exception {
+        try {
+            Entry entry = put(key, rawName, response);
+            ticket.complete(entry);
+            return entry;
+        } catch (Exception e) {
+            ticket.fail(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Serialize response (một lần duy nhất), lưu xuống L2 và đưa lên L1.
+     * @return response dựng sẵn (luôn trả về kể cả khi lưu L2 lỗi)
+     */
+    public Entry put(String key, String rawName, Map<String, Object> response) throws Exception {
+        byte[] body = objectMapper.writeValueAsBytes(response);
+        try {
+            Information entry = new Information();
+            entry.setName(rawName);
+            entry.setNameKey(key);
+            entry.setResponseData(new String(body, StandardCharsets.UTF_8));
+            informationRepository.save(entry);
+        } catch (DataIntegrityViolationException e) {
+            // Một instance khác đã ghi cùng khoá (unique name_key) – giữ bản đã có
+        } catch (Exception e) {
+            log.warn("Lỗi khi lưu cache thuốc '{}': {}", key, e.getMessage());
+        }
+        Entry entry = Entry.of(body);
+        putL1(key, entry);
+        nameIndex.add(key, rawName, response);
+        return entry;
+    }
+
+    private void backfillKey(Information info, String key) {
+        try {
+            info.setNameKey(key);
+            informationRepository.save(info);
+        } catch (DataIntegrityViolationException e) {
+            // Đã có bản ghi khác mang khoá này – bỏ qua
+        }
+    }
+
+    private synchronized void putL1(String key, Entry entry) {
+        Entry previous = l1.put(key, entry);
+        if (previous != null) {
+            l1Bytes -= weight(key, previous);
+        }
+        l1Bytes += weight(key, entry);
+
+        Iterator<Map.Entry<String, Entry>> it = l1.entrySet().iterator();
+        while ((l1Bytes > maxBytes || l1.size() > maxEntries) && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getKey().equals(key)) continue;
+            l1Bytes -= weight(eldest.getKey(), eldest.getValue());
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static long weight(String key, Entry entry) {
+        return (long) key.length() * 2 + entry.size() + ENTRY_OVERHEAD;
+    }
+
+    private static byte[] gzipOrNull(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 3 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(body);
+        } catch (IOException e) {
+            return null;
+        }
+        return out.size() < body.length ? out.toByteArray() : null;
+    }
+
+    /**
+     * Số liệu hit/miss/eviction của cache.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        synchronized (this) {
+            s.put("entries", l1.size());
+            s.put("bytes", l1Bytes);
+        }
+        s.put("maxBytes", maxBytes);
+        s.put("l1Hits", l1Hits.get());
+        s.put("l2Hits", l2Hits.get());
+        s.put("misses", misses.get());
+        s.put("evictions", evictions.get());
+        s.put("coalesced", loads.coalescedCount());
+        s.put("inFlight", loads.inFlightCount());
+        return s;
+    }
+}
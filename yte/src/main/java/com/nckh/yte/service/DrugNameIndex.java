@@ -0,0 +1,351 @@
+package com.nckh.yte.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.yte.repository.InformationRepository;
+import com.nckh.yte.util.VietnameseText;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Chỉ mục tên thuốc trong bộ nhớ, dựng từ các bản ghi cache ({@code Information}):
+ * mỗi thuốc được tra theo tên người dùng đã gõ lần đầu và tên chuẩn "Tên thuốc" do AI trả về,
+ * cả hai đều qua {@link VietnameseText#fold}.
+ * <ul>
+ *   <li>{@link #complete}: gợi ý theo tiền tố (đầu tên hoặc đầu một từ trong tên).</li>
+ *   <li>{@link #closest}: không có tiền tố nào khớp → tên gần nhất để gợi ý "có phải ý bạn là"
+ *       (trigram lọc ứng viên, khoảng cách chỉnh sửa xác nhận).</li>
+ * </ul>
+ * Chỉ dùng để gợi ý: nhiều thuốc thật chỉ cách nhau 1–2 ký tự (clonazepam/lorazepam,
+ * prednisone/prednisolone), nên không bao giờ tự thay tên người dùng tra bằng tên gần đúng.
+ * Chỉ mục là snapshot bất biến; mỗi lần thêm thuốc dựng snapshot mới (ghi hiếm, đọc rất nhiều).
+ */
+@Slf4j
+@Service
+public class DrugNameIndex {
+
+    private static final String DRUG_NAME_FIELD = "Tên thuốc";
+
+    /** Tên ngắn hơn mức này chỉ khớp chính xác – sai 1 ký tự đã là thuốc khác. */
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    private final InformationRepository informationRepository;
+    private final ObjectMapper objectMapper;
+
+    /** khoá cache → thuốc; nguồn để dựng lại snapshot. */
+    private final Map<String, Drug> drugs = new HashMap<>();
+    private volatile Snapshot snapshot = Snapshot.build(List.of());
+
+    private final AtomicLong exactHits = new AtomicLong();
+    private final AtomicLong fuzzyHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public DrugNameIndex(InformationRepository informationRepository, ObjectMapper objectMapper) {
+        this.informationRepository = informationRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /** Một thuốc đã có trong cache. */
+    public record Drug(String key, String display, Set<String> terms) {
+    }
+
+    /** Gợi ý trả cho FE. */
+    public record Suggestion(String name, String key) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        List<Drug> loaded = new ArrayList<>();
+        try (Stream<InformationRepository.NameRow> rows = informationRepository.streamNameRows()) {
+            rows.forEach(row -> {
+                String canonical = canonicalName(row.getResponseData());
+                if (canonical != null) loaded.add(drug(row.getNameKey(), row.getName(), canonical));
+            });
+        } catch (Exception e) {
+            log.warn("Không dựng được chỉ mục tên thuốc: {}", e.getMessage());
+            return;
+        }
+        synchronized (drugs) {
+            loaded.forEach(d -> drugs.merge(d.key(), d, DrugNameIndex::mergeTerms));
+            snapshot = Snapshot.build(drugs.values());
+        }
+        log.info("Chỉ mục tên thuốc: {} thuốc, {} tên", drugs.size(), snapshot.terms.length);
+    }
+
+    /**
+     * Thêm một thuốc vừa được lưu cache.
+     * @param response response đã lưu; thuốc "không tìm thấy" (items rỗng) không được đưa vào chỉ mục
+     */
+    public void add(String key, String rawName, Map<String, Object> response) {
+        String canonical = canonicalName(response);
+        if (key == null || key.isEmpty() || canonical == null) return;
+        synchronized (drugs) {
+            drugs.merge(key, drug(key, rawName, canonical), DrugNameIndex::mergeTerms);
+            snapshot = Snapshot.build(drugs.values());
+        }
+    }
+
+    /**
+     * Khoá của thuốc có tên gần nhất với {@code name} (khớp đúng, hoặc lệch vài ký tự) – chỉ để gợi ý.
+     * Không chắc chắn (hai thuốc cùng gần như nhau, hoặc khác số như "vitamin b1"/"vitamin b2") thì trả rỗng.
+     * @param name tên gốc hoặc khoá đã chuẩn hoá
+     */
+    public Optional<String> closest(String name) {
+        String q = VietnameseText.fold(name);
+        if (q.isEmpty()) return Optional.empty();
+        Snapshot s = snapshot;
+
+        Integer exact = s.exact.get(q);
+        if (exact != null) {
+            exactHits.incrementAndGet();
+            return Optional.of(s.keys[exact]);
+        }
+
+        int maxEdits = maxEdits(q);
+        if (maxEdits == 0) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+
+        String digits = digitsOf(q);
+        String bestKey = null;
+        int bestDistance = Integer.MAX_VALUE;
+        boolean ambiguous = false;
+        for (int t : s.candidates(q, maxEdits)) {
+            String term = s.terms[t];
+            if (!digits.equals(digitsOf(term))) continue;
+            int d = editDistance(q, term, maxEdits);
+            if (d > maxEdits) continue;
+            String key = s.keys[t];
+            if (d < bestDistance) {
+                bestDistance = d;
+                bestKey = key;
+                ambiguous = false;
+            } else if (d == bestDistance && !key.equals(bestKey)) {
+                ambiguous = true;
+            }
+        }
+
+        if (bestKey == null || ambiguous) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        fuzzyHits.incrementAndGet();
+        return Optional.of(bestKey);
+    }
+
+    /**
+     * Gợi ý tên thuốc theo tiền tố; không có thì thử tên gần đúng.
+     */
+    public List<Suggestion> complete(String prefix, int limit) {
+        String q = VietnameseText.fold(prefix);
+        if (q.isEmpty() || limit <= 0) return List.of();
+        Snapshot s = snapshot;
+
+        LinkedHashMap<String, Suggestion> out = new LinkedHashMap<>();
+        for (Map.Entry<String, int[]> e : s.prefixes.tailMap(q, true).entrySet()) {
+            if (!e.getKey().startsWith(q)) break;
+            for (int t : e.getValue()) {
+                String key = s.keys[t];
+                out.putIfAbsent(key, new Suggestion(s.displays[t], key));
+                if (out.size() >= limit) return List.copyOf(out.values());
+            }
+        }
+        if (out.isEmpty()) {
+            closest(q).ifPresent(key -> {
+                Integer t = s.firstTermOf.get(key);
+                if (t != null) out.put(key, new Suggestion(s.displays[t], key));
+            });
+        }
+        return List.copyOf(out.values());
+    }
+
+    public Map<String, Object> stats() {
+        Snapshot s = snapshot;
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("drugs", s.firstTermOf.size());
+        m.put("terms", s.terms.length);
+        m.put("exactHits", exactHits.get());
+        m.put("fuzzyHits", fuzzyHits.get());
+        m.put("misses", misses.get());
+        return m;
+    }
+
+    // ===== Dựng thuốc từ response =====
+
+    private Drug drug(String key, String rawName, String canonical) {
+        Set<String> terms = new LinkedHashSet<>();
+        terms.add(key);
+        String raw = VietnameseText.fold(rawName);
+        if (!raw.isEmpty()) terms.add(raw);
+        String c = VietnameseText.fold(canonical);
+        if (!c.isEmpty()) terms.add(c);
+        return new Drug(key, canonical.trim(), terms);
+    }
+
+    private static Drug mergeTerms(Drug a, Drug b) {
+        Set<String> terms = new LinkedHashSet<>(a.terms());
+        terms.addAll(b.terms());
+        return new Drug(a.key(), b.display(), terms);
+    }
+
+    /** "Tên thuốc" của phần tử đầu tiên trong items; null nếu không tìm thấy thuốc. */
+    private String canonicalName(String responseJson) {
+        if (responseJson == null) return null;
+        try {
+            JsonNode items = objectMapper.readTree(responseJson).path("items");
+            if (!items.isArray() || items.isEmpty()) return null;
+            String name = items.get(0).path(DRUG_NAME_FIELD).asText("");
+            return name.isBlank() ? "" : name;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String canonicalName(Map<String, Object> response) {
+        if (response == null || !(response.get("items") instanceof List<?> items) || items.isEmpty()) return null;
+        if (!(items.get(0) instanceof Map<?, ?> drug)) return null;
+        Object name = drug.get(DRUG_NAME_FIELD);
+        return name != null ? name.toString() : "";
+    }
+
+    // ===== So khớp =====
+
+    private static int maxEdits(String q) {
+        int letters = q.replace(" ", "").length();
+        if (letters < MIN_FUZZY_LENGTH) return 0;
+        return letters <= 7 ? 1 : 2;
+    }
+
+    private static String digitsOf(String s) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') b.append(c);
+            else if (b.length() > 0 && b.charAt(b.length() - 1) != ' ') b.append(' ');
+        }
+        return b.toString().trim();
+    }
+
+    /**
+     * Khoảng cách Damerau–Levenshtein (OSA: thêm/xoá/thay/đảo hai ký tự kề nhau).
+     * Dừng sớm và trả {@code max + 1} khi chắc chắn vượt ngưỡng.
+     */
+    static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) return max + 1;
+        int[] prev2 = new int[b.length() + 1];
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int v = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    v = Math.min(v, prev2[j - 2] + 1);
+                }
+                cur[j] = v;
+                rowMin = Math.min(rowMin, v);
+            }
+            if (rowMin > max) return max + 1;
+            int[] t = prev2;
+            prev2 = prev;
+            prev = cur;
+            cur = t;
+        }
+        return prev[b.length()];
+    }
+
+    /** Trigram có đệm đầu/cuối: "abc" → "$$a", "$ab", "abc", "bc$". */
+    private static List<String> trigrams(String s) {
+        String p = "$$" + s + "$";
+        List<String> grams = new ArrayList<>(p.length());
+        for (int i = 0; i + 3 <= p.length(); i++) grams.add(p.substring(i, i + 3));
+        return grams;
+    }
+
+    /** Snapshot bất biến của chỉ mục. */
+    private static final class Snapshot {
+        final String[] terms;
+        final String[] keys;
+        final String[] displays;
+        final Map<String, Integer> exact;
+        final Map<String, Integer> firstTermOf;
+        final Map<String, int[]> grams;
+        /** Tiền tố tra cứu: cả tên và phần bắt đầu từ mỗi từ trong tên. */
+        final NavigableMap<String, int[]> prefixes;
+
+        private Snapshot(List<String> terms, List<String> keys, List<String> displays) {
+            this.terms = terms.toArray(String[]::new);
+            this.keys = keys.toArray(String[]::new);
+            this.displays = displays.toArray(String[]::new);
+            this.exact = new HashMap<>();
+            this.firstTermOf = new HashMap<>();
+            Map<String, List<Integer>> g = new HashMap<>();
+            NavigableMap<String, List<Integer>> p = new TreeMap<>();
+            for (int t = 0; t < this.terms.length; t++) {
+                String term = this.terms[t];
+                exact.putIfAbsent(term, t);
+                firstTermOf.putIfAbsent(this.keys[t], t);
+                for (String gram : new HashSet<>(trigrams(term))) {
+                    g.computeIfAbsent(gram, k -> new ArrayList<>()).add(t);
+                }
+                for (int i = 0; i < term.length(); i++) {
+                    if (i == 0 || term.charAt(i - 1) == ' ') {
+                        p.computeIfAbsent(term.substring(i), k -> new ArrayList<>()).add(t);
+                    }
+                }
+            }
+            this.grams = new HashMap<>(g.size());
+            g.forEach((k, v) -> grams.put(k, v.stream().mapToInt(Integer::intValue).toArray()));
+            this.prefixes = new TreeMap<>();
+            p.forEach((k, v) -> prefixes.put(k, v.stream().mapToInt(Integer::intValue).toArray()));
+        }
+
+        static Snapshot build(Collection<Drug> drugs) {
+            List<String> terms = new ArrayList<>();
+            List<String> keys = new ArrayList<>();
+            List<String> displays = new ArrayList<>();
+            for (Drug d : drugs) {
+                String display = d.display().isEmpty() ? d.key() : d.display();
+                for (String term : d.terms()) {
+                    terms.add(term);
+                    keys.add(d.key());
+                    displays.add(display);
+                }
+            }
+            return new Snapshot(terms, keys, displays);
+        }
+
+        /**
+         * Ứng viên theo bổ đề q-gram: mỗi phép sửa phá tối đa 3 trigram,
+         * nên tên cách {@code maxEdits} phải chung ít nhất |T(q)| − 3·maxEdits trigram.
+         */
+        List<Integer> candidates(String q, int maxEdits) {
+            Set<String> qGrams = new HashSet<>(trigrams(q));
+            int need = Math.max(1, qGrams.size() - 3 * maxEdits);
+            Map<Integer, Integer> shared = new HashMap<>();
+            for (String gram : qGrams) {
+                int[] posting = grams.get(gram);
+                if (posting == null) continue;
+                for (int t : posting) shared.merge(t, 1, Integer::sum);
+            }
+            List<Integer> out = new ArrayList<>();
+            shared.forEach((t, n) -> {
+                if (n >= need) out.add(t);
+            });
+            return out;
+        }
+    }
+}
@@ -2,10 +2,12 @@
 package com.nckh.yte.service;
 
 import com.nckh.yte.config.GeminiProps;
+import com.nckh.yte.config.UpstreamHttpClients;
 import com.nckh.yte.gemini.GeminiRequest;
 import com.nckh.yte.gemini.GeminiResponse;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -14,11 +16,13 @@ import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor // Tự động tiêm (inject) các dependency 'final'
 public class GeminiService {
 
-    private final RestTemplate restTemplate;
+    private final UpstreamHttpClients httpClients;
+    private final UpstreamGuard upstreamGuard;
     private final GeminiProps geminiProps; // Tiêm cấu hình Gemini bạn đã tạo
 
     private String fullApiUrl; // Biến để lưu URL đầy đủ
@@ -30,11 +34,10 @@ public class GeminiService {
     @PostConstruct
     public void init() {
         // Ví dụ: "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash:generateContent"
-        this.fullApiUrl = geminiProps.getBaseUrl() + geminiProps.getModel() + ":generateContent";
-        
-        System.out.println("======================================================");
-        System.out.println("Gemini API URL Initialized: " + this.fullApiUrl);
-        System.out.println("======================================================");
+        String baseUrl = geminiProps.getBaseUrl();
+        if (!baseUrl.endsWith("/")) baseUrl += "/";
+        this.fullApiUrl = baseUrl + geminiProps.getModel() + ":generateContent";
+        log.info("Gemini API URL initialized: {}", this.fullApiUrl);
     }
 
     /**
@@ -69,7 +72,9 @@ public class GeminiService {
 
         try {
             // Sử dụng URL đã được xây dựng trong hàm init()
-            GeminiResponse response = restTemplate.postForObject(this.fullApiUrl, entity, GeminiResponse.class);
+            RestTemplate restTemplate = httpClients.restTemplate(UpstreamHttpClients.GEMINI);
+            GeminiResponse response = upstreamGuard.call(UpstreamHttpClients.GEMINI,
+                    () -> restTemplate.postForObject(this.fullApiUrl, entity, GeminiResponse.class));
 
             if (response != null && response.getFirstCandidateText() != null) {
                 String specialty = response.getFirstCandidateText().trim();
@@ -79,7 +84,7 @@ public class GeminiService {
             }
         } catch (Exception e) {
             // Nếu có lỗi (API key sai, hết hạn, ...), log lỗi và trả về null
-            System.err.println("Lỗi khi gọi Gemini API: " + e.getMessage());
+            log.warn("Lỗi khi gọi Gemini API: {}", e.getMessage());
             return null; 
         }
         
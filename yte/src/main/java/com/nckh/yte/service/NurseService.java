@@ -4,7 +4,6 @@ import com.nckh.yte.entity.Nurse;
 import com.nckh.yte.entity.Role;
 import com.nckh.yte.entity.User;
 import com.nckh.yte.repository.NurseRepository;
-import com.nckh.yte.repository.RoleRepository;
 import com.nckh.yte.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -17,7 +16,7 @@ public class NurseService {
 
     private final NurseRepository nurseRepo;
     private final UserRepository userRepo;
-    private final RoleRepository roleRepo;
+    private final RoleRegistry roleRegistry;
     private final PasswordEncoder encoder;
 
     @Transactional
@@ -39,7 +38,7 @@ public class NurseService {
         nurseRepo.save(nurse);
 
         // 2️⃣ Lấy role "NURSE"
-        Role roleNurse = roleRepo.findByName("NURSE")
+        Role roleNurse = roleRegistry.findByName("NURSE")
                 .orElseThrow(() -> new RuntimeException("Thiếu role NURSE trong bảng roles"));
 
         // 3️⃣ Tạo user login — gán trực tiếp role
@@ -1,17 +1,26 @@
 package com.nckh.yte.service;
 
-import com.nckh.yte.entity.Patient;
+import com.nckh.yte.dto.PatientListItem;
 import com.nckh.yte.entity.Role;
 import com.nckh.yte.entity.User;
 import com.nckh.yte.repository.PatientRepository;
-import com.nckh.yte.repository.RoleRepository;
 import com.nckh.yte.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * PatientService — now backed by UserRepository.
@@ -22,18 +31,60 @@ import java.util.stream.Collectors;
 public class PatientService {
 
     private final UserRepository userRepository;
-    private final RoleRepository roleRepository;
+    private final RoleRegistry roleRegistry;
     private final PatientRepository patientRepository; // optional, still used for compatibility
+    private final AccountService accountService;
+
+    private static final String PATIENT_ROLE = "PATIENT";
 
     /**
-     * Return all users with role=PATIENT.
+     * Return all users with role=PATIENT, joined with their Patient profile.
      */
-    public List<User> getAll() {
-        Role role = roleRepository.findByName("PATIENT")
-                .orElseThrow(() -> new IllegalArgumentException("Role PATIENT not found"));
-        return userRepository.findAll().stream()
-                .filter(u -> u.getRole().getId().equals(role.getId()))
-                .collect(Collectors.toList());
+    public List<PatientListItem> getAll() {
+        return userRepository.findPatientList(PATIENT_ROLE, null, Pageable.unpaged()).getContent();
+    }
+
+    /**
+     * One page of the patient directory, optionally filtered by username / name / phone.
+     */
+    public Page<PatientListItem> getPage(String q, Pageable pageable) {
+        String pattern = (q == null || q.isBlank()) ? null : "%" + q.trim().toLowerCase() + "%";
+        return userRepository.findPatientList(PATIENT_ROLE, pattern, pageable);
+    }
+
+    /**
+     * Write the whole patient directory as CSV, reading rows from a DB cursor
+     * so the list is never fully loaded in memory.
+     */
+    @Transactional(readOnly = true)
+    public void exportCsv(OutputStream out) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        w.write('\uFEFF'); // BOM để Excel đọc đúng tiếng Việt
+        w.write("id,username,fullName,firstName,lastName,dob,phone,email,address,gender,department,enabled\r\n");
+        try (Stream<PatientListItem> rows = userRepository.streamPatientList(PATIENT_ROLE)) {
+            Iterator<PatientListItem> it = rows.iterator();
+            while (it.hasNext()) {
+                PatientListItem p = it.next();
+                w.write(String.join(",",
+                        csv(p.getId()), csv(p.getUsername()), csv(p.getFullName()),
+                        csv(p.getFirstName()), csv(p.getLastName()), csv(p.getDob()),
+                        csv(p.getPhone()), csv(p.getEmail()), csv(p.getAddress()),
+                        csv(p.getGender()), csv(p.getDepartment()), csv(p.isEnabled())));
+                w.write("\r\n");
+            }
+        }
+        w.flush();
+    }
+
+    private static String csv(Object value) {
+        if (value == null) return "";
+        String s = value.toString();
+        // Chặn CSV injection khi mở bằng Excel
+        if (!s.isEmpty() && "=+-@\t\r".indexOf(s.charAt(0)) >= 0) s = "'" + s;
+        if (s.contains(",") || s.contains("\"") || s.contains("\n") || s.contains("\r")) {
+            s = "\"" + s.replace("\"", "\"\"") + "\"";
+        }
+        return s;
     }
 
     /**
@@ -60,7 +111,7 @@ public class PatientService {
             throw new IllegalArgumentException("Email already exists");
         }
 
-        Role role = roleRepository.findByName("PATIENT")
+        Role role = roleRegistry.findByName("PATIENT")
                 .orElseThrow(() -> new RuntimeException("Role PATIENT not found"));
         input.setRole(role);
         input.setEnabled(true);
@@ -78,10 +129,10 @@ public class PatientService {
     }
 
     /**
-     * Delete patient (user with role PATIENT).
+     * Delete patient (user with role PATIENT) together with the patient profile and appointments.
      */
     public void delete(UUID id) {
-        User user = getById(id);
-        userRepository.delete(user);
+        getById(id);
+        accountService.delete(List.of(id), false);
     }
 }
@@ -0,0 +1,91 @@
+package com.nckh.yte.service;
+
+import com.nckh.yte.entity.Role;
+import com.nckh.yte.repository.RoleRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bảng role (ADMIN, DOCTOR, NURSE, PATIENT) giữ trong bộ nhớ, tra theo tên hoặc id.
+ * Các role do DataInitializer tạo và hầu như không đổi, nên các luồng đăng ký/tạo tài khoản
+ * không cần query bảng roles mỗi lần. Snapshot bất biến, nạp ở lần dùng đầu tiên và
+ * nạp lại khi gọi {@link #refresh()} hoặc khi tra một tên chưa có.
+ */
+@Slf4j
+@Service
+public class RoleRegistry {
+
+    private record Snapshot(Map<String, Role> byName, Map<UUID, Role> byId) {
+    }
+
+    private final RoleRepository roleRepository;
+    private volatile Snapshot snapshot;
+    /** Không dùng synchronized: query JDBC bên trong sẽ ghim carrier của virtual thread. */
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    public RoleRegistry(RoleRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
+
+    /**
+     * Tìm role theo tên (không phân biệt hoa thường, bỏ prefix ROLE_).
+     */
+    public Optional<Role> findByName(String name) {
+        if (name == null) return Optional.empty();
+        String key = normalize(name);
+        Role role = current().byName().get(key);
+        if (role == null) {
+            // Có thể role vừa được thêm – nạp lại một lần
+            role = reload().byName().get(key);
+        }
+        return Optional.ofNullable(role);
+    }
+
+    public Optional<Role> findById(UUID id) {
+        return Optional.ofNullable(current().byId().get(id));
+    }
+
+    public List<Role> all() {
+        return List.copyOf(current().byId().values());
+    }
+
+    /** Nạp lại từ DB (sau khi thêm/sửa role). */
+    public void refresh() {
+        reload();
+    }
+
+    private Snapshot reload() {
+        reloadLock.lock();
+        try {
+            Map<String, Role> byName = new HashMap<>();
+            Map<UUID, Role> byId = new HashMap<>();
+            for (Role r : roleRepository.findAll()) {
+                if (r.getName() != null) byName.put(normalize(r.getName()), r);
+                byId.put(r.getId(), r);
+            }
+            Snapshot s = new Snapshot(Map.copyOf(byName), Map.copyOf(byId));
+            snapshot = s;
+            log.debug("Đã nạp {} role", byId.size());
+            return s;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        return s != null ? s : reload();
+    }
+
+    private static String normalize(String name) {
+        String n = name.trim().toUpperCase();
+        return n.startsWith("ROLE_") ? n.substring(5) : n;
+    }
+}
@@ -0,0 +1,190 @@
+package com.nckh.yte.service;
+
+import com.nckh.yte.entity.Specialty;
+import com.nckh.yte.util.VietnameseText;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import static com.nckh.yte.entity.Specialty.*;
+
+/**
+ * Phân loại triệu chứng → chuyên khoa ngay trong process, không gọi mạng.
+ * <p>
+ * Văn bản được tách token (giữ nguyên dấu), mỗi token so với từ khoá/cụm 2 từ có trọng số.
+ * Token có dấu phải khớp đúng dấu ("tìm" ≠ "tim"); token gõ không dấu thì so với dạng
+ * đã bỏ dấu ("tim" = "tim", "dau bung" = "đau bụng"). Cụm dài được ưu tiên và "ăn" các
+ * token bên trong, nên "dạ dày" không cộng điểm cho "da".
+ * <p>
+ * Độ tin cậy = tỉ trọng điểm của khoa thắng × mức đủ bằng chứng (điểm ≥ 2 là đủ).
+ * Dưới ngưỡng {@code app.classifier.min-confidence} thì nên hỏi Gemini.
+ */
+@Service
+public class SymptomClassifier {
+
+    /** Kết quả phân loại; confidence trong [0, 1]. */
+    public record Result(Specialty specialty, double confidence) {
+    }
+
+    private record Term(String[] raw, String[] folded, Specialty specialty, double weight) {
+    }
+
+    private static final Pattern SPLIT = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final double STRONG_EVIDENCE = 2.0;
+
+    private static final Map<Specialty, Map<String, Double>> KEYWORDS = new EnumMap<>(Specialty.class);
+
+    static {
+        KEYWORDS.put(TIM_MACH, Map.ofEntries(
+                Map.entry("tim", 1.5), Map.entry("nhịp tim", 2.5), Map.entry("đau ngực", 2.0),
+                Map.entry("tức ngực", 2.0), Map.entry("trống ngực", 2.0), Map.entry("huyết áp", 2.5),
+                Map.entry("hồi hộp", 1.5), Map.entry("khó thở", 1.0), Map.entry("phù chân", 1.5),
+                Map.entry("tim mạch", 3.0)));
+        KEYWORDS.put(CO_XUONG_KHOP, Map.ofEntries(
+                Map.entry("xương", 1.5), Map.entry("khớp", 2.0), Map.entry("đau lưng", 2.5),
+                Map.entry("cột sống", 2.5), Map.entry("thoát vị", 2.5), Map.entry("gout", 2.5),
+                Map.entry("gút", 2.5), Map.entry("bong gân", 2.5), Map.entry("gãy", 1.5),
+                Map.entry("đầu gối", 1.5), Map.entry("vai gáy", 2.0), Map.entry("tê bì", 1.0),
+                Map.entry("chuột rút", 1.0)));
+        KEYWORDS.put(TAI_MUI_HONG, Map.ofEntries(
+                Map.entry("tai", 1.5), Map.entry("mũi", 1.5), Map.entry("họng", 2.0),
+                Map.entry("ù tai", 2.5), Map.entry("nghẹt mũi", 2.5), Map.entry("sổ mũi", 2.5),
+                Map.entry("viêm họng", 3.0), Map.entry("đau họng", 2.5), Map.entry("amidan", 2.5),
+                Map.entry("xoang", 2.5), Map.entry("khàn tiếng", 2.5), Map.entry("ho", 1.0),
+                Map.entry("nuốt", 1.0)));
+        KEYWORDS.put(DA_LIEU, Map.ofEntries(
+                Map.entry("da", 1.5), Map.entry("ngứa", 2.0), Map.entry("mẩn", 2.0),
+                Map.entry("nổi mẩn", 2.5), Map.entry("mụn", 2.0), Map.entry("phát ban", 2.5),
+                Map.entry("dị ứng", 1.0), Map.entry("nấm", 1.5), Map.entry("chàm", 1.5),
+                Map.entry("vẩy nến", 3.0), Map.entry("rụng tóc", 2.0), Map.entry("mề đay", 3.0)));
+        KEYWORDS.put(RANG_HAM_MAT, Map.ofEntries(
+                Map.entry("răng", 2.5), Map.entry("nướu", 2.5), Map.entry("lợi", 1.0),
+                Map.entry("hàm", 1.5), Map.entry("sâu răng", 3.0), Map.entry("ê buốt", 1.5),
+                Map.entry("nhổ răng", 3.0), Map.entry("hôi miệng", 2.0), Map.entry("lưỡi", 1.0)));
+        KEYWORDS.put(NOI_TIET, Map.ofEntries(
+                Map.entry("tiểu đường", 3.0), Map.entry("tháo đường", 3.0), Map.entry("đường huyết", 3.0),
+                Map.entry("tuyến giáp", 3.0), Map.entry("bướu cổ", 3.0), Map.entry("khát nước", 2.0),
+                Map.entry("sụt cân", 1.5), Map.entry("nội tiết", 3.0), Map.entry("insulin", 3.0)));
+        KEYWORDS.put(TIEU_HOA, Map.ofEntries(
+                Map.entry("dạ dày", 3.0), Map.entry("bụng", 1.5), Map.entry("đau bụng", 2.5),
+                Map.entry("tiêu chảy", 3.0), Map.entry("táo bón", 3.0), Map.entry("buồn nôn", 2.0),
+                Map.entry("nôn", 1.5), Map.entry("ói", 1.5), Map.entry("ợ chua", 3.0),
+                Map.entry("trào ngược", 2.5), Map.entry("đầy hơi", 2.5), Map.entry("khó tiêu", 2.5),
+                Map.entry("trĩ", 2.0), Map.entry("gan", 1.5), Map.entry("tiêu hóa", 3.0)));
+        KEYWORDS.put(DA_KHOA, Map.ofEntries(
+                Map.entry("sốt", 0.8), Map.entry("mệt mỏi", 1.0), Map.entry("cảm cúm", 1.5),
+                Map.entry("chóng mặt", 1.0), Map.entry("đau đầu", 1.0), Map.entry("mất ngủ", 1.0),
+                Map.entry("tổng quát", 3.0)));
+    }
+
+    /** Từ khoá theo token đầu (dạng bỏ dấu), cụm dài xếp trước. */
+    private final Map<String, List<Term>> index = new HashMap<>();
+    private final double minConfidence;
+
+    private final AtomicLong confident = new AtomicLong();
+    private final AtomicLong uncertain = new AtomicLong();
+
+    public SymptomClassifier(@Value("${app.classifier.min-confidence:0.6}") double minConfidence) {
+        this.minConfidence = minConfidence;
+        KEYWORDS.forEach((specialty, terms) -> terms.forEach((phrase, weight) -> {
+            String[] raw = tokenize(phrase);
+            String[] folded = new String[raw.length];
+            for (int i = 0; i < raw.length; i++) folded[i] = VietnameseText.fold(raw[i]);
+            index.computeIfAbsent(folded[0], k -> new ArrayList<>())
+                    .add(new Term(raw, folded, specialty, weight));
+        }));
+        index.values().forEach(list -> list.sort(Comparator.comparingInt((Term t) -> t.raw().length).reversed()));
+    }
+
+    public Result classify(String symptom) {
+        String[] raw = tokenize(symptom);
+        String[] folded = new String[raw.length];
+        boolean[] marked = new boolean[raw.length];
+        for (int i = 0; i < raw.length; i++) {
+            folded[i] = VietnameseText.fold(raw[i]);
+            marked[i] = !folded[i].equals(raw[i]);
+        }
+
+        Map<Specialty, Double> scores = new EnumMap<>(Specialty.class);
+        int i = 0;
+        while (i < raw.length) {
+            Term match = null;
+            for (Term t : index.getOrDefault(folded[i], List.of())) {
+                if (matches(t, raw, folded, marked, i)) {
+                    match = t;
+                    break;
+                }
+            }
+            if (match == null) {
+                i++;
+                continue;
+            }
+            scores.merge(match.specialty(), match.weight(), Double::sum);
+            i += match.raw().length;
+        }
+
+        Result result = score(scores);
+        (isConfident(result) ? confident : uncertain).incrementAndGet();
+        return result;
+    }
+
+    /** Đủ tin cậy để bỏ qua Gemini. */
+    public boolean isConfident(Result result) {
+        return result.confidence() >= minConfidence;
+    }
+
+    private static boolean matches(Term t, String[] raw, String[] folded, boolean[] marked, int at) {
+        if (at + t.raw().length > raw.length) return false;
+        for (int k = 0; k < t.raw().length; k++) {
+            int p = at + k;
+            boolean ok = marked[p] ? raw[p].equals(t.raw()[k]) : folded[p].equals(t.folded()[k]);
+            if (!ok) return false;
+        }
+        return true;
+    }
+
+    private static Result score(Map<Specialty, Double> scores) {
+        if (scores.isEmpty()) return new Result(DA_KHOA, 0.0);
+        double total = 0;
+        Specialty best = DA_KHOA;
+        double bestScore = 0;
+        for (Map.Entry<Specialty, Double> e : scores.entrySet()) {
+            total += e.getValue();
+            if (e.getValue() > bestScore) {
+                best = e.getKey();
+                bestScore = e.getValue();
+            }
+        }
+        double confidence = (bestScore / total) * Math.min(1.0, bestScore / STRONG_EVIDENCE);
+        return new Result(best, confidence);
+    }
+
+    private static String[] tokenize(String s) {
+        if (s == null) return new String[0];
+        String n = SPLIT.matcher(Normalizer.normalize(s.toLowerCase(Locale.ROOT), Normalizer.Form.NFC))
+                .replaceAll(" ").trim();
+        return n.isEmpty() ? new String[0] : n.split(" ");
+    }
+
+    public Map<String, Object> stats() {
+        long c = confident.get();
+        long u = uncertain.get();
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("minConfidence", minConfidence);
+        s.put("confident", c);
+        s.put("uncertain", u);
+        s.put("localRate", c + u == 0 ? 0.0 : (double) c / (c + u));
+        return s;
+    }
+}
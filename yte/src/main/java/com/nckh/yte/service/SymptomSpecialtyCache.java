@@ -0,0 +1,181 @@
+package com.nckh.yte.service;
+
+import com.nckh.yte.entity.Specialty;
+import com.nckh.yte.entity.SymptomSpecialty;
+import com.nckh.yte.repository.SymptomSpecialtyRepository;
+import com.nckh.yte.util.VietnameseText;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache kết quả Gemini cho bước phân loại triệu chứng.
+ * <p>
+ * Khoá là dấu vân tay của triệu chứng: bỏ dấu, chữ thường, bỏ từ đệm, khử trùng lặp và sắp xếp
+ * token – "Sốt, đau họng" và "tôi bị đau họng sốt" cho cùng một khoá.
+ * L1 là LRU trong bộ nhớ (giới hạn số entry + TTL), L2 là bảng {@code symptom_specialty}
+ * để kết quả còn dùng được sau khi khởi động lại.
+ */
+@Slf4j
+@Service
+public class SymptomSpecialtyCache {
+
+    /** Từ đệm/đại từ không ảnh hưởng tới chuyên khoa (dạng đã bỏ dấu). */
+    private static final Set<String> STOP_WORDS = Set.of(
+            "toi", "em", "minh", "chau", "bi", "la", "va", "voi", "thi", "hay", "nhung",
+            "rat", "qua", "lam", "mot", "chut", "cua", "cho", "muon", "dang", "nay", "hom",
+            "ngay", "thay", "nhu", "kham", "bac", "si", "xin", "a", "oi", "nua", "cung", "roi",
+            "khi", "luc");
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private record Entry(Specialty specialty, long expiresAtMillis) {
+    }
+
+    private final SymptomSpecialtyRepository repository;
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    private final LinkedHashMap<String, Entry> l1 = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final AtomicLong l1Hits = new AtomicLong();
+    private final AtomicLong l2Hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public SymptomSpecialtyCache(SymptomSpecialtyRepository repository,
+                                 @Value("${app.cache.symptom.max-entries:10000}") int maxEntries,
+                                 @Value("${app.cache.symptom.ttl-hours:720}") long ttlHours) {
+        this.repository = repository;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = TimeUnit.HOURS.toMillis(ttlHours);
+    }
+
+    /**
+     * Dấu vân tay của triệu chứng; rỗng nếu không còn token nào có nghĩa.
+     */
+    public static String fingerprint(String symptom) {
+        TreeSet<String> tokens = new TreeSet<>();
+        for (String t : VietnameseText.fold(symptom).split(" ")) {
+            if (!t.isEmpty() && !STOP_WORDS.contains(t)) tokens.add(t);
+        }
+        String key = String.join(" ", tokens);
+        return key.length() <= MAX_KEY_LENGTH ? key : "sha256:" + sha256(key);
+    }
+
+    public Optional<Specialty> get(String fingerprint) {
+        if (fingerprint.isEmpty()) return Optional.empty();
+        long now = System.currentTimeMillis();
+
+        Entry e;
+        synchronized (this) {
+            e = l1.get(fingerprint);
+            if (e != null && e.expiresAtMillis() <= now) {
+                l1.remove(fingerprint);
+                evictions.incrementAndGet();
+                e = null;
+            }
+        }
+        if (e != null) {
+            l1Hits.incrementAndGet();
+            return Optional.of(e.specialty());
+        }
+
+        try {
+            Optional<SymptomSpecialty> row = repository.findById(fingerprint)
+                    .filter(r -> r.getCreatedAt().isAfter(expiredBefore()));
+            if (row.isPresent()) {
+                l2Hits.incrementAndGet();
+                // Hết hạn theo lúc kết quả được ghi, không gia hạn thêm một TTL mỗi lần lên L1
+                long createdAt = row.get().getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                putL1(fingerprint, row.get().getSpecialty(), createdAt);
+                return Optional.of(row.get().getSpecialty());
+            }
+        } catch (Exception ex) {
+            log.warn("Lỗi khi đọc cache phân loại '{}': {}", fingerprint, ex.getMessage());
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    public void put(String fingerprint, Specialty specialty) {
+        if (fingerprint.isEmpty()) return;
+        putL1(fingerprint, specialty, System.currentTimeMillis());
+        try {
+            repository.save(new SymptomSpecialty(fingerprint, specialty, LocalDateTime.now()));
+        } catch (Exception e) {
+            log.warn("Lỗi khi lưu cache phân loại '{}': {}", fingerprint, e.getMessage());
+        }
+    }
+
+    /** Dọn các bản ghi L2 đã hết hạn khi khởi động. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void purgeExpired() {
+        try {
+            int removed = repository.deleteOlderThan(expiredBefore());
+            if (removed > 0) log.info("Đã xoá {} kết quả phân loại triệu chứng quá hạn", removed);
+        } catch (Exception e) {
+            log.warn("Không dọn được cache phân loại: {}", e.getMessage());
+        }
+    }
+
+    private LocalDateTime expiredBefore() {
+        return LocalDateTime.now().minus(ttlMillis, ChronoUnit.MILLIS);
+    }
+
+    /** @param createdAtMillis lúc kết quả được tạo; entry hết hạn sau đó một TTL */
+    private synchronized void putL1(String fingerprint, Specialty specialty, long createdAtMillis) {
+        l1.put(fingerprint, new Entry(specialty, createdAtMillis + ttlMillis));
+        Iterator<Map.Entry<String, Entry>> it = l1.entrySet().iterator();
+        while (l1.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static String sha256(String s) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(md.digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Số liệu hit/miss; mỗi hit là một lần gọi Gemini được tiết kiệm.
+     */
+    public Map<String, Object> stats() {
+        long h = l1Hits.get() + l2Hits.get();
+        long m = misses.get();
+        Map<String, Object> s = new LinkedHashMap<>();
+        synchronized (this) {
+            s.put("entries", l1.size());
+        }
+        s.put("l1Hits", l1Hits.get());
+        s.put("l2Hits", l2Hits.get());
+        s.put("misses", m);
+        s.put("evictions", evictions.get());
+        s.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        s.put("savedUpstreamCalls", h);
+        return s;
+    }
+}
@@ -0,0 +1,425 @@
+package com.nckh.yte.service;
+
+import com.nckh.yte.config.UpstreamDeadline;
+import com.nckh.yte.config.UpstreamHttpProps;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lớp bảo vệ quanh các lời gọi AI (Gemini, OpenAI) để upstream chậm không kéo sập cả server.
+ * <ul>
+ *   <li>Bulkhead: tối đa {@code maxConcurrent} lời gọi đồng thời mỗi upstream, thừa thì từ chối ngay.</li>
+ *   <li>Circuit breaker: {@code failureThreshold} lỗi liên tiếp → mở trong {@code openMs},
+ *       sau đó cho đúng một request thử (half-open).</li>
+ *   <li>Retry có jitter cho lỗi mạng/5xx/429, không vượt quá {@code deadlineMs}; phần thời gian còn lại
+ *       cũng là response timeout của từng lần thử ({@link UpstreamDeadline}).</li>
+ *   <li>Hedge (tuỳ chọn): request đầu chậm hơn p95 gần đây thì gửi thêm một request nếu bulkhead còn chỗ,
+ *       lấy kết quả về trước và ngắt bản còn lại. Mỗi lần thử giữ một chỗ trong bulkhead tới khi thật sự kết thúc.</li>
+ * </ul>
+ * Khi bị từ chối, lời gọi ném {@link UpstreamUnavailableException} để caller chuyển sang phương án dự phòng.
+ */
+@Slf4j
+@Service
+public class UpstreamGuard implements DisposableBean {
+
+    /** Upstream đang bị cắt (circuit mở, bulkhead đầy hoặc hết hạn chót). */
+    public static class UpstreamUnavailableException extends RuntimeException {
+        public UpstreamUnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    private final UpstreamHttpProps props;
+    private final boolean virtualThreads;
+    private final Map<String, Upstream> upstreams = new ConcurrentHashMap<>();
+
+    public UpstreamGuard(UpstreamHttpProps props,
+                         @Value("${app.threads.virtual:false}") boolean virtualThreads) {
+        this.props = props;
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Chạy {@code call} dưới sự bảo vệ của bulkhead, circuit breaker, retry và hedge.
+     * {@code call} phải idempotent (có thể bị gọi nhiều lần).
+     */
+    public <T> T call(String name, Callable<T> call) throws Exception {
+        Upstream u = upstream(name);
+        UpstreamHttpProps.Pool p = u.config;
+        admit(u);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(p.getDeadlineMs());
+        // Chỗ caller giữ trong bulkhead; với hedge nó được giao cho lần thử chạy nền và trả khi lần thử đó xong
+        boolean holding = true;
+        try {
+            for (int attempt = 1; ; attempt++) {
+                long started = System.nanoTime();
+                try {
+                    T result;
+                    if (p.isHedge()) {
+                        holding = false;
+                        result = hedged(u, call, deadline);
+                    } else {
+                        result = UpstreamDeadline.within(deadline, call);
+                    }
+                    u.recordLatency(System.nanoTime() - started);
+                    u.onSuccess();
+                    return result;
+                } catch (Exception e) {
+                    boolean deadlineExceeded = e instanceof UpstreamUnavailableException;
+                    if (!deadlineExceeded && !isRetryable(e)) {
+                        // Lỗi phía request (4xx...) không phải dấu hiệu upstream hỏng
+                        u.releaseProbe();
+                        throw e;
+                    }
+                    u.onFailure();
+                    long backoff = jitter(p.getBackoffMs() << (attempt - 1));
+                    long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (deadlineExceeded || attempt >= p.getMaxAttempts() || !u.isClosed() || backoff >= remaining) {
+                        throw e;
+                    }
+                    if (!holding) {
+                        // Lần thử trước đã trả chỗ; bulkhead đầy thì không retry
+                        if (!u.bulkhead.tryAcquire()) throw e;
+                        holding = true;
+                    }
+                    log.info("Gọi {} lỗi ({}), thử lại sau {} ms", name, e.getMessage(), backoff);
+                    u.retries.incrementAndGet();
+                    Thread.sleep(backoff);
+                }
+            }
+        } finally {
+            if (holding) u.bulkhead.release();
+        }
+    }
+
+    /**
+     * Giữ chỗ cho một lời gọi bất đồng bộ (ví dụ stream SSE) – cùng bulkhead và circuit breaker
+     * với {@link #call}. Caller phải gọi {@link Lease#succeeded()} hoặc {@link Lease#failed()} khi xong.
+     */
+    public Lease acquire(String name) {
+        Upstream u = upstream(name);
+        admit(u);
+        return new Lease(u);
+    }
+
+    /** Chỗ đã giữ trong bulkhead; trả lại đúng một lần. */
+    public static final class Lease {
+        private final Upstream upstream;
+        private final AtomicInteger released = new AtomicInteger();
+
+        private Lease(Upstream upstream) {
+            this.upstream = upstream;
+        }
+
+        public void succeeded() {
+            if (released.compareAndSet(0, 1)) {
+                upstream.onSuccess();
+                upstream.bulkhead.release();
+            }
+        }
+
+        public void failed() {
+            if (released.compareAndSet(0, 1)) {
+                upstream.onFailure();
+                upstream.bulkhead.release();
+            }
+        }
+    }
+
+    private Upstream upstream(String name) {
+        return upstreams.computeIfAbsent(name, n -> new Upstream(n, props.pool(n), virtualThreads));
+    }
+
+    private static void admit(Upstream u) {
+        if (!u.allowRequest()) {
+            u.rejected.incrementAndGet();
+            throw new UpstreamUnavailableException(u.name + ": circuit open");
+        }
+        if (!u.bulkhead.tryAcquire()) {
+            u.rejected.incrementAndGet();
+            u.releaseProbe();
+            throw new UpstreamUnavailableException(u.name + ": too many concurrent calls");
+        }
+    }
+
+    /**
+     * Chạy request trên executor của upstream; quá ngưỡng hedge mà chưa xong thì chạy thêm một bản
+     * (nếu bulkhead còn chỗ), lấy kết quả thành công đầu tiên. Lần thử đầu dùng chỗ caller đang giữ.
+     * Khi trả về (thắng, lỗi hoặc quá hạn), các lần thử còn chạy bị ngắt; chúng vẫn giữ chỗ cho tới khi
+     * thread thật sự thoát – chậm nhất là hết hạn chót, vì response timeout đã bị rút theo {@code deadline}.
+     */
+    private <T> T hedged(Upstream u, Callable<T> call, long deadline) throws Exception {
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        List<Future<?>> attempts = new ArrayList<>(2);
+        try {
+            attempts.add(submit(u, call, deadline, winner, pending));
+
+            long remaining = deadline - System.nanoTime();
+            long hedgeAfter = Math.min(TimeUnit.MILLISECONDS.toNanos(u.hedgeDelayMs()), remaining);
+            try {
+                return winner.get(hedgeAfter, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException slow) {
+                if (System.nanoTime() < deadline && u.bulkhead.tryAcquire()) {
+                    pending.incrementAndGet();
+                    u.hedges.incrementAndGet();
+                    attempts.add(submit(u, call, deadline, winner, pending));
+                }
+            }
+
+            try {
+                return winner.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                throw new UpstreamUnavailableException(u.name + ": deadline exceeded");
+            }
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } finally {
+            attempts.forEach(f -> f.cancel(true));
+        }
+    }
+
+    /** Đưa một lần thử (đã giữ sẵn một chỗ trong bulkhead) lên executor của upstream. */
+    private static <T> Future<?> submit(Upstream u, Callable<T> call, long deadline,
+                                        CompletableFuture<T> winner, AtomicInteger pending) {
+        Attempt attempt = new Attempt(u.bulkhead, () -> {
+            try {
+                winner.complete(UpstreamDeadline.within(deadline, call));
+            } catch (Exception e) {
+                if (pending.decrementAndGet() == 0) winner.completeExceptionally(e);
+            }
+        });
+        try {
+            u.executor().execute(attempt);
+        } catch (RejectedExecutionException e) {
+            attempt.cancel(false);
+            throw e;
+        }
+        return attempt;
+    }
+
+    /**
+     * Một lần thử chạy nền; trả chỗ bulkhead đúng một lần: khi chạy xong, hoặc khi bị huỷ trước lúc bắt đầu.
+     * Huỷ lúc đang chạy chỉ ngắt thread – chỗ được trả khi thread thoát khỏi request.
+     */
+    private static final class Attempt extends FutureTask<Void> {
+        private final Semaphore bulkhead;
+        private final AtomicBoolean claimed;
+
+        Attempt(Semaphore bulkhead, Runnable body) {
+            this(bulkhead, body, new AtomicBoolean());
+        }
+
+        private Attempt(Semaphore bulkhead, Runnable body, AtomicBoolean claimed) {
+            super(() -> {
+                if (!claimed.compareAndSet(false, true)) return;
+                try {
+                    body.run();
+                } finally {
+                    bulkhead.release();
+                }
+            }, null);
+            this.bulkhead = bulkhead;
+            this.claimed = claimed;
+        }
+
+        @Override
+        protected void done() {
+            if (claimed.compareAndSet(false, true)) bulkhead.release();
+        }
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        return cause instanceof Exception ex ? ex : e;
+    }
+
+    private static boolean isRetryable(Exception e) {
+        return e instanceof ResourceAccessException
+                || e instanceof HttpServerErrorException
+                || e instanceof HttpClientErrorException.TooManyRequests;
+    }
+
+    /** Full jitter: ngẫu nhiên trong [0, base]. */
+    private static long jitter(long baseMs) {
+        return baseMs <= 0 ? 0 : ThreadLocalRandom.current().nextLong(baseMs + 1);
+    }
+
+    /**
+     * Trạng thái breaker và số liệu của từng upstream.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        upstreams.forEach((name, u) -> {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("state", u.state());
+            m.put("inFlight", u.config.getMaxConcurrent() - u.bulkhead.availablePermits());
+            m.put("consecutiveFailures", u.consecutiveFailures.get());
+            m.put("rejected", u.rejected.get());
+            m.put("retries", u.retries.get());
+            m.put("hedges", u.hedges.get());
+            m.put("p95Ms", u.p95Ms());
+            s.put(name, m);
+        });
+        return s;
+    }
+
+    @Override
+    public void destroy() {
+        upstreams.values().forEach(Upstream::shutdown);
+    }
+
+    /** Trạng thái của một upstream. */
+    private static final class Upstream {
+        private static final int WINDOW = 128;
+
+        final String name;
+        final UpstreamHttpProps.Pool config;
+        final Semaphore bulkhead;
+
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        /** 0 = đóng; khác 0 = thời điểm (ms) circuit được phép thử lại. */
+        final AtomicLong openUntil = new AtomicLong();
+        /** Đang có request thử trong trạng thái half-open. */
+        final AtomicInteger probe = new AtomicInteger();
+
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+        final AtomicLong hedges = new AtomicLong();
+
+        private final long[] latenciesMs = new long[WINDOW];
+        private int latencyNext;
+        private int latencyCount;
+
+        private final boolean virtualThreads;
+        private volatile ExecutorService executor;
+
+        Upstream(String name, UpstreamHttpProps.Pool config, boolean virtualThreads) {
+            this.name = name;
+            this.config = config;
+            this.bulkhead = new Semaphore(config.getMaxConcurrent());
+            this.virtualThreads = virtualThreads;
+        }
+
+        /**
+         * Executor cho các lần thử hedge, tạo khi cần. Mỗi task giữ một chỗ bulkhead
+         * nên số task chạy đồng thời không vượt {@code maxConcurrent}.
+         */
+        ExecutorService executor() {
+            ExecutorService e = executor;
+            if (e == null) {
+                synchronized (this) {
+                    if (executor == null) {
+                        if (virtualThreads) {
+                            executor = Executors.newThreadPerTaskExecutor(
+                                    Thread.ofVirtual().name("upstream-" + name + "-", 0).factory());
+                        } else {
+                            AtomicInteger seq = new AtomicInteger();
+                            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                                    config.getMaxConcurrent(), config.getMaxConcurrent(), 30, TimeUnit.SECONDS,
+                                    new LinkedBlockingQueue<>(), r -> {
+                                        Thread t = new Thread(r, "upstream-" + name + "-" + seq.incrementAndGet());
+                                        t.setDaemon(true);
+                                        return t;
+                                    });
+                            pool.allowCoreThreadTimeOut(true);
+                            executor = pool;
+                        }
+                    }
+                    e = executor;
+                }
+            }
+            return e;
+        }
+
+        void shutdown() {
+            ExecutorService e = executor;
+            if (e != null) e.shutdownNow();
+        }
+
+        boolean allowRequest() {
+            long until = openUntil.get();
+            if (until == 0) return true;
+            if (System.currentTimeMillis() < until) return false;
+            return probe.compareAndSet(0, 1); // half-open: chỉ một request thử
+        }
+
+        boolean isClosed() {
+            return openUntil.get() == 0;
+        }
+
+        void releaseProbe() {
+            probe.set(0);
+        }
+
+        void onSuccess() {
+            consecutiveFailures.set(0);
+            if (openUntil.getAndSet(0) != 0) {
+                log.info("Circuit '{}' đóng lại", name);
+            }
+            probe.set(0);
+        }
+
+        void onFailure() {
+            boolean probing = probe.getAndSet(0) == 1;
+            if (consecutiveFailures.incrementAndGet() >= config.getFailureThreshold() || probing) {
+                openUntil.set(System.currentTimeMillis() + config.getOpenMs());
+                log.warn("Circuit '{}' mở trong {} ms", name, config.getOpenMs());
+            }
+        }
+
+        String state() {
+            long until = openUntil.get();
+            if (until == 0) return "CLOSED";
+            return System.currentTimeMillis() < until ? "OPEN" : "HALF_OPEN";
+        }
+
+        synchronized void recordLatency(long nanos) {
+            latenciesMs[latencyNext] = TimeUnit.NANOSECONDS.toMillis(nanos);
+            latencyNext = (latencyNext + 1) % WINDOW;
+            if (latencyCount < WINDOW) latencyCount++;
+        }
+
+        synchronized long p95Ms() {
+            int n = latencyCount;
+            if (n == 0) return 0;
+            long[] sorted = Arrays.copyOf(latenciesMs, n);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(n * 0.95) - 1];
+        }
+
+        long hedgeDelayMs() {
+            return Math.max(config.getHedgeMinMs(), p95Ms());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.nckh.yte.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gộp các lời gọi đồng thời cùng khoá thành một lần thực thi duy nhất.
+ * Request đầu tiên ("leader") chạy loader; các request đến sau trong lúc
+ * leader đang chạy sẽ chờ và nhận cùng kết quả (hoặc cùng exception).
+ * Leader cũng có thể tự nạp nhiều khoá một lượt qua {@link #join} (ví dụ gọi upstream theo lô).
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public V execute(K key, Callable<V> loader) throws Exception {
+        return execute(key, loader, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Như {@link #execute(Object, Callable)} nhưng request đến sau chỉ chờ leader tối đa {@code maxWait}.
+     * @throws TimeoutException leader chưa xong trong thời gian chờ (leader vẫn chạy tiếp)
+     */
+    public V execute(K key, Callable<V> loader, long maxWait, TimeUnit unit) throws Exception {
+        Ticket<V> ticket = join(key);
+        if (!ticket.leader()) {
+            return ticket.await(maxWait, unit);
+        }
+
+        try {
+            V value = loader.call();
+            ticket.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            ticket.fail(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Đăng ký vào lời gọi của {@code key}: chưa có ai chạy thì caller thành leader và
+     * bắt buộc phải gọi {@link Ticket#complete} hoặc {@link Ticket#fail}; ngược lại chờ kết quả của leader.
+     */
+    public Ticket<V> join(K key) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return new Ticket<>(existing, false, null);
+        }
+        return new Ticket<>(mine, true, () -> inFlight.remove(key, mine));
+    }
+
+    /** Chỗ của một caller trong lời gọi của một khoá. */
+    public static final class Ticket<V> {
+        private final CompletableFuture<V> future;
+        private final boolean leader;
+        private final Runnable onDone;
+
+        private Ticket(CompletableFuture<V> future, boolean leader, Runnable onDone) {
+            this.future = future;
+            this.leader = leader;
+            this.onDone = onDone;
+        }
+
+        /** Ticket đã có kết quả (không phải chờ, không phải nạp). */
+        public static <V> Ticket<V> done(V value) {
+            return new Ticket<>(CompletableFuture.completedFuture(value), false, null);
+        }
+
+        /** true: caller phải tự nạp rồi gọi complete/fail. */
+        public boolean leader() {
+            return leader;
+        }
+
+        public void complete(V value) {
+            future.complete(value);
+            if (onDone != null) onDone.run();
+        }
+
+        public void fail(Throwable error) {
+            future.completeExceptionally(error);
+            if (onDone != null) onDone.run();
+        }
+
+        public boolean isDone() {
+            return future.isDone();
+        }
+
+        public V await() throws Exception {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            }
+        }
+
+        /**
+         * Chờ tối đa {@code timeout}.
+         * @throws TimeoutException leader chưa xong trong thời gian chờ
+         */
+        public V await(long timeout, TimeUnit unit) throws Exception {
+            try {
+                return future.get(timeout, unit);
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            }
+        }
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Exception ex) return ex;
+        if (cause instanceof Error err) throw err;
+        return e;
+    }
+
+    /** Số request đã được gộp vào một lời gọi đang chạy. */
+    public long coalescedCount() {
+        return coalesced.get();
+    }
+
+    /** Số khoá đang có lời gọi chạy dở. */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
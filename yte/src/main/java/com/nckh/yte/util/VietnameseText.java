@@ -0,0 +1,31 @@
+package com.nckh.yte.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Tiện ích chuẩn hoá chuỗi tiếng Việt dùng làm khoá tra cứu.
+ * "Paracetamol", "paracetamol " và "PARACETAMOL" cho cùng một khoá;
+ * "Đau họng" và "dau hong" cũng vậy.
+ */
+public final class VietnameseText {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALNUM = Pattern.compile("[^a-z0-9]+");
+
+    private VietnameseText() {
+    }
+
+    /**
+     * Bỏ dấu, chuyển chữ thường, thay mọi ký tự không phải chữ/số bằng một dấu cách.
+     * @param s chuỗi gốc (có thể null)
+     * @return chuỗi đã chuẩn hoá, rỗng nếu đầu vào null
+     */
+    public static String fold(String s) {
+        if (s == null) return "";
+        String n = Normalizer.normalize(s.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        n = COMBINING_MARKS.matcher(n).replaceAll("").replace('đ', 'd');
+        return NON_ALNUM.matcher(n).replaceAll(" ").trim();
+    }
+}
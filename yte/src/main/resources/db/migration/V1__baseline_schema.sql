@@ -0,0 +1,81 @@
+-- Lược đồ gốc, trùng với những gì ddl-auto: update đã tạo.
+-- Dùng IF NOT EXISTS để chạy được trên cả DB mới lẫn DB đã có bảng (baseline-on-migrate, version 0).
+
+-- "user" là từ khoá của Postgres → bảng người dùng tên là users
+DO $$
+BEGIN
+    IF to_regclass('public."user"') IS NOT NULL AND to_regclass('public.users') IS NULL THEN
+        ALTER TABLE "user" RENAME TO users;
+    END IF;
+END $$;
+
+CREATE TABLE IF NOT EXISTS role (
+    id   uuid PRIMARY KEY,
+    name varchar(255)
+);
+
+CREATE TABLE IF NOT EXISTS users (
+    id        uuid PRIMARY KEY,
+    username  varchar(255),
+    password  varchar(255),
+    full_name varchar(255),
+    enabled   boolean NOT NULL,
+    role_id   uuid REFERENCES role (id)
+);
+
+CREATE TABLE IF NOT EXISTS doctor (
+    id        uuid PRIMARY KEY,
+    full_name varchar(255),
+    username  varchar(255),
+    specialty varchar(32)
+);
+
+CREATE TABLE IF NOT EXISTS nurse (
+    id        bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    full_name varchar(255),
+    username  varchar(255),
+    password  varchar(255)
+);
+
+CREATE TABLE IF NOT EXISTS patient (
+    id         uuid PRIMARY KEY,
+    first_name varchar(255),
+    last_name  varchar(255),
+    dob        date,
+    phone      varchar(255),
+    email      varchar(255),
+    address    varchar(255),
+    gender     varchar(255),
+    department varchar(100),
+    user_id    uuid UNIQUE REFERENCES users (id)
+);
+
+CREATE TABLE IF NOT EXISTS appointments (
+    id               uuid PRIMARY KEY,
+    patient_id       uuid NOT NULL REFERENCES patient (id),
+    doctor_id        uuid REFERENCES doctor (id),
+    nurse_id         bigint REFERENCES nurse (id),
+    start_time       timestamp(6),
+    end_time         timestamp(6),
+    symptom          varchar(500),
+    preferred_date   date,
+    preferred_window varchar(255),
+    status           varchar(255)
+);
+
+CREATE TABLE IF NOT EXISTS information (
+    id            uuid PRIMARY KEY,
+    name          varchar(255),
+    name_key      varchar(255),
+    response_data text
+);
+
+CREATE TABLE IF NOT EXISTS symptom_specialty (
+    fingerprint varchar(255) PRIMARY KEY,
+    specialty   varchar(32)  NOT NULL,
+    created_at  timestamp(6) NOT NULL
+);
+
+-- DB cũ đã có bảng nên CREATE ở trên bỏ qua → bổ sung các cột thêm sau bản gốc
+ALTER TABLE doctor ADD COLUMN IF NOT EXISTS specialty varchar(32);
+ALTER TABLE information ADD COLUMN IF NOT EXISTS name_key varchar(255);
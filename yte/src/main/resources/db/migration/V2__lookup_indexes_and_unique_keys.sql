@@ -0,0 +1,32 @@
+-- Index cho các khoá tra cứu (đăng nhập, /appointments/me, tra thuốc) và ràng buộc duy nhất.
+-- Trùng username sẽ làm migration dừng lại: cần gộp tài khoản bằng tay trước khi deploy.
+
+-- Cache thuốc: bản ghi trùng khoá là vô hại → giữ một bản
+DELETE FROM information a
+ USING information b
+ WHERE a.name_key = b.name_key
+   AND a.ctid > b.ctid;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_information_name_key ON information (name_key);
+CREATE INDEX IF NOT EXISTS idx_information_name ON information (name);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_role_name ON role (name);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_users_username ON users (username);
+CREATE INDEX IF NOT EXISTS idx_user_username_id ON users (username, id);
+CREATE INDEX IF NOT EXISTS idx_user_role ON users (role_id);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_doctor_username ON doctor (username);
+CREATE INDEX IF NOT EXISTS idx_doctor_specialty ON doctor (specialty);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_nurse_username ON nurse (username);
+
+CREATE INDEX IF NOT EXISTS idx_patient_user ON patient (user_id);
+
+CREATE INDEX IF NOT EXISTS idx_appointment_doctor_start ON appointments (doctor_id, start_time);
+CREATE INDEX IF NOT EXISTS idx_appointment_patient ON appointments (patient_id);
+CREATE INDEX IF NOT EXISTS idx_appointment_nurse ON appointments (nurse_id);
+CREATE INDEX IF NOT EXISTS idx_appointment_status ON appointments (status);
+CREATE INDEX IF NOT EXISTS idx_appointment_start ON appointments (start_time);
+
+CREATE INDEX IF NOT EXISTS idx_symptom_specialty_created ON symptom_specialty (created_at);
@@ -0,0 +1,8 @@
+-- Token bucket dùng chung giữa các instance (app.rate-limit.store=jdbc).
+-- tat: mốc "theoretical arrival time" theo epoch millis (xem JdbcRateLimitStore).
+CREATE TABLE IF NOT EXISTS rate_limit_bucket (
+    bucket_key varchar(255) PRIMARY KEY,
+    tat        bigint       NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_rate_limit_bucket_tat ON rate_limit_bucket (tat);
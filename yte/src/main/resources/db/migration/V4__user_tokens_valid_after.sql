@@ -0,0 +1,3 @@
+-- Token phát hành trước mốc này bị từ chối (đổi mật khẩu, khoá tài khoản).
+-- Lưu trong DB để mọi instance và cả sau khi khởi động lại đều thấy (xem TokenRevocationRegistry).
+ALTER TABLE users ADD COLUMN IF NOT EXISTS tokens_valid_after timestamp(6) with time zone;
@@ -0,0 +1,6 @@
+-- Một bác sĩ không thể có hai lịch (chưa huỷ) cùng giờ bắt đầu.
+-- DoctorScheduleIndex chỉ chặn trùng trong một instance; index này chặn trùng giữa các instance.
+-- Dữ liệu cũ đã trùng sẽ làm migration dừng lại: cần huỷ/xếp lại các lịch đó bằng tay trước khi deploy.
+CREATE UNIQUE INDEX IF NOT EXISTS uk_appointment_doctor_start
+    ON appointments (doctor_id, start_time)
+    WHERE status <> 'CANCELLED' AND doctor_id IS NOT NULL AND start_time IS NOT NULL;
@@ -0,0 +1,3 @@
+-- Lịch đặt tự động không xếp được chuyển sang status UNASSIGNED (trạng thái cuối) kèm lý do,
+-- thay vì nằm PENDING mãi và bị AutoBookingQueue.resumePending xử lý lại sau mỗi lần khởi động.
+ALTER TABLE appointments ADD COLUMN IF NOT EXISTS failure_reason varchar(500);
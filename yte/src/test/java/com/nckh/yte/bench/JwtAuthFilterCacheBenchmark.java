@@ -0,0 +1,57 @@
+package com.nckh.yte.bench;
+
+import com.nckh.yte.security.JwtAuthFilter;
+import com.nckh.yte.security.VerifiedTokenCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí {@link JwtAuthFilter} cho một request mang token đã gặp trước đó:
+ * <ul>
+ *   <li>{@code cached}: {@link VerifiedTokenCache} trúng – một phép SHA-256 thay cho HMAC + decode claims.</li>
+ *   <li>{@code uncached}: cache luôn trượt, mỗi request xác thực chữ ký và dựng principal từ claims.</li>
+ * </ul>
+ * Cả hai đều qua {@code TokenRevocationRegistry} (trạng thái user đã nằm trong cache của nó).
+ * Chạy: {@code mvn -Pbench test-compile exec:exec -Dbench=JwtAuthFilterCache}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthFilterCacheBenchmark {
+
+    private final JwtFilterFixture fixture = new JwtFilterFixture();
+    private JwtAuthFilter cachedFilter;
+    private JwtAuthFilter uncachedFilter;
+
+    @Setup
+    public void setUp() throws Exception {
+        JwtFilterFixture.productionLogLevel();
+        cachedFilter = fixture.filter(new VerifiedTokenCache(10_000));
+        uncachedFilter = fixture.filter(JwtFilterFixture.uncached());
+        fixture.requireAccepted(cachedFilter);
+        fixture.requireAccepted(uncachedFilter);
+    }
+
+    @Benchmark
+    public int cached() throws Exception {
+        return fixture.doFilter(cachedFilter);
+    }
+
+    @Benchmark
+    public int uncached() throws Exception {
+        return fixture.doFilter(uncachedFilter);
+    }
+}
@@ -0,0 +1,76 @@
+package com.nckh.yte.bench;
+
+import com.nckh.yte.security.JwtAuthFilter;
+import com.nckh.yte.security.VerifiedTokenCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thông lượng của {@link JwtAuthFilter} khi 8 thread request chạy song song:
+ * <ul>
+ *   <li>{@code slf4j}: filter hiện tại – log qua SLF4J, debug tắt nên không dựng chuỗi, không ghi gì.</li>
+ *   <li>{@code systemOut}: cùng filter, cộng thêm 7 dòng {@code System.out.println} mà filter cũ in
+ *       cho mỗi request hợp lệ (kể cả nguyên header Authorization). stdout được trỏ vào /dev/null,
+ *       nên chênh lệch chỉ là chi phí dựng chuỗi + khoá của PrintStream, chưa tính terminal/pipe.</li>
+ * </ul>
+ * Chạy: {@code mvn -Pbench test-compile exec:exec -Dbench=JwtAuthFilterLogging}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class JwtAuthFilterLoggingBenchmark {
+
+    private final JwtFilterFixture fixture = new JwtFilterFixture();
+    private JwtAuthFilter filter;
+    private PrintStream originalOut;
+
+    @Setup
+    public void setUp() throws Exception {
+        JwtFilterFixture.productionLogLevel();
+        filter = fixture.filter(new VerifiedTokenCache(10_000));
+        fixture.requireAccepted(filter);
+        originalOut = System.out;
+        System.setOut(new PrintStream(new FileOutputStream("/dev/null"), true));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.close();
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public int slf4j() throws Exception {
+        return fixture.doFilter(filter);
+    }
+
+    @Benchmark
+    public int systemOut() throws Exception {
+        System.out.println("──────────────────────────────────────────────");
+        System.out.println("[JwtAuthFilter] 🔍 Path: " + "/api/appointments/me");
+        System.out.println("[JwtAuthFilter] 🔍 Authorization header: " + fixture.authorization());
+        System.out.println("[JwtAuthFilter] ✅ Token valid? " + true);
+        System.out.println("[JwtAuthFilter] 👤 Username extracted: " + "bench-user");
+        System.out.println("[JwtAuthFilter] 🧩 Authorities: " + "[ROLE_PATIENT]");
+        System.out.println("[JwtAuthFilter] ✅ SecurityContextHolder set for user: " + "bench-user");
+        return fixture.doFilter(filter);
+    }
+}
@@ -0,0 +1,98 @@
+package com.nckh.yte.bench;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.nckh.yte.repository.UserRepository;
+import com.nckh.yte.security.JwtAuthFilter;
+import com.nckh.yte.security.JwtUtil;
+import com.nckh.yte.security.TokenRevocationRegistry;
+import com.nckh.yte.security.VerifiedTokenCache;
+import com.nckh.yte.service.UserDetailsServiceImpl;
+import jakarta.servlet.ServletException;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link JwtAuthFilter} thật (JwtUtil, VerifiedTokenCache, TokenRevocationRegistry) cho các benchmark;
+ * chỉ DB là giả (user luôn còn hoạt động).
+ */
+final class JwtFilterFixture {
+
+    private static final String SECRET = "bench-secret-bench-secret-bench-secret-bench-secret";
+
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET, 3_600_000);
+    private final String authorization = "Bearer " + jwtUtil.generateToken("bench-user", List.of("PATIENT"), UUID.randomUUID());
+
+    /**
+     * Mức log như khi chạy thật (root INFO): ngoài Spring Boot, logback-spring.xml không được nạp
+     * và cấu hình mặc định của logback in cả DEBUG ra console.
+     */
+    static void productionLogLevel() {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+    }
+
+    /** Filter dùng {@code cache}; DB chỉ được đọc lại sau mỗi TTL của TokenRevocationRegistry. */
+    JwtAuthFilter filter(VerifiedTokenCache cache) {
+        UserRepository users = mock(UserRepository.class);
+        UserRepository.AuthState active = new UserRepository.AuthState() {
+            public boolean isEnabled() { return true; }
+            public Instant getTokensValidAfter() { return null; }
+        };
+        when(users.findAuthState(any())).thenReturn(Optional.of(active));
+
+        JwtAuthFilter filter = new JwtAuthFilter(jwtUtil, mock(UserDetailsServiceImpl.class),
+                new TokenRevocationRegistry(users, cache, 10_000, 10_000), cache);
+        ReflectionTestUtils.setField(filter, "stateless", true);
+        return filter;
+    }
+
+    /** Cache luôn trượt: mỗi request đều HMAC + decode claims như khi chưa có cache. */
+    static VerifiedTokenCache uncached() {
+        return new VerifiedTokenCache(10_000) {
+            @Override
+            public Entry get(String token) {
+                return null;
+            }
+        };
+    }
+
+    /** Một request API có bearer token; trả về status của response (401 = token bị từ chối). */
+    int doFilter(JwtAuthFilter filter) throws ServletException, IOException {
+        MockHttpServletRequest req = new MockHttpServletRequest("GET", "/api/appointments/me");
+        req.setServletPath("/api/appointments/me");
+        req.addHeader("Authorization", authorization);
+        MockHttpServletResponse res = new MockHttpServletResponse();
+        try {
+            filter.doFilter(req, res, new MockFilterChain());
+        } finally {
+            SecurityContextHolder.clearContext();
+            MDC.clear();
+        }
+        return res.getStatus();
+    }
+
+    /** Token phải được chấp nhận, nếu không benchmark chỉ đo nhánh trả 401. */
+    void requireAccepted(JwtAuthFilter filter) throws ServletException, IOException {
+        int status = doFilter(filter);
+        if (status != 200) throw new IllegalStateException("JwtAuthFilter trả " + status);
+    }
+
+    String authorization() {
+        return authorization;
+    }
+}
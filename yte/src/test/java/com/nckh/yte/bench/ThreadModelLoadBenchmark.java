@@ -0,0 +1,157 @@
+package com.nckh.yte.bench;
+
+import com.nckh.yte.config.UpstreamHttpClients;
+import com.nckh.yte.config.UpstreamHttpProps;
+import com.nckh.yte.config.VirtualThreadConfig;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tải đồng thời lên Tomcat nhúng, mỗi request chặn trên một lời gọi upstream giả chậm
+ * {@value #UPSTREAM_LATENCY_MS} ms qua {@link UpstreamHttpClients} – đúng hình dạng của
+ * {@code /api/ai/drug-info-full} khi cache trượt và của worker đặt lịch khi hỏi Gemini.
+ * <ul>
+ *   <li>{@code platform}: pool mặc định của Tomcat (200 thread).</li>
+ *   <li>{@code virtual}: executor virtual thread của {@link VirtualThreadConfig}.</li>
+ * </ul>
+ * Mỗi op bắn {@value #CONCURRENCY} request cùng lúc và chờ đủ response (ms/op càng thấp càng tốt).
+ * Pool kết nối upstream được nới đủ lớn để chỉ còn mô hình thread là khác nhau; khi chạy thật,
+ * bulkhead {@code max-concurrent} của UpstreamGuard và pool Hikari vẫn giới hạn riêng.
+ * Không có DB/Security: đây là so sánh mô hình thread, không phải đo toàn bộ endpoint.
+ * Chạy: {@code mvn -Pbench test-compile exec:exec -Dbench=ThreadModelLoad}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ThreadModelLoadBenchmark {
+
+    static final int UPSTREAM_LATENCY_MS = 500;
+    static final int CONCURRENCY = 600;
+
+    @Param({"platform", "virtual"})
+    public String threadModel;
+
+    private HttpServer upstream;
+    private ExecutorService upstreamExecutor;
+    private UpstreamHttpClients upstreamClients;
+    private WebServer server;
+    private HttpClient client;
+    private ExecutorService clientExecutor;
+    private URI target;
+
+    @Setup
+    public void setUp() throws IOException {
+        JwtFilterFixture.productionLogLevel();
+        boolean virtual = threadModel.equals("virtual");
+
+        // Upstream giả: trả JSON sau một khoảng trễ cố định, không giới hạn số request đồng thời.
+        // Mặc định HttpServer chỉ giữ 200 kết nối keep-alive rảnh và đóng phần còn lại → client gặp NoHttpResponse
+        System.setProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(CONCURRENCY));
+        byte[] reply = "{\"choices\":[{\"message\":{\"content\":\"{}\"}}]}".getBytes(StandardCharsets.UTF_8);
+        upstreamExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        upstream = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        upstream.setExecutor(upstreamExecutor);
+        upstream.createContext("/", exchange -> {
+            try {
+                Thread.sleep(UPSTREAM_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, reply.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(reply);
+            }
+        });
+        upstream.start();
+        String upstreamUrl = "http://localhost:" + upstream.getAddress().getPort() + "/v1/chat/completions";
+
+        UpstreamHttpProps props = new UpstreamHttpProps();
+        UpstreamHttpProps.Pool pool = new UpstreamHttpProps.Pool();
+        pool.setMaxConnections(CONCURRENCY);
+        pool.setAcquireTimeoutMs(30_000);
+        props.getUpstreams().put(UpstreamHttpClients.OPENAI, pool);
+        upstreamClients = new UpstreamHttpClients(props, virtual);
+        RestTemplate restTemplate = upstreamClients.restTemplate(UpstreamHttpClients.OPENAI);
+
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        if (virtual) {
+            factory.addProtocolHandlerCustomizers(new VirtualThreadConfig().virtualThreadProtocolHandler());
+        }
+        server = factory.getWebServer(ctx -> ctx.addServlet("drug-info", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse res) throws IOException {
+                String body = restTemplate.getForObject(upstreamUrl, String.class);
+                res.setContentType("application/json");
+                res.getWriter().write(body);
+            }
+        }).addMapping("/*"));
+        server.start();
+        target = URI.create("http://localhost:" + server.getPort() + "/api/ai/drug-info-full?name=paracetamol");
+
+        clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop();
+        upstreamClients.destroy();
+        upstream.stop(0);
+        upstreamExecutor.shutdownNow();
+        clientExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int burst() {
+        HttpRequest request = HttpRequest.newBuilder(target).GET().build();
+        List<CompletableFuture<HttpResponse<Void>>> calls = new ArrayList<>(CONCURRENCY);
+        for (int i = 0; i < CONCURRENCY; i++) {
+            calls.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        int ok = 0;
+        for (CompletableFuture<HttpResponse<Void>> call : calls) {
+            if (call.join().statusCode() == 200) ok++;
+        }
+        if (ok != CONCURRENCY) throw new IllegalStateException((CONCURRENCY - ok) + " request lỗi");
+        return ok;
+    }
+}
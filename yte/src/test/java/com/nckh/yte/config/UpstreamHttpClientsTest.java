@@ -0,0 +1,63 @@
+package com.nckh.yte.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UpstreamHttpClientsTest {
+
+    /** Nhận kết nối nhưng không bao giờ trả response. */
+    private ServerSocket silent;
+    private final List<Socket> accepted = new ArrayList<>();
+    private UpstreamHttpClients clients;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        silent = new ServerSocket(0);
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) accepted.add(silent.accept());
+            } catch (IOException ignored) {
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        UpstreamHttpProps props = new UpstreamHttpProps();
+        UpstreamHttpProps.Pool pool = new UpstreamHttpProps.Pool();
+        pool.setResponseTimeoutMs(30_000);
+        props.getUpstreams().put("slow", pool);
+        clients = new UpstreamHttpClients(props, false);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        clients.destroy();
+        silent.close();
+        for (Socket s : accepted) s.close();
+    }
+
+    @Test
+    void responseTimeoutIsCappedByDeadline() {
+        String url = "http://localhost:" + silent.getLocalPort() + "/";
+        long started = System.nanoTime();
+
+        assertThatThrownBy(() -> UpstreamDeadline.within(
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300),
+                () -> clients.restTemplate("slow").getForObject(url, String.class)))
+                .isInstanceOf(ResourceAccessException.class);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(5_000);
+    }
+}
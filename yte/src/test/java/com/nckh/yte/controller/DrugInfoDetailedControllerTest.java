@@ -0,0 +1,90 @@
+package com.nckh.yte.controller;
+
+import com.nckh.yte.OpenAIConfig;
+import com.nckh.yte.config.UpstreamHttpClients;
+import com.nckh.yte.config.UpstreamHttpProps;
+import com.nckh.yte.security.RateLimitFilter;
+import com.nckh.yte.service.DrugInfoBatchService;
+import com.nckh.yte.service.DrugInfoCache;
+import com.nckh.yte.service.DrugNameIndex;
+import com.nckh.yte.service.UpstreamGuard;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class DrugInfoDetailedControllerTest {
+
+    private final DrugInfoCache drugInfoCache = mock(DrugInfoCache.class);
+    private final UpstreamGuard upstreamGuard = mock(UpstreamGuard.class);
+    private final DrugInfoBatchService batchService = mock(DrugInfoBatchService.class);
+    private final RateLimitFilter rateLimitFilter = mock(RateLimitFilter.class);
+
+    private final DrugInfoDetailedController controller = new DrugInfoDetailedController(
+            new OpenAIConfig(), mock(UpstreamHttpClients.class), new UpstreamHttpProps(),
+            drugInfoCache, upstreamGuard, batchService, mock(DrugNameIndex.class), rateLimitFilter);
+
+    @ParameterizedTest
+    @ValueSource(strings = {"!!!", "阿司匹林", " - ", "аспирин"})
+    void nameFoldingToEmptyKeyIsBadRequestBeforeCacheOrUpstream(String drug) {
+        ResponseEntity<Object> get = controller.getDrugInfoFullGet(drug, null, null);
+        ResponseEntity<Object> post = controller.getDrugInfoFull(Map.of("drug", drug), null);
+
+        assertThat(get.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(post.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(get.getBody()).isEqualTo(Map.of("error", DrugInfoBatchService.INVALID_NAME));
+        verifyNoInteractions(drugInfoCache, upstreamGuard);
+    }
+
+    @Test
+    void batchOfOnlyInvalidNamesIsBadRequest() {
+        when(batchService.maxDrugs()).thenReturn(50);
+        ResponseEntity<Object> res = controller.getDrugInfoBatch(
+                Map.of("drugs", List.of("!!!", "阿司匹林")), mock(HttpServletRequest.class));
+
+        assertThat(res.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(res.getBody()).isEqualTo(Map.of("error", DrugInfoBatchService.INVALID_NAME));
+        verifyNoInteractions(drugInfoCache, upstreamGuard, rateLimitFilter);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "gzip                      | true",
+            "br, gzip;q=0.5            | true",
+            "gzip; q=1.0               | true",
+            "GZIP;Q=0.001              | true",
+            "gzip;q=0                  | false",
+            "gzip;q=0.0                | false",
+            "gzip; q=0.000             | false",
+            "gzip;q=abc                | false",
+            "deflate, br               | false",
+            "identity                  | false",
+    })
+    void gzipOnlyWhenQValueIsPositive(String acceptEncoding, boolean gzip) throws Exception {
+        byte[] body = "{\"items\":[]}".getBytes();
+        byte[] compressed = {0x1f, (byte) 0x8b};
+        when(drugInfoCache.getOrLoad(anyString(), anyString(), anyLong(), any()))
+                .thenReturn(new DrugInfoCache.Entry(body, compressed, "\"etag\""));
+
+        ResponseEntity<Object> res = controller.getDrugInfoFullGet("paracetamol", null, acceptEncoding);
+
+        assertThat(res.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(res.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo(gzip ? "gzip" : null);
+        assertThat(res.getBody()).isEqualTo(gzip ? compressed : body);
+    }
+}
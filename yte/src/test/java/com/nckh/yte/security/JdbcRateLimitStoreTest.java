@@ -0,0 +1,130 @@
+package com.nckh.yte.security;
+
+import com.nckh.yte.config.RateLimitProps;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Upsert có điều kiện của {@link JdbcRateLimitStore}. JdbcTemplate giả chạy lại đúng ngữ nghĩa câu SQL
+ * (INSERT … SELECT WHERE / ON CONFLICT DO UPDATE WHERE / RETURNING) trên tham số thật được bind,
+ * nên thứ tự tham số sai hay điều kiện capacity sai đều làm test đỏ.
+ */
+class JdbcRateLimitStoreTest {
+
+    private static RateLimitProps.Rule rule(int capacity, int refillPerMinute) {
+        RateLimitProps.Rule rule = new RateLimitProps.Rule();
+        rule.setCapacity(capacity);
+        rule.setRefillPerMinute(refillPerMinute);
+        return rule;
+    }
+
+    /** Bảng rate_limit_bucket trong bộ nhớ. */
+    static class FakeJdbcTemplate extends JdbcTemplate {
+        final Map<String, Long> rows = new HashMap<>();
+        final List<String> statements = new ArrayList<>();
+        boolean down;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            statements.add(sql);
+            if (down) throw new DataAccessResourceFailureException("connection refused");
+            if (sql.startsWith("SELECT tat")) {
+                Long tat = rows.get((String) args[0]);
+                return tat == null ? List.of() : List.of((T) tat);
+            }
+            assertThat(sql).startsWith("INSERT INTO rate_limit_bucket").contains("ON CONFLICT (bucket_key) DO UPDATE");
+            assertThat(args).hasSize(10);
+            String key = (String) args[0];
+            long[] v = new long[args.length];
+            for (int i = 1; i < args.length; i++) v[i] = (Long) args[i];
+
+            Long current = rows.get(key);
+            if (current == null) {
+                // INSERT … SELECT ?, ? WHERE ? <= ?
+                if (v[2] > v[3]) return List.of();
+                rows.put(key, v[1]);
+                return List.of((T) Long.valueOf(v[1]));
+            }
+            // DO UPDATE SET tat = GREATEST(tat, ?) + ? WHERE GREATEST(tat, ?) + ? - ? <= ?
+            if (Math.max(current, v[6]) + v[7] - v[8] > v[9]) return List.of();
+            long next = Math.max(current, v[4]) + v[5];
+            rows.put(key, next);
+            return List.of((T) Long.valueOf(next));
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            statements.add(sql);
+            if (down) throw new DataAccessResourceFailureException("connection refused");
+            assertThat(sql).startsWith("DELETE FROM rate_limit_bucket WHERE tat <");
+            long now = (Long) args[0];
+            int before = rows.size();
+            rows.values().removeIf(tat -> tat < now);
+            return before - rows.size();
+        }
+    }
+
+    private final FakeJdbcTemplate jdbc = new FakeJdbcTemplate();
+    private final JdbcRateLimitStore store = new JdbcRateLimitStore(jdbc);
+
+    @Test
+    void burstUpToCapacityThenWaitOneInterval() {
+        RateLimitProps.Rule rule = rule(3, 1);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(store.tryAcquire("k", rule)).as("request %d", i + 1).isZero();
+        }
+        assertThat(store.tryAcquire("k", rule)).isBetween(59_000L, 60_000L);
+        assertThat(store.tryAcquire("other", rule)).isZero();
+    }
+
+    @Test
+    void deniedUpdateLeavesTatUntouched() {
+        RateLimitProps.Rule rule = rule(5, 1);
+
+        assertThat(store.tryAcquire("k", rule, 3)).isZero();
+        long tat = jdbc.rows.get("k");
+        assertThat(store.tryAcquire("k", rule, 3)).isBetween(59_000L, 60_000L);
+
+        assertThat(jdbc.rows.get("k")).isEqualTo(tat);
+        assertThat(store.tryAcquire("k", rule, 2)).isZero();
+    }
+
+    @Test
+    void newBucketLargerThanCapacityIsNotInserted() {
+        RateLimitProps.Rule rule = rule(2, 1);
+
+        assertThat(store.tryAcquire("k", rule, 3)).isBetween(59_000L, 60_000L);
+        assertThat(jdbc.rows).doesNotContainKey("k");
+        assertThat(store.tryAcquire("k", rule, 2)).isZero();
+    }
+
+    @Test
+    void databaseErrorFailsOpenAndIsCounted() {
+        jdbc.down = true;
+
+        assertThat(store.tryAcquire("k", rule(1, 1))).isZero();
+        assertThat(store.tryAcquire("k", rule(1, 1))).isZero();
+        assertThat(store.stats()).containsEntry("failures", 2L);
+    }
+
+    @Test
+    void grantSweepsRefilledBucketsAtMostOncePerInterval() {
+        jdbc.rows.put("stale", 1L);
+
+        store.tryAcquire("a", rule(5, 1));
+        store.tryAcquire("b", rule(5, 1));
+
+        assertThat(jdbc.rows).doesNotContainKey("stale").containsKeys("a", "b");
+        assertThat(jdbc.statements).filteredOn(sql -> sql.startsWith("DELETE")).hasSize(1);
+    }
+}
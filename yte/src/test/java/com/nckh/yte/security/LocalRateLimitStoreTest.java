@@ -0,0 +1,95 @@
+package com.nckh.yte.security;
+
+import com.nckh.yte.config.RateLimitProps;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * GCRA: bucket đầy cho {@code capacity} request dồn một lúc, sau đó một token mỗi {@code 60s / refill}.
+ */
+class LocalRateLimitStoreTest {
+
+    private final LocalRateLimitStore store = new LocalRateLimitStore(new RateLimitProps());
+
+    private static RateLimitProps.Rule rule(int capacity, int refillPerMinute) {
+        RateLimitProps.Rule rule = new RateLimitProps.Rule();
+        rule.setCapacity(capacity);
+        rule.setRefillPerMinute(refillPerMinute);
+        return rule;
+    }
+
+    @Test
+    void burstUpToCapacityThenWaitOneInterval() {
+        RateLimitProps.Rule rule = rule(5, 1);  // 1 token/phút: thời gian chạy test không đáng kể
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(store.tryAcquire("k", rule)).as("request %d", i + 1).isZero();
+        }
+        long wait = store.tryAcquire("k", rule);
+
+        assertThat(wait).isBetween(59_000L, 60_000L);
+    }
+
+    @Test
+    void refillsAfterTheReturnedWait() throws InterruptedException {
+        RateLimitProps.Rule rule = rule(2, 600);  // 100ms/token
+
+        assertThat(store.tryAcquire("k", rule)).isZero();
+        assertThat(store.tryAcquire("k", rule)).isZero();
+        long wait = store.tryAcquire("k", rule);
+        assertThat(wait).isBetween(1L, 100L);
+
+        TimeUnit.MILLISECONDS.sleep(wait + 5);
+        assertThat(store.tryAcquire("k", rule)).isZero();
+    }
+
+    @Test
+    void multiTokenIsAllOrNothing() {
+        RateLimitProps.Rule rule = rule(5, 1);
+
+        assertThat(store.tryAcquire("k", rule, 3)).isZero();
+        // Còn 2 token: xin 3 bị từ chối, chờ đủ một token nữa (~1 phút), không trừ gì
+        assertThat(store.tryAcquire("k", rule, 3)).isBetween(59_000L, 60_000L);
+        assertThat(store.tryAcquire("k", rule, 2)).isZero();
+        assertThat(store.tryAcquire("k", rule)).isBetween(59_000L, 60_000L);
+    }
+
+    @Test
+    void requestLargerThanCapacityWaitsForOverflow() {
+        RateLimitProps.Rule rule = rule(2, 1);
+
+        assertThat(store.tryAcquire("k", rule, 3)).isBetween(59_000L, 60_000L);
+        assertThat(store.tryAcquire("k", rule, 2)).isZero();
+    }
+
+    @Test
+    void bucketsAreIndependentPerKey() {
+        RateLimitProps.Rule rule = rule(1, 1);
+
+        assertThat(store.tryAcquire("chat:u:an", rule)).isZero();
+        assertThat(store.tryAcquire("chat:u:an", rule)).isPositive();
+        assertThat(store.tryAcquire("chat:u:binh", rule)).isZero();
+        assertThat(store.stats()).containsEntry("buckets", 2);
+    }
+
+    @Test
+    void overflowOfLiveBucketsEvictsEarliestTatDownToMaxKeys() {
+        RateLimitProps props = new RateLimitProps();
+        props.setMaxKeys(10);
+        LocalRateLimitStore small = new LocalRateLimitStore(props);
+        RateLimitProps.Rule rule = rule(5, 1);
+
+        // "heavy" dùng hết 5 token nên mốc TAT xa nhất; các IP giả mỗi khoá một token, chưa khoá nào đầy lại
+        assertThat(small.tryAcquire("heavy", rule, 5)).isZero();
+        for (int i = 0; i < 20; i++) {
+            small.tryAcquire("ip:" + i, rule);
+        }
+
+        assertThat(small.stats()).containsEntry("buckets", 10).containsEntry("evicted", 11L);
+        // Bucket đang bị chặn vẫn còn, không được reset về đầy
+        assertThat(small.tryAcquire("heavy", rule)).isPositive();
+    }
+}
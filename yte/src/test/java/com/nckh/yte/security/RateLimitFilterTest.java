@@ -0,0 +1,142 @@
+package com.nckh.yte.security;
+
+import com.nckh.yte.config.RateLimitProps;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Mỗi route một bucket riêng theo client; vượt hạn mức → 429 kèm Retry-After; {@code charge()} trừ cùng bucket.
+ */
+class RateLimitFilterTest {
+
+    private RateLimitProps props;
+    private RateLimitFilter filter;
+
+    private static RateLimitProps.Rule rule(int capacity, String... patterns) {
+        RateLimitProps.Rule rule = new RateLimitProps.Rule();
+        rule.setPatterns(List.of(patterns));
+        rule.setCapacity(capacity);
+        rule.setRefillPerMinute(1);  // 1 token/phút: không hồi trong lúc chạy test
+        return rule;
+    }
+
+    @BeforeEach
+    void setUp() {
+        props = new RateLimitProps();
+        props.getRoutes().put("chat", rule(1, "/api/ai/chat/**"));
+        props.getRoutes().put("drug-batch", rule(3, "/api/ai/drug-info-batch"));
+        props.getRoutes().put("booking", rule(1, "/api/appointments/**"));
+        filter = new RateLimitFilter(props, new LocalRateLimitStore(props));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static MockHttpServletRequest request(String path, String ip) {
+        MockHttpServletRequest req = new MockHttpServletRequest("POST", path);
+        req.setServletPath(path);
+        req.setRemoteAddr(ip);
+        return req;
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest req) throws Exception {
+        MockHttpServletResponse res = new MockHttpServletResponse();
+        filter.doFilter(req, res, new MockFilterChain());
+        return res;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> routeStats(String route) {
+        return (Map<String, Long>) ((Map<String, Object>) filter.stats().get("routes")).get(route);
+    }
+
+    @Test
+    void eachRouteHasItsOwnBucket() throws Exception {
+        assertThat(send(request("/api/ai/chat/send", "10.0.0.1")).getStatus()).isEqualTo(200);
+        assertThat(send(request("/api/ai/chat/send", "10.0.0.1")).getStatus()).isEqualTo(429);
+
+        // Cùng IP nhưng route khác, hoặc route không cấu hình: không bị ảnh hưởng
+        assertThat(send(request("/api/appointments/auto", "10.0.0.1")).getStatus()).isEqualTo(200);
+        assertThat(send(request("/api/doctors", "10.0.0.1")).getStatus()).isEqualTo(200);
+        assertThat(send(request("/api/doctors", "10.0.0.1")).getStatus()).isEqualTo(200);
+
+        assertThat(routeStats("chat")).containsEntry("allowed", 1L).containsEntry("rejected", 1L);
+        assertThat(routeStats("booking")).containsEntry("allowed", 1L).containsEntry("rejected", 0L);
+    }
+
+    @Test
+    void clientsAreKeyedByUsernameThenIp() throws Exception {
+        assertThat(send(request("/api/ai/chat/send", "10.0.0.1")).getStatus()).isEqualTo(200);
+        assertThat(send(request("/api/ai/chat/send", "10.0.0.2")).getStatus()).isEqualTo(200);
+
+        // Đã đăng nhập: tính theo username, không dùng chung bucket với IP
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated("an", null, List.of()));
+        assertThat(send(request("/api/ai/chat/send", "10.0.0.1")).getStatus()).isEqualTo(200);
+        assertThat(send(request("/api/ai/chat/send", "10.0.0.3")).getStatus()).isEqualTo(429);
+    }
+
+    @Test
+    void rejectedRequestGets429WithRetryAfterAndSkipsChain() throws Exception {
+        send(request("/api/ai/chat/send", "10.0.0.1"));
+
+        MockHttpServletResponse res = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request("/api/ai/chat/send", "10.0.0.1"), res, chain);
+
+        assertThat(res.getStatus()).isEqualTo(429);
+        // Chờ ~60s (1 token/phút), làm tròn lên theo giây
+        assertThat(Long.parseLong(res.getHeader(HttpHeaders.RETRY_AFTER))).isBetween(59L, 60L);
+        assertThat(res.getContentType()).startsWith("application/json");
+        assertThat(res.getContentAsString()).contains("\"error\"");
+        assertThat(chain.getRequest()).isNull();
+    }
+
+    @Test
+    void disabledOrPreflightIsNotLimited() throws Exception {
+        MockHttpServletRequest preflight = request("/api/ai/chat/send", "10.0.0.1");
+        preflight.setMethod("OPTIONS");
+        assertThat(send(preflight).getStatus()).isEqualTo(200);
+        assertThat(send(preflight).getStatus()).isEqualTo(200);
+
+        props.setEnabled(false);
+        for (int i = 0; i < 3; i++) {
+            assertThat(send(request("/api/ai/chat/send", "10.0.0.1")).getStatus()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    void chargeDrawsFromTheSameBucketAsTheFilter() throws Exception {
+        MockHttpServletRequest req = request("/api/ai/drug-info-batch", "10.0.0.1");
+        assertThat(send(req).getStatus()).isEqualTo(200);  // còn 2 token
+
+        // Xin 5 bị chặn về capacity (3) – vẫn thiếu nên từ chối, không trừ gì
+        assertThat(filter.charge(req, 5)).isBetween(59_000L, 60_000L);
+        assertThat(filter.charge(req, 2)).isZero();
+        assertThat(send(request("/api/ai/drug-info-batch", "10.0.0.1")).getStatus()).isEqualTo(429);
+        assertThat(routeStats("drug-batch")).containsEntry("allowed", 1L).containsEntry("rejected", 2L);
+    }
+
+    @Test
+    void chargeIsFreeOutsideLimitedRoutes() {
+        assertThat(filter.charge(request("/api/doctors", "10.0.0.1"), 100)).isZero();
+        assertThat(filter.charge(request("/api/ai/drug-info-batch", "10.0.0.1"), 0)).isZero();
+
+        props.setEnabled(false);
+        assertThat(filter.charge(request("/api/ai/drug-info-batch", "10.0.0.1"), 100)).isZero();
+    }
+}
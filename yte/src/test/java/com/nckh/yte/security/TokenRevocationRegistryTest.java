@@ -0,0 +1,103 @@
+package com.nckh.yte.security;
+
+import com.nckh.yte.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenRevocationRegistryTest {
+
+    private final UUID userId = UUID.randomUUID();
+    private UserRepository userRepository;
+    private TokenRevocationRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        registry = new TokenRevocationRegistry(userRepository, new VerifiedTokenCache(100), 60_000, 100);
+    }
+
+    private static UserRepository.AuthState state(boolean enabled, Instant validAfter) {
+        return new UserRepository.AuthState() {
+            public boolean isEnabled() { return enabled; }
+            public Instant getTokensValidAfter() { return validAfter; }
+        };
+    }
+
+    @Test
+    void activeUserWithoutRevocationIsAccepted() {
+        when(userRepository.findAuthState(userId)).thenReturn(Optional.of(state(true, null)));
+
+        assertThat(registry.isRevoked(userId, new Date())).isFalse();
+    }
+
+    @Test
+    void deletedUserIsRejected() {
+        when(userRepository.findAuthState(userId)).thenReturn(Optional.empty());
+
+        assertThat(registry.isRevoked(userId, new Date())).isTrue();
+    }
+
+    @Test
+    void disabledUserIsRejected() {
+        when(userRepository.findAuthState(userId)).thenReturn(Optional.of(state(false, null)));
+
+        assertThat(registry.isRevoked(userId, new Date())).isTrue();
+    }
+
+    @Test
+    void tokenFromBeforeResetIsRejectedButSameSecondLoginIsNot() {
+        Instant reset = Instant.parse("2026-01-01T10:00:00.700Z");
+        when(userRepository.findAuthState(userId)).thenReturn(Optional.of(state(true, reset)));
+
+        assertThat(registry.isRevoked(userId, Date.from(Instant.parse("2026-01-01T09:59:59Z")))).isTrue();
+        // iat chỉ có giây: đăng nhập lại ngay sau khi đổi mật khẩu, cùng giây
+        assertThat(registry.isRevoked(userId, Date.from(Instant.parse("2026-01-01T10:00:00Z")))).isFalse();
+        assertThat(registry.isRevoked(userId, Date.from(Instant.parse("2026-01-01T10:00:01Z")))).isFalse();
+    }
+
+    @Test
+    void stateIsCachedUntilRevokeUser() {
+        when(userRepository.findAuthState(userId)).thenReturn(Optional.of(state(true, null)));
+        registry.isRevoked(userId, new Date());
+        registry.isRevoked(userId, new Date());
+        verify(userRepository, times(1)).findAuthState(userId);
+
+        when(userRepository.findAuthState(userId)).thenReturn(Optional.of(state(false, Instant.now())));
+        registry.revokeUser(userId);
+
+        assertThat(registry.isRevoked(userId, new Date())).isTrue();
+        verify(userRepository, times(2)).findAuthState(userId);
+    }
+
+    @Test
+    void stateIsReloadedAfterTtl() {
+        registry = new TokenRevocationRegistry(userRepository, new VerifiedTokenCache(100), 0, 100);
+        when(userRepository.findAuthState(userId)).thenReturn(Optional.of(state(true, null)));
+        assertThat(registry.isRevoked(userId, new Date())).isFalse();
+
+        // Instance khác vừa khoá tài khoản
+        when(userRepository.findAuthState(userId)).thenReturn(Optional.of(state(false, Instant.now())));
+        assertThat(registry.isRevoked(userId, new Date())).isTrue();
+    }
+
+    @Test
+    void databaseFailureWithoutCachedStateRejects() {
+        when(userRepository.findAuthState(userId)).thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertThatThrownBy(() -> registry.isRevoked(userId, new Date()))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+    }
+}
@@ -0,0 +1,119 @@
+package com.nckh.yte.security;
+
+import com.nckh.yte.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class VerifiedTokenCacheTest {
+
+    private static final long HOUR = 3_600_000;
+
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+
+    private static UserDetailsImpl principal(UUID id) {
+        return new UserDetailsImpl(id, "u-" + id, null, null, List.of());
+    }
+
+    private static Date in(long millis) {
+        return new Date(System.currentTimeMillis() + millis);
+    }
+
+    private static long entries(VerifiedTokenCache cache) {
+        return ((Number) cache.stats().get("entries")).longValue();
+    }
+
+    @Test
+    void hitReturnsStoredPrincipalAndCountsHitRate() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        Date issuedAt = new Date();
+        cache.put("token-a", principal(alice), issuedAt, in(HOUR));
+
+        assertThat(cache.get("token-b")).isNull();
+        VerifiedTokenCache.Entry hit = cache.get("token-a");
+
+        assertThat(hit).isNotNull();
+        assertThat(hit.principal().getId()).isEqualTo(alice);
+        assertThat(hit.issuedAt()).isEqualTo(issuedAt);
+        assertThat(cache.stats())
+                .containsEntry("hits", 1L)
+                .containsEntry("misses", 1L)
+                .containsEntry("hitRate", 0.5);
+    }
+
+    @Test
+    void expiredTokenIsEvictedOnRead() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        cache.put("expired", principal(alice), new Date(), in(-1));
+
+        assertThat(cache.get("expired")).isNull();
+        assertThat(entries(cache)).isZero();
+        assertThat(cache.stats()).containsEntry("evictions", 1L);
+    }
+
+    @Test
+    void tokenWithoutExpiryIsNotCached() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        cache.put("no-exp", principal(alice), new Date(), null);
+
+        assertThat(cache.get("no-exp")).isNull();
+    }
+
+    @Test
+    void makeRoomDropsExpiredEntriesFirst() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        for (int i = 0; i < 5; i++) cache.put("expired-" + i, principal(alice), new Date(), in(-1));
+        for (int i = 0; i < 5; i++) cache.put("live-" + i, principal(bob), new Date(), in(HOUR));
+
+        cache.put("new", principal(bob), new Date(), in(HOUR));
+
+        assertThat(entries(cache)).isEqualTo(6);
+        for (int i = 0; i < 5; i++) assertThat(cache.get("live-" + i)).isNotNull();
+        assertThat(cache.get("new")).isNotNull();
+    }
+
+    @Test
+    void makeRoomStaysBoundedWhenAllEntriesAreLive() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        for (int i = 0; i < 50; i++) {
+            cache.put("live-" + i, principal(bob), new Date(), in(HOUR));
+            assertThat(entries(cache)).isLessThanOrEqualTo(10);
+        }
+
+        assertThat(cache.get("live-49")).isNotNull();
+        assertThat((Long) cache.stats().get("evictions")).isPositive();
+    }
+
+    @Test
+    void invalidateUserDropsOnlyThatUsersTokens() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        cache.put("alice-phone", principal(alice), new Date(), in(HOUR));
+        cache.put("alice-web", principal(alice), new Date(), in(HOUR));
+        cache.put("bob", principal(bob), new Date(), in(HOUR));
+
+        cache.invalidateUser(alice);
+
+        assertThat(cache.get("alice-phone")).isNull();
+        assertThat(cache.get("alice-web")).isNull();
+        assertThat(cache.get("bob")).isNotNull();
+    }
+
+    @Test
+    void revokeUserInvalidatesCachedTokens() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        TokenRevocationRegistry registry = new TokenRevocationRegistry(mock(UserRepository.class), cache, 60_000, 100);
+        cache.put("alice", principal(alice), new Date(), in(HOUR));
+        cache.put("bob", principal(bob), new Date(), in(HOUR));
+
+        registry.revokeUser(alice);
+
+        assertThat(cache.get("alice")).isNull();
+        assertThat(cache.get("bob")).isNotNull();
+    }
+}
@@ -0,0 +1,142 @@
+package com.nckh.yte.service;
+
+import com.nckh.yte.entity.Appointment;
+import com.nckh.yte.entity.AppointmentStatus;
+import com.nckh.yte.entity.Patient;
+import com.nckh.yte.repository.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Lịch đặt tự động luôn kết thúc ở SCHEDULED hoặc UNASSIGNED (kèm lý do), không nằm PENDING mãi.
+ */
+class AutoBookingQueueTest {
+
+    private final UUID appointmentId = UUID.randomUUID();
+    private final UUID doctorId = UUID.randomUUID();
+    private AppointmentRepository appointmentRepository;
+    private DoctorScheduleIndex scheduleIndex;
+    private DoctorRoster doctorRoster;
+    private AppointmentEvents events;
+    private AppointmentService appointmentService;
+    private Appointment appointment;
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository = mock(AppointmentRepository.class);
+        scheduleIndex = mock(DoctorScheduleIndex.class);
+        doctorRoster = mock(DoctorRoster.class);
+        events = mock(AppointmentEvents.class);
+        appointmentService = spy(new AppointmentService(appointmentRepository, mock(PatientRepository.class),
+                mock(DoctorRepository.class), mock(NurseRepository.class), mock(UserRepository.class),
+                mock(GeminiService.class), scheduleIndex, doctorRoster, mock(SymptomClassifier.class),
+                mock(SymptomSpecialtyCache.class)));
+        doReturn("Đa khoa").when(appointmentService).classifySpecialty(anyString());
+
+        appointment = Appointment.builder()
+                .id(appointmentId)
+                .patient(new Patient())
+                .symptom("đau đầu")
+                .preferredDate(LocalDate.now().plusDays(1))
+                .preferredWindow("MORNING")
+                .build();
+        when(appointmentRepository.findById(appointmentId)).thenReturn(Optional.of(appointment));
+        when(appointmentRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(appointmentRepository.saveAndFlush(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(doctorRoster.doctorsFor(any())).thenReturn(List.of(doctorId));
+    }
+
+    /** Executor chạy ngay trên thread gọi. */
+    private AutoBookingQueue queue() {
+        ThreadPoolTaskExecutor executor = mock(ThreadPoolTaskExecutor.class);
+        doAnswer(inv -> {
+            ((Runnable) inv.getArgument(0)).run();
+            return null;
+        }).when(executor).execute(any());
+        return new AutoBookingQueue(executor, appointmentService, scheduleIndex, appointmentRepository, events);
+    }
+
+    private DoctorScheduleIndex.Slot slotAt(int hour) {
+        LocalDateTime start = appointment.getPreferredDate().atTime(hour, 0);
+        return new DoctorScheduleIndex.Slot(doctorId, start, start.plusMinutes(DoctorScheduleIndex.SLOT_MINUTES));
+    }
+
+    @Test
+    void noFreeSlotEndsUnassignedWithReason() {
+        when(scheduleIndex.reserveEarliest(any(), any(), any())).thenReturn(Optional.empty());
+
+        queue().submit(appointmentId, "đau đầu");
+
+        assertThat(appointment.getStatus()).isEqualTo(AppointmentStatus.UNASSIGNED);
+        assertThat(appointment.getFailureReason()).contains("MORNING");
+        verify(events).publish(appointmentId);
+    }
+
+    @Test
+    void pastPreferredDateEndsUnassignedWithoutReserving() {
+        appointment.setPreferredDate(LocalDate.now().minusDays(1));
+
+        queue().submit(appointmentId, "đau đầu");
+
+        assertThat(appointment.getStatus()).isEqualTo(AppointmentStatus.UNASSIGNED);
+        assertThat(appointment.getFailureReason()).isEqualTo("Ngày khám mong muốn đã qua");
+        verify(scheduleIndex, never()).reserveEarliest(any(), any(), any());
+    }
+
+    @Test
+    void processFailureEndsUnassignedAndIsPublished() {
+        doThrow(new IllegalStateException("boom")).when(appointmentService).classifySpecialty(anyString());
+
+        queue().submit(appointmentId, "đau đầu");
+
+        assertThat(appointment.getStatus()).isEqualTo(AppointmentStatus.UNASSIGNED);
+        assertThat(appointment.getFailureReason()).isNotBlank();
+        verify(events).publish(appointmentId);
+    }
+
+    @Test
+    void slotTakenByAnotherInstanceIsMarkedAndRetried() {
+        when(scheduleIndex.reserveEarliest(any(), any(), any()))
+                .thenReturn(Optional.of(slotAt(8)), Optional.of(slotAt(9)));
+        when(appointmentRepository.saveAndFlush(any()))
+                .thenAnswer(inv -> {
+                    // Rollback: entity đọc lại ở lần sau vẫn là PENDING
+                    appointment.setStatus(AppointmentStatus.PENDING);
+                    throw new DataIntegrityViolationException("uk_appointment_doctor_start");
+                })
+                .thenAnswer(inv -> inv.getArgument(0));
+
+        queue().submit(appointmentId, "đau đầu");
+
+        verify(scheduleIndex).markBooked(eq(doctorId), eq(slotAt(8).start()), eq(slotAt(8).end()));
+        assertThat(appointment.getStatus()).isEqualTo(AppointmentStatus.SCHEDULED);
+        assertThat(appointment.getStartTime()).isEqualTo(slotAt(9).start());
+        verify(events).publish(appointmentId);
+    }
+
+    @Test
+    void terminalAppointmentIsNotReopened() {
+        appointment.setStatus(AppointmentStatus.UNASSIGNED);
+        appointment.setFailureReason("Không còn giờ trống");
+
+        appointmentService.markUnassigned(appointmentId, "khác");
+        queue().submit(appointmentId, "đau đầu");
+
+        assertThat(appointment.getFailureReason()).isEqualTo("Không còn giờ trống");
+        verify(scheduleIndex, never()).reserveEarliest(any(), any(), any());
+    }
+}
@@ -0,0 +1,92 @@
+package com.nckh.yte.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.yte.OpenAIConfig;
+import com.nckh.yte.config.UpstreamHttpClients;
+import com.nckh.yte.config.UpstreamHttpProps;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * OpenAI trả header rồi im lặng: stream phải tự huỷ sau idle timeout thay vì treo tới timeout của SSE.
+ */
+class ChatServiceTest {
+
+    /** Trả header + một đoạn text rồi giữ kết nối, không gửi gì thêm. */
+    private ServerSocket stalling;
+    private final List<Socket> accepted = new CopyOnWriteArrayList<>();
+    private UpstreamHttpClients clients;
+    private UpstreamGuard guard;
+    private ChatService chatService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stalling = new ServerSocket(0);
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    Socket s = stalling.accept();
+                    accepted.add(s);
+                    s.getInputStream().read(new byte[8192]);
+                    OutputStream out = s.getOutputStream();
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/event-stream\r\nConnection: close\r\n\r\n" +
+                            "data: {\"choices\":[{\"delta\":{\"content\":\"Xin\"}}]}\n\n")
+                            .getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            } catch (IOException ignored) {
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        UpstreamHttpProps props = new UpstreamHttpProps();
+        props.getUpstreams().put(UpstreamHttpClients.OPENAI, new UpstreamHttpProps.Pool());
+        clients = new UpstreamHttpClients(props, false);
+        guard = new UpstreamGuard(props, false);
+
+        OpenAIConfig config = new OpenAIConfig();
+        config.setBaseurl("http://localhost:" + stalling.getLocalPort() + "/v1");
+        config.setApikey("test");
+        config.setModel("test");
+        chatService = new ChatService(config, clients, guard, new ObjectMapper(), 300);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        chatService.destroy();
+        guard.destroy();
+        clients.destroy();
+        stalling.close();
+        for (Socket s : accepted) s.close();
+    }
+
+    @Test
+    void stalledStreamFailsAfterIdleTimeout() {
+        List<String> deltas = new CopyOnWriteArrayList<>();
+        long started = System.nanoTime();
+
+        ChatService.ChatStream stream = chatService.streamAI("xin chào", deltas::add);
+
+        assertThatThrownBy(() -> stream.done().get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+        assertThat(deltas).containsExactly("Xin");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(5_000);
+    }
+}
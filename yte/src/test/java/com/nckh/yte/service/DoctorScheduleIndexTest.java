@@ -0,0 +1,170 @@
+package com.nckh.yte.service;
+
+import com.nckh.yte.entity.AppointmentStatus;
+import com.nckh.yte.repository.AppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DoctorScheduleIndexTest {
+
+    private static final LocalDate DAY = LocalDate.now().plusDays(1);
+    private static final DoctorScheduleIndex.TimeWindow MORNING = DoctorScheduleIndex.parseWindow("MORNING");
+
+    private final UUID doctorA = UUID.randomUUID();
+    private final UUID doctorB = UUID.randomUUID();
+    private AppointmentRepository repository;
+    private DoctorScheduleIndex index;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(AppointmentRepository.class);
+        when(repository.findBookedSlots(any(), any(), eq(AppointmentStatus.CANCELLED))).thenReturn(List.of());
+        index = new DoctorScheduleIndex(repository);
+    }
+
+    private static AppointmentRepository.BookedSlot booked(UUID doctorId, LocalDateTime start) {
+        return new AppointmentRepository.BookedSlot() {
+            public UUID getDoctorId() { return doctorId; }
+            public LocalDateTime getStartTime() { return start; }
+            public LocalDateTime getEndTime() { return start.plusMinutes(DoctorScheduleIndex.SLOT_MINUTES); }
+        };
+    }
+
+    @Test
+    void parsesNamedAndExplicitWindows() {
+        assertThat(MORNING).isEqualTo(new DoctorScheduleIndex.TimeWindow(LocalTime.of(8, 0), LocalTime.of(11, 30)));
+        assertThat(DoctorScheduleIndex.parseWindow("09:00 - 10:00"))
+                .isEqualTo(new DoctorScheduleIndex.TimeWindow(LocalTime.of(9, 0), LocalTime.of(10, 0)));
+        assertThat(DoctorScheduleIndex.parseWindow("rác"))
+                .isEqualTo(new DoctorScheduleIndex.TimeWindow(LocalTime.of(8, 0), LocalTime.of(17, 0)));
+    }
+
+    @Test
+    void reservesEarliestSlotOfLeastLoadedDoctor() {
+        when(repository.findBookedSlots(any(), any(), eq(AppointmentStatus.CANCELLED)))
+                .thenReturn(List.of(booked(doctorA, DAY.atTime(8, 0))));
+
+        DoctorScheduleIndex.Slot slot = index.reserveEarliest(List.of(doctorA, doctorB), DAY, MORNING).orElseThrow();
+
+        assertThat(slot.doctorId()).isEqualTo(doctorB);
+        assertThat(slot.start()).isEqualTo(DAY.atTime(8, 0));
+        assertThat(slot.end()).isEqualTo(DAY.atTime(8, 30));
+    }
+
+    @Test
+    void windowFillsUpThenReleaseFreesSlot() {
+        // 08:00–11:30 = 7 slot
+        List<DoctorScheduleIndex.Slot> taken = new ArrayList<>();
+        Optional<DoctorScheduleIndex.Slot> next;
+        while ((next = index.reserveEarliest(List.of(doctorA), DAY, MORNING)).isPresent()) taken.add(next.get());
+
+        assertThat(taken).hasSize(7);
+        assertThat(taken.get(6).start()).isEqualTo(DAY.atTime(11, 0));
+
+        DoctorScheduleIndex.Slot freed = taken.get(3);
+        index.release(freed.doctorId(), freed.start(), freed.end());
+        assertThat(index.reserveEarliest(List.of(doctorA), DAY, MORNING)).contains(freed);
+        verify(repository, times(1)).findBookedSlots(any(), any(), any());
+    }
+
+    @Test
+    void concurrentReservationsNeverShareASlot() throws Exception {
+        List<UUID> doctors = List.of(doctorA, doctorB);
+        int threads = 32;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Optional<DoctorScheduleIndex.Slot>>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return index.reserveEarliest(doctors, DAY, MORNING);
+                }));
+            }
+            start.countDown();
+
+            Set<DoctorScheduleIndex.Slot> granted = new HashSet<>();
+            int count = 0;
+            for (Future<Optional<DoctorScheduleIndex.Slot>> f : results) {
+                Optional<DoctorScheduleIndex.Slot> slot = f.get(5, TimeUnit.SECONDS);
+                if (slot.isPresent()) {
+                    count++;
+                    granted.add(slot.get());
+                }
+            }
+            // 2 bác sĩ × 7 slot: không slot nào bị cấp hai lần, và không bỏ sót slot trống
+            assertThat(granted).hasSize(count);
+            assertThat(count).isEqualTo(14);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void markBookedOnlyAffectsLoadedDays() {
+        index.markBooked(doctorA, DAY.atTime(8, 0), DAY.atTime(9, 0));
+        // Ngày chưa nạp: slot lấy từ DB (rỗng) nên 08:00 vẫn trống
+        assertThat(index.reserveEarliest(List.of(doctorA), DAY, MORNING).orElseThrow().start())
+                .isEqualTo(DAY.atTime(8, 0));
+
+        index.markBooked(doctorA, DAY.atTime(8, 30), DAY.atTime(9, 30));
+        assertThat(index.reserveEarliest(List.of(doctorA), DAY, MORNING).orElseThrow().start())
+                .isEqualTo(DAY.atTime(9, 30));
+    }
+
+    @Test
+    void forgetDoctorDropsTheirBookings() {
+        index.reserveEarliest(List.of(doctorA), DAY, MORNING);
+        index.forgetDoctor(doctorA);
+
+        assertThat(index.reserveEarliest(List.of(doctorA), DAY, MORNING).orElseThrow().start())
+                .isEqualTo(DAY.atTime(8, 0));
+    }
+
+    @Test
+    void pastDayIsNeverReserved() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+
+        assertThat(index.reserveEarliest(List.of(doctorA), yesterday, MORNING)).isEmpty();
+        // Không nạp ngày đã qua (sẽ bị bỏ ngay sau đó, slot vừa giữ bị mất)
+        verify(repository, never()).findBookedSlots(any(), any(), any());
+    }
+
+    @Test
+    void todaySkipsSlotsThatAlreadyStarted() {
+        LocalDateTime before = LocalDateTime.now();
+        assumeTrue(before.toLocalTime().isBefore(LocalTime.of(23, 0)), "còn slot trống trong hôm nay");
+        DoctorScheduleIndex.TimeWindow allDay = DoctorScheduleIndex.parseWindow("00:00 - 23:59");
+
+        DoctorScheduleIndex.Slot slot = index.reserveEarliest(List.of(doctorA), before.toLocalDate(), allDay)
+                .orElseThrow();
+
+        assertThat(slot.start()).isAfterOrEqualTo(before);
+        assertThat(slot.start()).isBefore(before.plusMinutes(DoctorScheduleIndex.SLOT_MINUTES));
+    }
+}
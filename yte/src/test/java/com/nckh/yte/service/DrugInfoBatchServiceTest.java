@@ -0,0 +1,132 @@
+package com.nckh.yte.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.yte.OpenAIConfig;
+import com.nckh.yte.config.UpstreamHttpClients;
+import com.nckh.yte.config.UpstreamHttpProps;
+import com.nckh.yte.repository.InformationRepository;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Kết quả AI chỉ được ghép với thuốc theo "query"; phần tử không khớp là miss, không đoán theo vị trí.
+ */
+class DrugInfoBatchServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private UpstreamGuard upstreamGuard;
+    private DrugInfoCache cache;
+    private DrugInfoBatchService service;
+
+    @BeforeEach
+    void setUp() {
+        OpenAIConfig openAI = new OpenAIConfig();
+        openAI.setBaseurl("http://openai.test/v1");
+        openAI.setModel("gpt-test");
+        openAI.setApikey("sk-test");
+        upstreamGuard = mock(UpstreamGuard.class);
+        DrugNameIndex nameIndex = new DrugNameIndex(mock(InformationRepository.class), objectMapper);
+        cache = new DrugInfoCache(mock(InformationRepository.class), objectMapper, nameIndex, 1 << 20, 100);
+        service = new DrugInfoBatchService(openAI, mock(UpstreamHttpClients.class), upstreamGuard, cache,
+                objectMapper, new UpstreamHttpProps(), 20, 4, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+    }
+
+    /** Response OpenAI bọc {"results": [...]} trong choices[0].message.content. */
+    private void aiReturns(JSONObject... results) throws Exception {
+        String content = new JSONObject().put("results", new JSONArray(List.of(results))).toString();
+        String body = new JSONObject().put("choices", new JSONArray()
+                .put(new JSONObject().put("message", new JSONObject().put("content", content)))).toString();
+        when(upstreamGuard.call(anyString(), any())).thenReturn(ResponseEntity.ok(body));
+    }
+
+    private static JSONObject result(String query, String name) {
+        return new JSONObject().put("query", query).put("found", true).put("name", name);
+    }
+
+    private static List<Map<String, Object>> results(DrugInfoBatchService.BatchResult res) {
+        return new JSONObject(new String(res.body())).getJSONArray("results").toList().stream()
+                .map(o -> (Map<String, Object>) o)
+                .toList();
+    }
+
+    @Test
+    void matchesResultsByQueryNotPosition() throws Exception {
+        // AI trả đủ số phần tử nhưng đảo thứ tự
+        aiReturns(result("Ibuprofen", "Ibuprofen 400mg"), result("Paracetamol", "Paracetamol 500mg"));
+
+        var res = service.lookup(List.of("Paracetamol", "Ibuprofen"), n -> 0);
+
+        assertThat(res.failed()).isZero();
+        var rows = results(res);
+        assertThat(rows.get(0).toString()).contains("Paracetamol 500mg").doesNotContain("Ibuprofen 400mg");
+        assertThat(rows.get(1).toString()).contains("Ibuprofen 400mg").doesNotContain("Paracetamol 500mg");
+    }
+
+    @Test
+    void unmatchedResultIsMissEvenWhenCountsAgree() throws Exception {
+        // Cùng số phần tử, nhưng một "query" không khớp thuốc nào – không được gán theo vị trí
+        aiReturns(result("Paracetamol", "Paracetamol 500mg"), result("Aspirin", "Aspirin 81mg"));
+
+        var res = service.lookup(List.of("Paracetamol", "Ibuprofen"), n -> 0);
+
+        assertThat(res.failed()).isEqualTo(1);
+        var rows = results(res);
+        assertThat(rows.get(0)).containsKey("data");
+        assertThat(rows.get(1)).containsKey("error").doesNotContainKey("data");
+        assertThat(rows.get(1).toString()).doesNotContain("Aspirin");
+        assertThat(cache.get("ibuprofen", "Ibuprofen")).isEmpty();
+    }
+
+    @Test
+    void unmatchedMissIsReleasedForRetry() throws Exception {
+        aiReturns(result("Aspirin", "Aspirin 81mg"));
+        service.lookup(List.of("Ibuprofen"), n -> 0);
+
+        // Khoá không bị giữ chỗ mãi: lần tra sau được nạp lại
+        AtomicInteger loads = new AtomicInteger();
+        DrugInfoCache.Entry entry = cache.getOrLoad("ibuprofen", "Ibuprofen", TimeUnit.SECONDS.toMillis(1), () -> {
+            loads.incrementAndGet();
+            return Map.of("items", List.of(Map.of("Tên thuốc", "Ibuprofen 400mg")));
+        });
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(new String(entry.body())).contains("Ibuprofen 400mg");
+    }
+
+    @Test
+    void nameFoldingToEmptyKeyIsRejectedWithoutCallingAi() throws Exception {
+        aiReturns(result("Paracetamol", "Paracetamol 500mg"));
+
+        var res = service.lookup(List.of("!!!", "Paracetamol", "阿司匹林"), n -> 0);
+
+        assertThat(res.failed()).isZero();
+        var rows = results(res);
+        assertThat(rows.get(0)).containsEntry("error", DrugInfoBatchService.INVALID_NAME).doesNotContainKey("data");
+        assertThat(rows.get(1)).containsKey("data");
+        assertThat(rows.get(2)).containsEntry("error", DrugInfoBatchService.INVALID_NAME);
+        // Chỉ Paracetamol đi lên AI, và khoá rỗng không được ghi vào cache
+        verify(upstreamGuard).call(anyString(), any());
+        assertThat(cache.get("", "!!!")).isEmpty();
+    }
+}
@@ -0,0 +1,118 @@
+package com.nckh.yte.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.yte.repository.InformationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Thuốc thật gần giống nhau không được trả nhầm bản cache của nhau;
+ * tra cứu đơn lẻ và theo lô dùng chung một single-flight cho mỗi khoá.
+ */
+class DrugInfoCacheTest {
+
+    private DrugNameIndex nameIndex;
+    private DrugInfoCache cache;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        nameIndex = new DrugNameIndex(mock(InformationRepository.class), objectMapper);
+        cache = new DrugInfoCache(mock(InformationRepository.class), objectMapper, nameIndex, 1 << 20, 100);
+    }
+
+    private static Map<String, Object> response(String drugName) {
+        return Map.of("items", List.of(Map.of("Tên thuốc", drugName)));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "lorazepam, clonazepam",
+            "duloxetine, fluoxetine",
+            "cycloserine, cyclosporine",
+            "prednisolone, prednisone",
+    })
+    void lookAlikeDrugIsLoadedNotSubstituted(String cached, String queried) throws Exception {
+        cache.put(cached, cached, response(cached));
+
+        AtomicInteger loads = new AtomicInteger();
+        DrugInfoCache.Entry entry = cache.getOrLoad(queried, queried, 5_000, () -> {
+            loads.incrementAndGet();
+            return response(queried);
+        });
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(new String(entry.body(), StandardCharsets.UTF_8)).contains(queried).doesNotContain(cached);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "lorazepam, clonazepam",
+            "duloxetine, fluoxetine",
+            "cycloserine, cyclosporine",
+            "prednisolone, prednisone",
+    })
+    void batchLookupMissesLookAlikeDrug(String cached, String queried) throws Exception {
+        cache.put(cached, cached, response(cached));
+
+        Map<String, DrugInfoCache.Entry> hits = cache.getAll(Map.of(queried, queried, cached, cached));
+
+        assertThat(hits).containsOnlyKeys(cached);
+    }
+
+    @Test
+    void singleLookupWaitsForBatchClaim() throws Exception {
+        var ticket = cache.claim("warfarin");
+        assertThat(ticket.leader()).isTrue();
+
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<DrugInfoCache.Entry> single = CompletableFuture.supplyAsync(() -> {
+            try {
+                return cache.getOrLoad("warfarin", "Warfarin", 5_000, () -> {
+                    loads.incrementAndGet();
+                    return response("single");
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        DrugInfoCache.Entry batch = cache.complete(ticket, "warfarin", "Warfarin", response("batch"));
+
+        assertThat(single.get(5, TimeUnit.SECONDS)).isSameAs(batch);
+        assertThat(loads.get()).isZero();
+    }
+
+    @Test
+    void secondClaimFollowsFirst() throws Exception {
+        var first = cache.claim("warfarin");
+        var second = cache.claim("warfarin");
+        assertThat(second.leader()).isFalse();
+
+        DrugInfoCache.Entry entry = cache.complete(first, "warfarin", "Warfarin", response("batch"));
+
+        assertThat(second.await(5, TimeUnit.SECONDS)).isSameAs(entry);
+        assertThat(cache.claim("warfarin").leader()).isFalse();
+    }
+
+    @Test
+    void followerGivesUpAfterMaxWait() {
+        cache.claim("warfarin");  // leader giữ chỗ nhưng không bao giờ xong
+
+        assertThatThrownBy(() -> cache.getOrLoad("warfarin", "Warfarin", 100, () -> response("single")))
+                .isInstanceOf(UpstreamGuard.UpstreamUnavailableException.class);
+    }
+}
@@ -0,0 +1,106 @@
+package com.nckh.yte.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Chi phí trả một cache hit của {@code /drug-info-full}:
+ * <ul>
+ *   <li>{@code reparse*}: đường cũ – parse chuỗi JSON đã lưu ({@code new JSONObject(json).toMap()}),
+ *       Jackson serialize lại, ShallowEtagHeaderFilter băm body, Tomcat nén gzip mỗi request.</li>
+ *   <li>{@code prebuilt*}: {@link DrugInfoCache.Entry} – byte, gzip và ETag đã dựng sẵn khi vào L1.</li>
+ *   <li>{@code buildEntry}: chi phí dựng sẵn đó, trả một lần cho mỗi thuốc khi nạp vào L1.</li>
+ * </ul>
+ * Chạy: {@code mvn -Pbench test-compile exec:exec -Dbench=DrugInfoResponse}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrugInfoResponseBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private String storedJson;
+    private DrugInfoCache.Entry entry;
+
+    @Setup
+    public void setUp() throws IOException {
+        Map<String, Object> drug = new LinkedHashMap<>();
+        drug.put("Tên thuốc", "Paracetamol 500mg");
+        drug.put("Hãng sản xuất", "Công ty Cổ phần Dược Hậu Giang (DHG Pharma)");
+        drug.put("Tóm tắt bác sĩ", repeat("Thuốc giảm đau, hạ sốt nhóm không steroid, dùng phổ biến cho người lớn và trẻ em. ", 6));
+        drug.put("Chỉ định / Công dụng", repeat("Điều trị các chứng đau nhẹ đến vừa: đau đầu, đau răng, đau cơ, đau bụng kinh; hạ sốt. ", 6));
+        drug.put("Liều dùng", repeat("Người lớn: 500–1000 mg mỗi 4–6 giờ, tối đa 4 g/ngày. Trẻ em: 10–15 mg/kg mỗi 4–6 giờ. ", 6));
+        drug.put("Chống chỉ định", repeat("Quá mẫn với paracetamol; suy gan nặng; thiếu men G6PD. ", 6));
+        drug.put("Tác dụng phụ", repeat("Hiếm gặp: phát ban, buồn nôn; quá liều gây hoại tử tế bào gan. ", 6));
+        drug.put("Thận trọng / Lưu ý", repeat("Không uống rượu khi dùng thuốc; kiểm tra thành phần paracetamol trong thuốc cảm khác. ", 6));
+        drug.put("Tương tác thuốc", repeat("Warfarin (tăng tác dụng chống đông), isoniazid, thuốc chống co giật cảm ứng enzym gan. ", 6));
+
+        byte[] body = objectMapper.writeValueAsBytes(Map.of("items", List.of(drug)));
+        storedJson = new String(body, StandardCharsets.UTF_8);
+        entry = DrugInfoCache.Entry.of(body);
+    }
+
+    private static String repeat(String s, int times) {
+        return s.repeat(times).trim();
+    }
+
+    @Benchmark
+    public byte[] reparse() throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(new JSONObject(storedJson).toMap());
+        DigestUtils.md5DigestAsHex(body);
+        return body;
+    }
+
+    @Benchmark
+    public byte[] reparseGzip() throws IOException {
+        return gzip(reparse());
+    }
+
+    @Benchmark
+    public byte[] prebuilt() {
+        entry.etag();
+        return entry.body();
+    }
+
+    @Benchmark
+    public byte[] prebuiltGzip() {
+        entry.etag();
+        return entry.gzip();
+    }
+
+    @Benchmark
+    public DrugInfoCache.Entry buildEntry() {
+        return DrugInfoCache.Entry.of(storedJson.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(body);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,88 @@
+package com.nckh.yte.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.yte.repository.InformationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class DrugNameIndexTest {
+
+    private DrugNameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new DrugNameIndex(mock(InformationRepository.class), new ObjectMapper());
+        add("amoxicillin", "Amoxicillin");
+        add("paracetamol", "Paracetamol");
+        add("panadol extra", "Panadol Extra");
+        add("vitamin b1", "Vitamin B1");
+        add("lorazepam", "Lorazepam");
+        add("aspirin", "Aspirin");
+    }
+
+    private void add(String key, String display) {
+        index.add(key, key, Map.of("items", List.of(Map.of("Tên thuốc", display))));
+    }
+
+    @Test
+    void completeMatchesNamePrefixAndWordPrefix() {
+        assertThat(index.complete("para", 10)).extracting(DrugNameIndex.Suggestion::key)
+                .containsExactly("paracetamol");
+        assertThat(index.complete("extra", 10)).extracting(DrugNameIndex.Suggestion::name)
+                .containsExactly("Panadol Extra");
+    }
+
+    @Test
+    void completeFallsBackToClosestNameAsSuggestion() {
+        assertThat(index.complete("amoxicilin", 10)).extracting(DrugNameIndex.Suggestion::key)
+                .containsExactly("amoxicillin");
+    }
+
+    @Test
+    void closestToleratesSmallTypos() {
+        assertThat(index.closest("Amoxcillin")).contains("amoxicillin");
+        assertThat(index.closest("paracetamlo")).contains("paracetamol");
+        assertThat(index.closest("PARACETAMOL")).contains("paracetamol");
+    }
+
+    @Test
+    void closestNeverChangesDigits() {
+        assertThat(index.closest("vitamin b2")).isEmpty();
+        assertThat(index.closest("vitamin b1")).contains("vitamin b1");
+    }
+
+    @Test
+    void shortNamesOnlyMatchExactly() {
+        add("ace", "ACE");
+        assertThat(index.closest("acd")).isEmpty();
+        assertThat(index.closest("ace")).contains("ace");
+    }
+
+    @Test
+    void ambiguousTypoIsRejected() {
+        add("aspirim", "Aspirim");
+        // cách đều "aspirin" và "aspirim" → không đoán
+        assertThat(index.closest("aspirik")).isEmpty();
+    }
+
+    @Test
+    void editDistanceCountsTranspositionAsOneEdit() {
+        assertThat(DrugNameIndex.editDistance("paracetamol", "paracetaml", 2)).isEqualTo(1);
+        assertThat(DrugNameIndex.editDistance("paracetamol", "paracetamlo", 2)).isEqualTo(1);
+        assertThat(DrugNameIndex.editDistance("clonazepam", "lorazepam", 2)).isEqualTo(2);
+        assertThat(DrugNameIndex.editDistance("abc", "xyz123", 2)).isEqualTo(3);
+    }
+
+    @Test
+    void notFoundResponsesAreNotIndexed() {
+        index.add("khong co", "khong co", Map.of("items", List.of()));
+        assertThat(index.closest("khong co")).isEqualTo(Optional.empty());
+    }
+}
@@ -0,0 +1,111 @@
+package com.nckh.yte.service;
+
+import com.nckh.yte.entity.Specialty;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bộ phân loại nội bộ trên tập triệu chứng đã gán nhãn ({@code symptoms-labelled.tsv}) và các quy tắc dấu.
+ */
+class SymptomClassifierTest {
+
+    /** Hiện tại: accuracy ~0.99, confident ~0.99. Ngưỡng để thấp hơn một chút: sửa từ khoá làm tụt chất lượng thì test báo. */
+    private static final double MIN_ACCURACY = 0.95;
+    private static final double MIN_CONFIDENT_RATE = 0.85;
+    private static final double MIN_CONFIDENT_PRECISION = 0.95;
+
+    private final SymptomClassifier classifier = new SymptomClassifier(0.6);
+
+    private record Sample(Specialty expected, String symptom) {
+    }
+
+    private static List<Sample> labelled() throws IOException {
+        List<Sample> samples = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                Objects.requireNonNull(SymptomClassifierTest.class.getResourceAsStream("/symptoms-labelled.tsv")),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] cols = line.split("\t", 2);
+                samples.add(new Sample(Specialty.valueOf(cols[0].trim()), cols[1].trim()));
+            }
+        }
+        return samples;
+    }
+
+    @Test
+    void labelledSetMeetsAccuracyAndConfidentRate() throws IOException {
+        List<Sample> samples = labelled();
+        int correct = 0;
+        int confident = 0;
+        int confidentCorrect = 0;
+        List<String> wrong = new ArrayList<>();
+        for (Sample s : samples) {
+            SymptomClassifier.Result r = classifier.classify(s.symptom());
+            boolean ok = r.specialty() == s.expected();
+            if (ok) correct++;
+            else wrong.add(s.symptom() + " → " + r.specialty() + " (cần " + s.expected() + ")");
+            if (classifier.isConfident(r)) {
+                confident++;
+                if (ok) confidentCorrect++;
+            }
+        }
+
+        assertThat(samples).hasSizeGreaterThanOrEqualTo(50);
+        assertThat((double) correct / samples.size()).as("accuracy, sai: %s", wrong).isGreaterThanOrEqualTo(MIN_ACCURACY);
+        // Tỉ lệ bỏ qua được Gemini, và khi đã tự tin thì gần như không sai
+        assertThat((double) confident / samples.size()).as("confident rate").isGreaterThanOrEqualTo(MIN_CONFIDENT_RATE);
+        assertThat((double) confidentCorrect / confident).as("precision khi tự tin, sai: %s", wrong)
+                .isGreaterThanOrEqualTo(MIN_CONFIDENT_PRECISION);
+    }
+
+    @Test
+    void accentedTokenMustMatchExactly() {
+        // "tìm" (tìm kiếm) không phải "tim" (tim mạch)
+        assertThat(classifier.classify("tìm bác sĩ khám giúp").confidence()).isZero();
+        assertThat(classifier.classify("tim đập nhanh").specialty()).isEqualTo(Specialty.TIM_MACH);
+    }
+
+    @Test
+    void phraseConsumesItsTokens() {
+        // "dạ dày" là Tiêu hoá, token "da" bên trong không được cộng điểm Da liễu
+        SymptomClassifier.Result r = classifier.classify("đau dạ dày");
+        assertThat(r.specialty()).isEqualTo(Specialty.TIEU_HOA);
+        assertThat(r.confidence()).isEqualTo(1.0);
+        assertThat(classifier.classify("da day").specialty()).isEqualTo(Specialty.TIEU_HOA);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "dau bung, đau bụng",
+            "dau hong, đau họng",
+            "huyet ap, huyết áp",
+            "tieu duong, tiểu đường",
+    })
+    void unaccentedInputMatchesAccentedKeyword(String unaccented, String accented) {
+        SymptomClassifier.Result folded = classifier.classify(unaccented);
+        SymptomClassifier.Result exact = classifier.classify(accented);
+
+        assertThat(folded).isEqualTo(exact);
+        assertThat(classifier.isConfident(folded)).isTrue();
+    }
+
+    @Test
+    void noKeywordFallsBackToGeneralWithZeroConfidence() {
+        SymptomClassifier.Result r = classifier.classify("không rõ, cần tư vấn");
+        assertThat(r.specialty()).isEqualTo(Specialty.DA_KHOA);
+        assertThat(classifier.isConfident(r)).isFalse();
+    }
+}
@@ -0,0 +1,62 @@
+package com.nckh.yte.service;
+
+import com.nckh.yte.entity.Specialty;
+import com.nckh.yte.entity.SymptomSpecialty;
+import com.nckh.yte.repository.SymptomSpecialtyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SymptomSpecialtyCacheTest {
+
+    private SymptomSpecialtyRepository repository;
+    private SymptomSpecialtyCache cache;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(SymptomSpecialtyRepository.class);
+        cache = new SymptomSpecialtyCache(repository, 100, 1);  // TTL 1 giờ
+    }
+
+    @Test
+    void fingerprintIgnoresAccentsOrderAndFillerWords() {
+        assertThat(SymptomSpecialtyCache.fingerprint("Sốt, đau họng"))
+                .isEqualTo(SymptomSpecialtyCache.fingerprint("tôi bị đau họng sốt"));
+    }
+
+    @Test
+    void putIsServedFromL1() {
+        cache.put("dau hong sot", Specialty.TAI_MUI_HONG);
+
+        assertThat(cache.get("dau hong sot")).contains(Specialty.TAI_MUI_HONG);
+        verify(repository, never()).findById(any());
+    }
+
+    @Test
+    void promotedRowKeepsItsOriginalExpiry() throws InterruptedException {
+        // Ghi gần đủ 1 giờ trước: còn 200ms là hết hạn
+        LocalDateTime createdAt = LocalDateTime.now().minusHours(1).plusNanos(200_000_000);
+        when(repository.findById("dau hong sot"))
+                .thenReturn(Optional.of(new SymptomSpecialty("dau hong sot", Specialty.TAI_MUI_HONG, createdAt)));
+
+        assertThat(cache.get("dau hong sot")).contains(Specialty.TAI_MUI_HONG);
+        assertThat(cache.get("dau hong sot")).contains(Specialty.TAI_MUI_HONG);
+        verify(repository, times(1)).findById("dau hong sot");
+
+        Thread.sleep(300);
+
+        // L1 không được gia hạn thêm một TTL lúc promote: hết hạn cùng bản ghi L2
+        assertThat(cache.get("dau hong sot")).isEmpty();
+        verify(repository, times(2)).findById("dau hong sot");
+    }
+}
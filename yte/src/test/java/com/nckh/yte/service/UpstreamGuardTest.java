@@ -0,0 +1,222 @@
+package com.nckh.yte.service;
+
+import com.nckh.yte.config.UpstreamDeadline;
+import com.nckh.yte.config.UpstreamHttpProps;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UpstreamGuardTest {
+
+    private static final String NAME = "test";
+
+    private UpstreamGuard guard;
+
+    private UpstreamGuard guard(UpstreamHttpProps.Pool pool) {
+        UpstreamHttpProps props = new UpstreamHttpProps();
+        props.getUpstreams().put(NAME, pool);
+        guard = new UpstreamGuard(props, false);
+        return guard;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (guard != null) guard.destroy();
+    }
+
+    private static UpstreamHttpProps.Pool breakerPool() {
+        UpstreamHttpProps.Pool p = new UpstreamHttpProps.Pool();
+        p.setFailureThreshold(2);
+        p.setOpenMs(200);
+        p.setMaxAttempts(1);
+        return p;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> stats() {
+        return (Map<String, Object>) guard.stats().get(NAME);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("điều kiện không thành công trong 2s").isLessThan(end);
+            Thread.sleep(10);
+        }
+    }
+
+    private static String fail() {
+        throw new ResourceAccessException("connection reset");
+    }
+
+    @Test
+    void breakerOpensAfterConsecutiveFailures() {
+        guard(breakerPool());
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> guard.call(NAME, UpstreamGuardTest::fail))
+                    .isInstanceOf(ResourceAccessException.class);
+        }
+
+        AtomicInteger calls = new AtomicInteger();
+        assertThatThrownBy(() -> guard.call(NAME, calls::incrementAndGet))
+                .isInstanceOf(UpstreamGuard.UpstreamUnavailableException.class)
+                .hasMessageContaining("circuit open");
+        assertThat(calls.get()).isZero();
+        assertThat(stats().get("state")).isEqualTo("OPEN");
+    }
+
+    @Test
+    void clientErrorsDoNotOpenBreaker() {
+        guard(breakerPool());
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> guard.call(NAME, () -> {
+                throw HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "bad", null, null, null);
+            })).isInstanceOf(HttpClientErrorException.class);
+        }
+        assertThat(stats().get("state")).isEqualTo("CLOSED");
+    }
+
+    @Test
+    void halfOpenAdmitsSingleProbeThenCloses() throws Exception {
+        guard(breakerPool());
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> guard.call(NAME, UpstreamGuardTest::fail));
+        }
+        awaitUntil(() -> "HALF_OPEN".equals(stats().get("state")));
+
+        CountDownLatch probing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread probe = new Thread(() -> {
+            try {
+                guard.call(NAME, () -> {
+                    probing.countDown();
+                    release.await();
+                    return "ok";
+                });
+            } catch (Exception ignored) {
+            }
+        });
+        probe.start();
+        assertThat(probing.await(2, TimeUnit.SECONDS)).isTrue();
+
+        // Đang có request thử → request khác bị từ chối
+        assertThatThrownBy(() -> guard.call(NAME, () -> "second"))
+                .isInstanceOf(UpstreamGuard.UpstreamUnavailableException.class);
+
+        release.countDown();
+        probe.join(2000);
+        assertThat(stats().get("state")).isEqualTo("CLOSED");
+        assertThat(guard.call(NAME, () -> "after")).isEqualTo("after");
+    }
+
+    @Test
+    void failedProbeReopensBreaker() throws Exception {
+        guard(breakerPool());
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> guard.call(NAME, UpstreamGuardTest::fail));
+        }
+        awaitUntil(() -> "HALF_OPEN".equals(stats().get("state")));
+
+        assertThatThrownBy(() -> guard.call(NAME, UpstreamGuardTest::fail))
+                .isInstanceOf(ResourceAccessException.class);
+        assertThat(stats().get("state")).isEqualTo("OPEN");
+    }
+
+    private static UpstreamHttpProps.Pool hedgePool(int maxConcurrent, long deadlineMs) {
+        UpstreamHttpProps.Pool p = new UpstreamHttpProps.Pool();
+        p.setHedge(true);
+        p.setHedgeMinMs(50);
+        p.setMaxConcurrent(maxConcurrent);
+        p.setMaxAttempts(1);
+        p.setDeadlineMs(deadlineMs);
+        return p;
+    }
+
+    @Test
+    void slowPrimaryIsHedgedAndInterrupted() throws Exception {
+        guard(hedgePool(4, 5000));
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch loserInterrupted = new CountDownLatch(1);
+
+        String result = guard.call(NAME, () -> {
+            if (calls.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    loserInterrupted.countDown();
+                    throw e;
+                }
+                return "slow";
+            }
+            return "fast";
+        });
+
+        assertThat(result).isEqualTo("fast");
+        assertThat(loserInterrupted.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(stats().get("hedges")).isEqualTo(1L);
+        awaitUntil(() -> Integer.valueOf(0).equals(stats().get("inFlight")));
+    }
+
+    @Test
+    void hedgeCountsAgainstBulkhead() throws Exception {
+        guard(hedgePool(1, 1000));
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = guard.call(NAME, () -> {
+            calls.incrementAndGet();
+            Thread.sleep(200);
+            return "only";
+        });
+
+        // Bulkhead 1 chỗ, lần thử đầu đang giữ → không hedge
+        assertThat(result).isEqualTo("only");
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(stats().get("hedges")).isEqualTo(0L);
+    }
+
+    @Test
+    void permitHeldUntilAbandonedAttemptExits() throws Exception {
+        guard(hedgePool(2, 200));
+        CountDownLatch exit = new CountDownLatch(1);
+
+        assertThatThrownBy(() -> guard.call(NAME, () -> {
+            // Không phản hồi interrupt, như socket read trên platform thread
+            while (exit.getCount() > 0) {
+                Thread.interrupted();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+            return "late";
+        })).isInstanceOf(UpstreamGuard.UpstreamUnavailableException.class)
+                .hasMessageContaining("deadline");
+
+        assertThat(stats()).containsEntry("hedges", 1L).containsEntry("inFlight", 2);
+        exit.countDown();
+        awaitUntil(() -> Integer.valueOf(0).equals(stats().get("inFlight")));
+    }
+
+    @Test
+    void attemptSeesRemainingDeadline() throws Exception {
+        UpstreamHttpProps.Pool p = new UpstreamHttpProps.Pool();
+        p.setDeadlineMs(1000);
+        guard(p);
+
+        long remaining = guard.call(NAME, UpstreamDeadline::remainingMillis);
+
+        assertThat(remaining).isBetween(1L, 1000L);
+        assertThat(UpstreamDeadline.remainingMillis()).isEqualTo(-1);
+    }
+}
@@ -0,0 +1,129 @@
+package com.nckh.yte.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> flight = new SingleFlight<>();
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) throw new AssertionError("Hết thời gian chờ");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void concurrentCallersShareOneExecution() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        Future<String> leader = pool.submit(() -> flight.execute("k", () -> {
+            calls.incrementAndGet();
+            release.await();
+            return "v";
+        }));
+        awaitUntil(() -> flight.inFlightCount() == 1);
+
+        Future<String> follower1 = pool.submit(() -> flight.execute("k", () -> "khác"));
+        Future<String> follower2 = pool.submit(() -> flight.execute("k", () -> "khác"));
+        awaitUntil(() -> flight.coalescedCount() == 2);
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("v");
+        assertThat(follower1.get(5, TimeUnit.SECONDS)).isEqualTo("v");
+        assertThat(follower2.get(5, TimeUnit.SECONDS)).isEqualTo("v");
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(flight.inFlightCount()).isZero();
+    }
+
+    @Test
+    void followersReceiveLeadersException() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = pool.submit(() -> flight.execute("k", () -> {
+            release.await();
+            throw new IOException("upstream hỏng");
+        }));
+        awaitUntil(() -> flight.inFlightCount() == 1);
+        Future<String> follower = pool.submit(() -> flight.execute("k", () -> "khác"));
+        awaitUntil(() -> flight.coalescedCount() == 1);
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IOException.class);
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IOException.class)
+                .hasRootCauseMessage("upstream hỏng");
+        // Lỗi không bị cache: lần sau chạy lại
+        assertThat(flight.execute("k", () -> "v2")).isEqualTo("v2");
+    }
+
+    @Test
+    void followerWaitIsBounded() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = pool.submit(() -> flight.execute("k", () -> {
+            release.await();
+            return "v";
+        }));
+        awaitUntil(() -> flight.inFlightCount() == 1);
+
+        long started = System.nanoTime();
+        assertThatThrownBy(() -> flight.execute("k", () -> "khác", 100, TimeUnit.MILLISECONDS))
+                .isInstanceOf(TimeoutException.class);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(2_000);
+
+        // Leader không bị ảnh hưởng bởi follower bỏ cuộc
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("v");
+    }
+
+    @Test
+    void ticketLeaderCompletesForFollowers() throws Exception {
+        SingleFlight.Ticket<String> mine = flight.join("k");
+        SingleFlight.Ticket<String> other = flight.join("k");
+
+        assertThat(mine.leader()).isTrue();
+        assertThat(other.leader()).isFalse();
+        assertThat(other.isDone()).isFalse();
+
+        mine.complete("v");
+
+        assertThat(other.await(1, TimeUnit.SECONDS)).isEqualTo("v");
+        assertThat(flight.inFlightCount()).isZero();
+        assertThat(flight.join("k").leader()).isTrue();
+    }
+
+    @Test
+    void failedTicketReleasesKey() {
+        SingleFlight.Ticket<String> mine = flight.join("k");
+        SingleFlight.Ticket<String> other = flight.join("k");
+
+        mine.fail(new IllegalStateException("không nạp được"));
+
+        assertThatThrownBy(() -> other.await(1, TimeUnit.SECONDS))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("không nạp được");
+        assertThat(flight.inFlightCount()).isZero();
+    }
+}